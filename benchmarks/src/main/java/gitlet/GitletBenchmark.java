@@ -0,0 +1,248 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmarks of the core gitlet operations on synthetic repositories.
+ * Each trial builds a repository in a temporary directory with FILES
+ * files and two branches, master and other, that each made COMMITS
+ * commits since they split; master only changes files with even numbers
+ * and other only odd ones, so they merge without conflicts.
+ * @author Megan Hu*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GitletBenchmark {
+
+    /** A synthetic repository, shared by every invocation of a trial. */
+    @State(Scope.Benchmark)
+    public static class Repo {
+
+        /** Number of files tracked by the repository. */
+        @Param({"100", "1000"})
+        public int files;
+
+        /** Number of commits on each branch since the split point. */
+        @Param({"10", "100"})
+        public int commits;
+
+        /** Creates the repository.
+         *
+         * @throws IOException if the directory cannot be created
+         */
+        @Setup(Level.Trial)
+        public void create() throws IOException {
+            dir = Files.createTempDirectory("gitlet-bench");
+            repository = new Repository(dir.toFile());
+            Main.init(repository);
+            for (int i = 0; i < files; i += 1) {
+                repository.writeToCWD("", name(i), content(i, 0));
+                Main.add(repository, name(i));
+            }
+            Main.commit(repository, "base");
+            Main.branch(repository, "other");
+            for (int c = 1; c <= commits; c += 1) {
+                change(2 * (c % ((files + 1) / 2)), c, "master " + c);
+            }
+            Main.checkoutBranch(repository, "other");
+            for (int c = 1; c <= commits; c += 1) {
+                change(2 * (c % (files / 2)) + 1, c, "other " + c);
+            }
+            Main.checkoutBranch(repository, "master");
+            masterHead = repository.tree().getCurrBranchCommit().getId();
+        }
+
+        /** Deletes the repository.
+         *
+         * @throws IOException if it cannot be deleted
+         */
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder())
+                        .forEach(p -> p.toFile().delete());
+            }
+        }
+
+        /** Commits version version of file i with message message.
+         *
+         * @param i number of the file
+         * @param version version of its contents
+         * @param message the commit message
+         */
+        void change(int i, int version, String message) {
+            repository.writeToCWD("", name(i), content(i, version));
+            Main.add(repository, name(i));
+            Main.commit(repository, message);
+        }
+
+        /** Returns the name of file i.
+         *
+         * @param i number of the file
+         * @return its name
+         */
+        static String name(int i) {
+            return "file" + i + ".txt";
+        }
+
+        /** Returns version version of the contents of file i.
+         *
+         * @param i number of the file
+         * @param version the version
+         * @return the contents
+         */
+        static String content(int i, int version) {
+            StringBuilder ret = new StringBuilder();
+            for (int line = 0; line < 20; line += 1) {
+                ret.append("file ").append(i).append(" line ").append(line)
+                        .append(" version ").append(version).append('\n');
+            }
+            return ret.toString();
+        }
+
+        /** The directory of the repository. */
+        Path dir;
+        /** The repository. */
+        Repository repository;
+        /** Id of the head of master after setup. */
+        String masterHead;
+        /** Number of changes made by invocations so far. */
+        int changes;
+    }
+
+    /** Repository in which each invocation first changes a file. */
+    @State(Scope.Benchmark)
+    public static class Changed extends Repo {
+
+        /** Writes a new version of the next file.
+         */
+        @Setup(Level.Invocation)
+        public void changeFile() {
+            changes += 1;
+            file = name(2 * (changes % ((files + 1) / 2)));
+            repository.writeToCWD("", file,
+                    content(changes, commits + changes));
+        }
+
+        /** Name of the file just changed. */
+        String file;
+    }
+
+    /** Repository in which each invocation first stages a change. */
+    @State(Scope.Benchmark)
+    public static class Staged extends Changed {
+
+        /** Stages the file just changed.
+         */
+        @Setup(Level.Invocation)
+        public void stageFile() {
+            Main.add(repository, file);
+        }
+    }
+
+    /** Repository whose current branch is master before each invocation. */
+    @State(Scope.Benchmark)
+    public static class OnMaster extends Repo {
+
+        /** Moves master back to where setup left it and checks it out.
+         */
+        @Setup(Level.Invocation)
+        public void resetMaster() {
+            if (!repository.tree().getCurrBranch().equals("master")) {
+                Main.checkoutBranch(repository, "master");
+            }
+            Main.reset(repository, masterHead);
+        }
+    }
+
+    /** Benchmarks Stage.add of a changed file.
+     *
+     * @param repo the repository
+     */
+    @Benchmark
+    public void stageAdd(Changed repo) {
+        repo.repository.stage().add(repo.file,
+                repo.repository.tree().getCurrBranchCommit());
+    }
+
+    /** Benchmarks Stage.check of the working directory.
+     *
+     * @param repo the repository
+     */
+    @Benchmark
+    public void stageCheck(Repo repo) {
+        repo.repository.stage().check();
+    }
+
+    /** Benchmarks Tree.addCommit of one staged change.
+     *
+     * @param repo the repository
+     */
+    @Benchmark
+    public void addCommit(Staged repo) {
+        Stage stage = repo.repository.stage();
+        repo.repository.tree().addCommit("", "change " + repo.changes,
+                stage.getStagedAdded(), stage.getStagedRemoved());
+    }
+
+    /** Benchmarks Tree.log of the current branch.
+     *
+     * @param repo the repository
+     * @return the log
+     */
+    @Benchmark
+    public String log(Repo repo) {
+        return repo.repository.tree().log();
+    }
+
+    /** Benchmarks Tree.checkoutBranch of other from master.
+     *
+     * @param repo the repository
+     */
+    @Benchmark
+    public void checkoutBranch(OnMaster repo) {
+        repo.repository.tree().checkoutBranch("other");
+    }
+
+    /** Benchmarks MergeEngine.base of the heads of master and other.
+     *
+     * @param repo the repository
+     * @return the split point
+     */
+    @Benchmark
+    public Commit mergeBase(Repo repo) {
+        Repository r = repo.repository;
+        Commit master = (Commit) r.readFile(".commits", repo.masterHead);
+        Commit other = (Commit) r.readFile(".commits",
+                Refs.resolve(r, Refs.head("other")));
+        return MergeEngine.base(r, master, other);
+    }
+
+    /** Benchmarks Tree.merge of other into master.
+     *
+     * @param repo the repository
+     */
+    @Benchmark
+    public void merge(OnMaster repo) {
+        repo.repository.tree().merge("other", repo.repository.stage());
+    }
+}
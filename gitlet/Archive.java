@@ -0,0 +1,204 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/** Export of the files of a commit as a tar or zip archive, written
+ * straight from the object store without a working directory. Entries are
+ * in order of file name and carry the time of the commit, so archiving a
+ * commit always gives the same bytes. Blobs are read and deserialized by
+ * tasks of the common fork-join pool a bounded number of entries ahead of
+ * the one being written, so reading overlaps with writing.
+ * @author Megan Hu*/
+final class Archive {
+
+    /** Size of a tar block. */
+    private static final int BLOCK = 512;
+
+    /** Size of a tar record, which the archive is padded to. */
+    private static final int RECORD = 20 * BLOCK;
+
+    /** Number of blobs read ahead of the entry being written. */
+    private static final int READ_AHEAD =
+            4 * Runtime.getRuntime().availableProcessors();
+
+    /** Not instantiable. */
+    private Archive() {
+    }
+
+    /** Writes the files of commit to out as a tar archive if format is
+     * tar, or a zip archive if it is zip.
+     * @param repo the repository
+     * @param commit the commit
+     * @param format tar or zip
+     * @param out the stream written to, which is left open
+     * @throws IOException if out cannot be written
+     */
+    static void write(Repository repo, Commit commit, String format,
+                      OutputStream out) throws IOException {
+        TreeMap<String, String> files = new TreeMap<>(commit.getBlobs());
+        PartialClone.prefetch(repo, files.values());
+        long time = time(commit);
+        Iterator<Map.Entry<String, String>> entries =
+                files.entrySet().iterator();
+        ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+        if (format.equals("zip")) {
+            ZipOutputStream zip = new ZipOutputStream(out);
+            for (String name : files.keySet()) {
+                byte[] content = next(entries, pending, repo);
+                ZipEntry e = new ZipEntry(name);
+                e.setTime(time);
+                zip.putNextEntry(e);
+                zip.write(content);
+                zip.closeEntry();
+            }
+            zip.finish();
+        } else {
+            long size = 0;
+            for (String name : files.keySet()) {
+                byte[] content = next(entries, pending, repo);
+                size += tarEntry(out, name, content, time / 1000);
+            }
+            size += 2 * BLOCK;
+            out.write(new byte[(int) (2 * BLOCK + (RECORD - size % RECORD)
+                    % RECORD)]);
+        }
+        out.flush();
+    }
+
+    /** Returns the contents of the next entry, after starting the reads of
+     * the entries following it up to READ_AHEAD ahead.
+     * @param entries blob ids by file name of the entries not yet read
+     * @param pending reads started, in order of entry
+     * @param repo the repository the blobs are read from
+     * @return the contents
+     */
+    private static byte[] next(Iterator<Map.Entry<String, String>> entries,
+                               ArrayDeque<CompletableFuture<byte[]>> pending,
+                               Repository repo) {
+        while (pending.size() < READ_AHEAD && entries.hasNext()) {
+            String id = entries.next().getValue();
+            pending.add(CompletableFuture.supplyAsync(() ->
+                    ((Blob) repo.readFile(".blobs", id)).getContent()
+                            .getBytes(StandardCharsets.UTF_8),
+                    ForkJoinPool.commonPool()));
+        }
+        return pending.poll().join();
+    }
+
+    /** Writes a tar entry for the file name with contents content, modified
+     * at time, preceded by a pax header when name does not fit the ustar
+     * header.
+     * @param out the stream
+     * @param name the file name
+     * @param content the contents
+     * @param time the modification time, in seconds since the epoch
+     * @return the number of bytes written
+     * @throws IOException if out cannot be written
+     */
+    private static long tarEntry(OutputStream out, String name,
+                                 byte[] content, long time)
+            throws IOException {
+        long ret = 0;
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > 100) {
+            String record = " path=" + name + "\n";
+            int length = record.getBytes(StandardCharsets.UTF_8).length;
+            int digits = Integer.toString(length).length();
+            if (Integer.toString(length + digits).length() > digits) {
+                digits += 1;
+            }
+            byte[] pax = ((length + digits) + record)
+                    .getBytes(StandardCharsets.UTF_8);
+            ret += tarBlocks(out, header("PaxHeader".getBytes(
+                    StandardCharsets.US_ASCII), pax.length, time, 'x'), pax);
+            nameBytes = Arrays.copyOf(nameBytes, 100);
+        }
+        return ret + tarBlocks(out,
+                header(nameBytes, content.length, time, '0'), content);
+    }
+
+    /** Returns a ustar header.
+     *
+     * @param name the entry name, at most 100 bytes
+     * @param size the size of the entry
+     * @param time the modification time, in seconds since the epoch
+     * @param type the type flag
+     * @return the header block
+     */
+    private static byte[] header(byte[] name, long size, long time,
+                                 char type) {
+        byte[] h = new byte[BLOCK];
+        System.arraycopy(name, 0, h, 0, name.length);
+        put(h, 100, "0000644");
+        put(h, 108, "0000000");
+        put(h, 116, "0000000");
+        put(h, 124, String.format("%011o", size));
+        put(h, 136, String.format("%011o", time));
+        Arrays.fill(h, 148, 156, (byte) ' ');
+        h[156] = (byte) type;
+        put(h, 257, "ustar");
+        put(h, 263, "00");
+        int sum = 0;
+        for (byte b : h) {
+            sum += b & 0xff;
+        }
+        put(h, 148, String.format("%06o", sum));
+        h[155] = ' ';
+        return h;
+    }
+
+    /** Writes header and then content padded to whole blocks.
+     *
+     * @param out the stream
+     * @param header the header block
+     * @param content the contents
+     * @return the number of bytes written
+     * @throws IOException if out cannot be written
+     */
+    private static long tarBlocks(OutputStream out, byte[] header,
+                                  byte[] content) throws IOException {
+        int padding = (BLOCK - content.length % BLOCK) % BLOCK;
+        out.write(header);
+        out.write(content);
+        out.write(new byte[padding]);
+        return BLOCK + content.length + padding;
+    }
+
+    /** Writes the ASCII characters of s into h at offset; the rest of the
+     * field is left NUL.
+     * @param h the header
+     * @param offset the offset of the field
+     * @param s the value
+     */
+    private static void put(byte[] h, int offset, String s) {
+        byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(b, 0, h, offset, b.length);
+    }
+
+    /** Returns the time of commit, in milliseconds since the epoch.
+     *
+     * @param commit the commit
+     * @return the time, or 0 if it cannot be read
+     */
+    private static long time(Commit commit) {
+        try {
+            return new SimpleDateFormat("E MMM d HH:mm:ss yyyy Z")
+                    .parse(commit.getTimestamp()).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/** Class holding reachability bitmaps for selected commits, stored in
+ * .gitlet/bitmaps.bin. Every object known to the index has a position;
+ * the bitmap of a commit has the positions of every commit and blob
+ * reachable from it set. Walks that reach a commit with a bitmap use it
+ * instead of reading the commit's history.
+ * @author Megan Hu*/
+class BitmapIndex implements Serializable {
+
+    /** Serial version of the index, fixed so that a stored index stays
+     * readable as the class changes. */
+    private static final long serialVersionUID = 1607204388735870724L;
+
+    /** Name of the file holding the index, in .gitlet. */
+    static final String FILE = "bitmaps.bin";
+
+    /** Commits on the first-parent history of a tip between two commits
+     * that get a bitmap. */
+    static final int SPACING = 100;
+
+    /** An empty index. */
+    private BitmapIndex() {
+        objects = new ArrayList<>();
+        positions = new HashMap<>();
+        commits = new RoaringBitmap();
+        bitmaps = new HashMap<>();
+    }
+
+    /** Returns the index of repository repo, or null if it has none.
+     *
+     * @param repo the repository
+     * @return the index, or null
+     */
+    static BitmapIndex load(Repository repo) {
+        File f = Utils.join(repo.root(), ".gitlet", FILE);
+        if (!f.isFile()) {
+            return null;
+        }
+        return (BitmapIndex) repo.readFile("", FILE);
+    }
+
+    /** Builds and writes a new index with bitmaps for tips and for every
+     * SPACING-th commit on their first-parent histories, replacing any
+     * existing index.
+     * @param repo the repository
+     * @param tips ids of the commits at the tips of the branches
+     * @return the number of bitmaps written
+     */
+    static int build(Repository repo, Collection<String> tips) {
+        BitmapIndex index = new BitmapIndex();
+        for (String tip : tips) {
+            ArrayList<String> chain = new ArrayList<>();
+            String id = tip;
+            int depth = 0;
+            while (id != null && !id.equals("")
+                    && !index.bitmaps.containsKey(id)) {
+                Commit c = (Commit) repo.readFile(".commits", id);
+                if (c == null) {
+                    break;
+                }
+                if (depth % SPACING == 0) {
+                    chain.add(id);
+                }
+                depth += 1;
+                id = c.getParent();
+            }
+            for (int i = chain.size() - 1; i >= 0; i -= 1) {
+                index.bitmaps.put(chain.get(i), index.reach(repo, chain.get(i),
+                        true));
+            }
+        }
+        repo.writeFile("", FILE, index);
+        return index.bitmaps.size();
+    }
+
+    /** Returns the number of commits and of blobs reachable from the commit
+     * with id id, using the index if there is one.
+     * @param repo the repository
+     * @param id id of the commit
+     * @return the number of commits and the number of blobs
+     */
+    static long[] count(Repository repo, String id) {
+        BitmapIndex index = load(repo);
+        if (index == null) {
+            index = new BitmapIndex();
+        }
+        RoaringBitmap reachable = index.reach(repo, id, true);
+        long commitCount = reachable.andCardinality(index.commits);
+        return new long[] {commitCount,
+            reachable.cardinality() - commitCount};
+    }
+
+    /** Returns whether the commit with id ancestor is the commit with id
+     * descendant or one of its ancestors, using the index if there is one.
+     * @param repo the repository
+     * @param ancestor id of the possible ancestor
+     * @param descendant id of the possible descendant
+     * @return true if ancestor is reachable from descendant
+     */
+    static boolean isAncestor(Repository repo, String ancestor,
+                              String descendant) {
+        BitmapIndex index = load(repo);
+        int pos = index == null ? -1 : index.position(ancestor);
+        ArrayDeque<String> queue = new ArrayDeque<>();
+        HashSet<String> seen = new HashSet<>();
+        queue.add(descendant);
+        while (!queue.isEmpty()) {
+            String id = queue.remove();
+            if (id.equals(ancestor)) {
+                return true;
+            }
+            if (!seen.add(id)) {
+                continue;
+            }
+            RoaringBitmap bitmap = index == null ? null
+                    : index.bitmaps.get(id);
+            if (bitmap != null) {
+                if (pos >= 0 && bitmap.contains(pos)) {
+                    return true;
+                }
+                continue;
+            }
+            Commit c = (Commit) repo.readFile(".commits", id);
+            if (!c.getParent().equals("")) {
+                queue.add(c.getParent());
+            }
+            if (c.getParent2() != null) {
+                queue.add(c.getParent2());
+            }
+        }
+        return false;
+    }
+
+    /** Returns the id of a lowest common ancestor of the commits with ids
+     * ours and theirs, following both parents: a commit reachable from both
+     * that is not an ancestor of another such commit. The commits reachable
+     * from theirs are found as a bitmap, using the index if there is one;
+     * history is then walked from ours only as far as the first commits in
+     * that bitmap, and of those the ones reachable from another are
+     * dropped. Of several that remain, as after criss-cross merges, the one
+     * found first from ours is returned.
+     * @param repo the repository
+     * @param ours id of the commit merged into
+     * @param theirs id of the commit merged
+     * @return the id of the common ancestor, or null if there is none
+     */
+    static String mergeBase(Repository repo, String ours, String theirs) {
+        BitmapIndex index = load(repo);
+        if (index == null) {
+            index = new BitmapIndex();
+        }
+        RoaringBitmap common = index.reach(repo, theirs, true);
+        ArrayList<String> candidates = new ArrayList<>();
+        ArrayDeque<String> queue = new ArrayDeque<>();
+        HashSet<String> seen = new HashSet<>();
+        queue.add(ours);
+        while (!queue.isEmpty()) {
+            String id = queue.remove();
+            if (!seen.add(id)) {
+                continue;
+            }
+            int pos = index.position(id);
+            if (pos >= 0 && common.contains(pos)) {
+                candidates.add(id);
+                continue;
+            }
+            Commit c = (Commit) repo.readFile(".commits", id);
+            if (!c.getParent().equals("")) {
+                queue.add(c.getParent());
+            }
+            if (c.getParent2() != null) {
+                queue.add(c.getParent2());
+            }
+        }
+        for (String candidate : candidates) {
+            boolean lowest = true;
+            for (String other : candidates) {
+                if (!other.equals(candidate) && index.reach(repo, other, true)
+                        .contains(index.position(candidate))) {
+                    lowest = false;
+                    break;
+                }
+            }
+            if (lowest) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the bitmap of the objects reachable from commit id, walking
+     * history only until commits that have a bitmap. Objects without a
+     * position are given one if assign, and left out otherwise.
+     * @param repo the repository
+     * @param id id of the commit
+     * @param assign whether to number objects the index does not know
+     * @return the bitmap
+     */
+    RoaringBitmap reach(Repository repo, String id, boolean assign) {
+        RoaringBitmap ret = new RoaringBitmap();
+        ArrayDeque<String> queue = new ArrayDeque<>();
+        HashSet<String> seen = new HashSet<>();
+        queue.add(id);
+        while (!queue.isEmpty()) {
+            String curr = queue.remove();
+            if (!seen.add(curr)) {
+                continue;
+            }
+            RoaringBitmap bitmap = bitmaps.get(curr);
+            if (bitmap != null) {
+                ret.or(bitmap);
+                continue;
+            }
+            Commit c = (Commit) repo.readFile(".commits", curr);
+            if (c == null) {
+                continue;
+            }
+            setBit(ret, curr, true, assign);
+            for (String blob : c.getBlobs().values()) {
+                setBit(ret, blob, false, assign);
+            }
+            if (!c.getParent().equals("")) {
+                queue.add(c.getParent());
+            }
+            if (c.getParent2() != null) {
+                queue.add(c.getParent2());
+            }
+        }
+        return ret;
+    }
+
+    /** Returns the bitmap stored for commit id, or null.
+     *
+     * @param id id of the commit
+     * @return the bitmap, or null
+     */
+    RoaringBitmap bitmap(String id) {
+        return bitmaps.get(id);
+    }
+
+    /** Returns the position of the object with id id, or -1.
+     *
+     * @param id the id of a commit or blob
+     * @return the position, or -1
+     */
+    int position(String id) {
+        Integer ret = positions.get(id);
+        return ret == null ? -1 : ret;
+    }
+
+    /** Returns the id of the object at position pos.
+     *
+     * @param pos the position
+     * @return the id
+     */
+    String objectAt(int pos) {
+        return objects.get(pos);
+    }
+
+    /** Returns the bitmap of the positions of commits.
+     *
+     * @return the bitmap
+     */
+    RoaringBitmap commits() {
+        return commits;
+    }
+
+    /** Sets the bit of object id in bitmap.
+     *
+     * @param bitmap the bitmap
+     * @param id the id of the object
+     * @param commit whether the object is a commit
+     * @param assign whether to give the object a position if it has none
+     */
+    private void setBit(RoaringBitmap bitmap, String id, boolean commit,
+                        boolean assign) {
+        int pos = position(id);
+        if (pos < 0) {
+            if (!assign) {
+                return;
+            }
+            pos = objects.size();
+            objects.add(id);
+            positions.put(id, pos);
+            if (commit) {
+                commits.add(pos);
+            }
+        }
+        bitmap.add(pos);
+    }
+
+    /** Rebuilds the map of positions when the index is read.
+     *
+     * @param in the stream the index is read from
+     * @throws IOException if the stream cannot be read
+     * @throws ClassNotFoundException if a class of the index is missing
+     */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        positions = new HashMap<>();
+        for (int i = 0; i < objects.size(); i += 1) {
+            positions.put(objects.get(i), i);
+        }
+    }
+
+    /** Ids of the objects, by position. */
+    private ArrayList<String> objects;
+    /** Positions of the objects, by id. */
+    private transient HashMap<String, Integer> positions;
+    /** Positions of the objects that are commits. */
+    private RoaringBitmap commits;
+    /** Reachability bitmaps, by commit id. */
+    private HashMap<String, RoaringBitmap> bitmaps;
+}
@@ -6,6 +6,10 @@ import java.io.Serializable;
  * @author Megan Hu*/
 public class Blob implements Serializable {
 
+    /** Serial version of blobs, fixed so that stored blobs stay readable
+     * as the class changes. */
+    private static final long serialVersionUID = 3295701117377507224L;
+
     /** Constructor for the Blob Class. Sets name, content, and hashValue.
      * @param n the blob's name
      * @param c the blob's content*/
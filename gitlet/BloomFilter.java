@@ -0,0 +1,106 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/** A Bloom filter of strings, used to record which files a commit changed.
+ * A filter never reports that it lacks a string that was added; it may
+ * report holding a string that was not, with a probability of about 1%
+ * at BITS_PER_KEY bits and HASHES hash functions per string.
+ * @author Megan Hu*/
+class BloomFilter implements Serializable {
+
+    /** Serial version of filters, fixed so that stored filters stay
+     * readable as the class changes. */
+    private static final long serialVersionUID = 7512320673292992596L;
+
+    /** Bits of filter per string added. */
+    static final int BITS_PER_KEY = 10;
+
+    /** Number of bits set for each string. */
+    static final int HASHES = 7;
+
+    /** Creates a filter holding keys.
+     *
+     * @param keys the strings to add
+     */
+    BloomFilter(Collection<String> keys) {
+        int bits = Math.max(64, keys.size() * BITS_PER_KEY);
+        words = new long[(bits + 63) / 64];
+        for (String key : keys) {
+            add(key);
+        }
+    }
+
+    /** Adds key to this filter.
+     *
+     * @param key the string
+     */
+    void add(String key) {
+        long h = hash(key);
+        for (int i = 0; i < HASHES; i += 1) {
+            int bit = bit(h, i);
+            words[bit >>> 6] |= 1L << (bit & 63);
+        }
+    }
+
+    /** Returns false if key was certainly not added to this filter.
+     *
+     * @param key the string
+     * @return true if key may have been added
+     */
+    boolean mightContain(String key) {
+        long h = hash(key);
+        for (int i = 0; i < HASHES; i += 1) {
+            int bit = bit(h, i);
+            if ((words[bit >>> 6] & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the i-th bit set for a string with hash h. Each bit comes
+     * from mixing h with a different constant, rather than from double
+     * hashing, which repeats bit patterns in small filters.
+     * @param h the hash of the string
+     * @param i which of the HASHES bits
+     * @return the bit
+     */
+    private int bit(long h, int i) {
+        long x = mix(h + (i + 1) * 0x9e3779b97f4a7c15L);
+        return (int) Math.floorMod(x, (long) words.length * 64);
+    }
+
+    /** Returns a 64-bit hash of key: FNV-1a over its UTF-8 bytes.
+     *
+     * @param key the string
+     * @return the hash
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /** Returns x mixed by the MurmurHash3 finalizer.
+     *
+     * @param x the value
+     * @return the mixed value
+     */
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+
+    /** The bits of the filter. */
+    private final long[] words;
+}
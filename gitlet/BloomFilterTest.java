@@ -0,0 +1,68 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the changed-path Bloom filters kept for commits.
+ *  @author Megan Hu
+ */
+public class BloomFilterTest {
+
+    /** Number of strings queried when measuring false positives. */
+    private static final int QUERIES = 100000;
+
+    /** Returns n file names under a few directories.
+     *
+     * @param n the number of names
+     * @return the names
+     */
+    private static ArrayList<String> paths(int n) {
+        ArrayList<String> ret = new ArrayList<>();
+        for (int i = 0; i < n; i += 1) {
+            ret.add("src/dir" + (i % 17) + "/file" + i + ".txt");
+        }
+        return ret;
+    }
+
+    /** Returns the fraction of QUERIES names never added that filter
+     * reports it may hold.
+     * @param filter the filter
+     * @return the measured false-positive rate
+     */
+    private static double falsePositiveRate(BloomFilter filter) {
+        int hits = 0;
+        for (int i = 0; i < QUERIES; i += 1) {
+            if (filter.mightContain("other/file" + i + ".java")) {
+                hits += 1;
+            }
+        }
+        return (double) hits / QUERIES;
+    }
+
+    @Test
+    public void noFalseNegatives() {
+        ArrayList<String> keys = paths(1000);
+        BloomFilter filter = new BloomFilter(keys);
+        for (String key : keys) {
+            assertTrue(key, filter.mightContain(key));
+        }
+    }
+
+    @Test
+    public void falsePositiveRate() {
+        for (int n : new int[] {1, 5, 50, 1000}) {
+            double rate = falsePositiveRate(new BloomFilter(paths(n)));
+            assertTrue(n + " keys: false-positive rate " + rate,
+                    rate < 0.015);
+        }
+    }
+
+    @Test
+    public void emptyFilterHoldsNothing() {
+        BloomFilter filter = new BloomFilter(Collections.emptyList());
+        assertEquals(0.0, falsePositiveRate(filter), 0.0);
+    }
+
+}
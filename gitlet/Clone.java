@@ -0,0 +1,204 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/** Cloning of a repository on the local filesystem. Commits, blobs and
+ * the files derived from them are never changed once written, since
+ * Repository.writeFile replaces files rather than rewriting them, so the clone
+ * shares them with the source through hard links, copying only where the
+ * filesystem refuses a link. The indexes, which are rewritten in place,
+ * are copied. The branch checked out is then written to the working
+ * directory by parallel tasks, so a clone costs about as much as its
+ * working tree rather than its history.
+ * @author Megan Hu*/
+final class Clone {
+
+    /** Directories of immutable files, in .gitlet, shared by links. */
+    private static final String[] SHARED = {
+        ".commits", ".blobs", CommitMeta.DIR, Renames.DIR
+    };
+
+    /** Not instantiable. */
+    private Clone() {
+    }
+
+    /** Clones the repository whose working or .gitlet directory is source
+     * into the new or empty directory target, both relative to the working
+     * directory of repo if not absolute. The clone has a remote named
+     * origin for source, a branch origin/B for each branch B of source, and
+     * branch checked out, or the current branch of source if branch is
+     * null. A partial clone takes only the blobs of that branch's head, and
+     * fetches others from origin when they are needed.
+     * @param repo the repository the command runs in
+     * @param source the repository cloned
+     * @param target the directory of the clone
+     * @param branch the branch to check out, or null
+     * @param partial whether to leave out the blobs of other commits
+     */
+    static void run(Repository repo, String source, String target,
+                    String branch, boolean partial) {
+        File src = resolve(repo, source);
+        if (!src.getName().equals(".gitlet")) {
+            src = new File(src, ".gitlet");
+        }
+        if (!new File(src, "tree.bin").isFile()) {
+            repo.out().println("Remote directory not found.");
+            return;
+        }
+        File dst = resolve(repo, target);
+        String[] existing = dst.list();
+        if (existing != null && existing.length > 0 || dst.isFile()) {
+            repo.out().println("Destination directory is not empty.");
+            return;
+        }
+        Repository from = new Repository(src.getParentFile(), repo.out());
+        TreeMap<String, String> heads = new TreeMap<>();
+        Refs.forEach(from, Refs.HEADS, (ref, id) ->
+                heads.put(ref.substring(Refs.HEADS.length()), id));
+        String current = ((Tree) from.readFile("", "tree.bin"))
+                .getCurrBranch();
+        String checkedOut = branch == null ? current : branch;
+        if (!heads.containsKey(checkedOut)) {
+            repo.out().println("That remote does not have that branch.");
+            return;
+        }
+        dst.mkdirs();
+        Repository to = new Repository(dst, repo.out());
+        to.makeInit();
+        String id = heads.get(checkedOut);
+        Commit head = (Commit) from.readFile(".commits", id);
+        share(to, src, partial ? new HashSet<>(head.getBlobs().values())
+                : null);
+        copy(to, src, MessageIndex.DIR);
+        copy(to, src, BitmapIndex.FILE);
+        Remote.add(to, "origin", src.getAbsolutePath());
+        for (Map.Entry<String, String> e : heads.entrySet()) {
+            Refs.update(to, Refs.head("origin/" + e.getKey()), e.getValue());
+        }
+        if (partial) {
+            PartialClone.mark(to, "origin");
+        }
+        String message = "clone: from " + src.getAbsolutePath();
+        Refs.update(to, Refs.head(checkedOut), id);
+        Reflog.append(to, Refs.head(checkedOut), null, id, message);
+        Reflog.append(to, Reflog.HEAD, null, id, message);
+        checkout(to, head);
+        to.setTree(new Tree(to, checkedOut));
+        to.setStage(new Stage(to));
+        to.stage().setCurrentBlobs(head);
+        to.save();
+    }
+
+    /** Links, or copies where links fail, every file of the directories
+     * SHARED of the .gitlet directory src into repository repo, but of the
+     * blobs only those in blobs unless it is null.
+     * @param repo the repository
+     * @param src the .gitlet directory of the source
+     * @param blobs ids of the blobs to share, or null for all
+     */
+    private static void share(Repository repo, File src,
+                              Collection<String> blobs) {
+        ArrayList<Path[]> files = new ArrayList<>();
+        Path dst = Utils.join(repo.root(), ".gitlet").toPath();
+        for (String dir : SHARED) {
+            File[] children = new File(src, dir).listFiles();
+            if (children == null) {
+                continue;
+            }
+            dst.resolve(dir).toFile().mkdirs();
+            for (File f : children) {
+                if (f.isFile() && !f.getName().endsWith(".tmp")
+                        && (blobs == null || !dir.equals(".blobs")
+                        || blobs.contains(f.getName()))) {
+                    files.add(new Path[] {f.toPath(),
+                        dst.resolve(dir).resolve(f.getName())});
+                }
+            }
+        }
+        AtomicBoolean linkable = new AtomicBoolean(true);
+        files.parallelStream().forEach(p -> {
+            try {
+                if (linkable.get()) {
+                    try {
+                        Files.createLink(p[1], p[0]);
+                        return;
+                    } catch (FileSystemException
+                            | UnsupportedOperationException e) {
+                        linkable.set(false);
+                    }
+                }
+                Files.copy(p[0], p[1], StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                repo.out().println("IOException: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Copies the file or directory name of the .gitlet directory src, if
+     * it exists, into repository repo.
+     * @param repo the repository
+     * @param src the .gitlet directory of the source
+     * @param name the file or directory, in .gitlet
+     */
+    private static void copy(Repository repo, File src, String name) {
+        Path from = new File(src, name).toPath();
+        if (!Files.exists(from)) {
+            return;
+        }
+        Path to = Utils.join(repo.root(), ".gitlet", name).toPath();
+        try (Stream<Path> paths = Files.walk(from)) {
+            List<Path> all = paths.collect(Collectors.toList());
+            for (Path p : all) {
+                Path target = to.resolve(from.relativize(p).toString());
+                if (Files.isDirectory(p)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(p, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } catch (IOException e) {
+            repo.out().println("IOException: " + e.getMessage());
+        }
+    }
+
+    /** Writes the files of commit to the working directory of repo, each
+     * by a task of the common fork-join pool.
+     * @param repo the repository
+     * @param commit the commit
+     */
+    private static void checkout(Repository repo, Commit commit) {
+        commit.getBlobs().entrySet().parallelStream().forEach(e -> {
+            Blob blob = (Blob) repo.readFile(".blobs", e.getValue());
+            repo.writeToCWD("", e.getKey(), blob.getContent());
+        });
+    }
+
+    /** Returns path as a file, relative to the working directory of repo if
+     * it is not absolute, with . and .. removed so that it does not depend on
+     * the directories it passes through existing.
+     * @param repo the repository
+     * @param path the path, with / as the separator
+     * @return the file
+     */
+    private static File resolve(Repository repo, String path) {
+        File ret = new File(path.replace('/', File.separatorChar));
+        if (!ret.isAbsolute()) {
+            ret = new File(repo.root(), ret.getPath());
+        }
+        return ret.toPath().toAbsolutePath().normalize().toFile();
+    }
+}
@@ -4,86 +4,79 @@ import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 /** Class representing a commit object.
  * @author Megan Hu*/
 public class Commit implements Serializable {
 
+    /** Serial version of commits, fixed so that stored commits stay
+     * readable as the class changes. */
+    private static final long serialVersionUID = -488292726319435340L;
+
     /** Constructor for the Commit class. Sets parent, message, addedFiles,
-     * and removedFiles.
-     * @param p parent 1 of the commit.
+     * removedFiles, and the time of the commit.
+     * @param p parent 1 of the commit, or null for the initial commit.
      * @param p2 parent 2 of the commit, if it exists.
      * @param m message associated with the commit.
      * @param addedFiles files to be added.
-     * @param removedFiles files to be removed.*/
-    @SuppressWarnings("unchecked")
-    Commit(String p, String p2, String m, HashMap<String, String> addedFiles,
-           HashMap<String, String> removedFiles) {
+     * @param removedFiles files to be removed.
+     * @param date time of the commit.*/
+    Commit(Commit p, String p2, String m, HashMap<String, String> addedFiles,
+           HashMap<String, String> removedFiles, Date date) {
+        Events.CommitCreate event = new Events.CommitCreate();
+        event.begin();
         this.message = m;
-        if (p.equals("")) {
-            this.timestamp = new SimpleDateFormat(
-                    "E MMM d HH:mm:ss yyyy Z").format(new Date(0));
-        } else {
-            this.timestamp = new SimpleDateFormat(
-                    "E MMM d HH:mm:ss yyyy Z").format(new Date());
-        }
+        this.timestamp = new SimpleDateFormat(
+                "E MMM d HH:mm:ss yyyy Z").format(date);
         if (!(p2.equals(""))) {
             this._parent2 = p2;
         } else {
             this._parent2 = null;
         }
-        this.parent = p;
-        if (!p.equals("")) {
-            blobs = (HashMap<String, String>)
-                    ((Commit) Main.readFile(".commits", getParent()))
-                            .getBlobs().clone();
+        PersistentMap<String, String> files;
+        if (p != null) {
+            this.parent = p.getId();
+            files = PersistentMap.copyOf(p.getBlobs());
         } else {
-            this.blobs = new HashMap<>();
+            this.parent = "";
+            files = PersistentMap.empty();
         }
 
+        changedPaths = new HashSet<>();
         for (String key: addedFiles.keySet()) {
-            blobs.put(key, addedFiles.get(key));
+            PersistentMap<String, String> next =
+                    files.plus(key, addedFiles.get(key));
+            if (next != files) {
+                changedPaths.add(key);
+            }
+            files = next;
         }
 
         for (String key: removedFiles.keySet()) {
-            try {
-                blobs.remove(key);
-            } catch (IllegalArgumentException i) {
-                System.out.println(i.getMessage());
+            PersistentMap<String, String> next = files.minus(key);
+            if (next != files) {
+                changedPaths.add(key);
             }
+            files = next;
         }
+        blobs = files;
 
-        String idText = "commit";
+        StringBuilder idText = new StringBuilder("commit");
         for (String key: blobs.keySet()) {
-            idText += key;
+            idText.append(key);
         }
-        idText = idText + p + m + timestamp;
-        id = Utils.sha1(idText);
-    }
-
-    /** Returns the latest common ancestor of this and branch.
-     * @param branch the name of the commit
-     * @return the latest common ancestor of this and branch
-     */
-    public Commit findSplit(Commit branch) {
-        Commit one = this;
-        Commit two = branch;
-        HashMap<String, Commit> oneParent = new HashMap<>();
-        oneParent.put(one.message, one);
-        while (!one.getParent().equals("")) {
-            one = (Commit) Main.readFile(".commits", one.getParent());
-            oneParent.put(one.message, one);
+        idText.append(parent).append(m).append(timestamp);
+        id = Utils.sha1(idText.toString());
+        if (event.shouldCommit()) {
+            event.id = id;
+            event.parent = parent;
+            event.changed = changedPaths.size();
+            event.files = blobs.size();
+            event.commit();
         }
-        while (!two.getParent().equals("")) {
-            if (oneParent.containsKey(two.message)) {
-                return oneParent.get(two.message);
-            }
-            two = (Commit) Main.readFile(".commits", two.getParent());
-            if (oneParent.containsKey(two.message)) {
-                return oneParent.get(two.message);
-            }
-        }
-        return null;
     }
 
     /** Getter method for this._parent2.
@@ -130,10 +123,18 @@ public class Commit implements Serializable {
      *
      * @return the blobs of this commit
      */
-    public HashMap<String, String> getBlobs() {
+    public Map<String, String> getBlobs() {
         return this.blobs;
     }
 
+    /** Returns the names of the files whose blobs differ from those of the
+     * first parent. Only known for commits created by this process.
+     * @return the changed file names, or null for commits that were read
+     */
+    public Set<String> getChangedPaths() {
+        return this.changedPaths;
+    }
+
     /** The timestamp of the commit. */
     private String timestamp;
     /** The messsage of the commit. */
@@ -144,6 +145,11 @@ public class Commit implements Serializable {
     private String _parent2;
     /** The id of the commit. */
     private String id;
-    /** The blobs associated with the commit. */
-    private HashMap<String, String> blobs;
+    /** The blobs associated with the commit: a PersistentMap sharing the
+     * unchanged part of its parent's, or a HashMap in commits written
+     * before PersistentMap was introduced. */
+    private Map<String, String> blobs;
+    /** Files changed from the first parent, when this commit was created
+     * rather than read. */
+    private transient HashSet<String> changedPaths;
 }
@@ -0,0 +1,84 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+
+/** Class holding what history walks need to know about a commit without
+ * reading the commit and its blobs: its parents and a Bloom filter of the
+ * files it changed from its first parent. Stored in .gitlet/.commitmeta
+ * under the commit's id, for commits created since it was introduced.
+ * @author Megan Hu*/
+class CommitMeta implements Serializable {
+
+    /** Serial version of commit metadata, fixed so that stored metadata
+     * stays readable as the class changes. */
+    private static final long serialVersionUID = -5120194032504638245L;
+
+    /** Directory of commit metadata, in .gitlet. */
+    static final String DIR = ".commitmeta";
+
+    /** Metadata of commit, which must have just been created.
+     *
+     * @param commit the commit
+     */
+    CommitMeta(Commit commit) {
+        parent = commit.getParent();
+        parent2 = commit.getParent2();
+        changed = new BloomFilter(commit.getChangedPaths());
+    }
+
+    /** Writes the metadata of commit, which must have just been created.
+     *
+     * @param repo the repository
+     * @param commit the commit
+     */
+    static void write(Repository repo, Commit commit) {
+        repo.writeFile(DIR, commit.getId(), new CommitMeta(commit));
+    }
+
+    /** Returns the metadata of the commit with id id, or null if it has
+     * none.
+     * @param repo the repository
+     * @param id id of the commit
+     * @return the metadata, or null
+     */
+    static CommitMeta read(Repository repo, String id) {
+        File f = Utils.join(repo.root(), ".gitlet", DIR, id);
+        if (!f.isFile()) {
+            return null;
+        }
+        return (CommitMeta) repo.readFile(DIR, id);
+    }
+
+    /** Returns false if the commit certainly did not change the file named
+     * fileName.
+     * @param fileName name of the file
+     * @return true if the commit may have changed the file
+     */
+    boolean mightChange(String fileName) {
+        return changed.mightContain(fileName);
+    }
+
+    /** Getter method for parent.
+     *
+     * @return the id of the first parent, or "" for the initial commit
+     */
+    String getParent() {
+        return parent;
+    }
+
+    /** Getter method for parent2.
+     *
+     * @return the id of the second parent, or null
+     */
+    String getParent2() {
+        return parent2;
+    }
+
+    /** The first parent of the commit. */
+    private String parent;
+    /** The second parent of the commit, if it is a merge commit. */
+    private String parent2;
+    /** The files the commit changed from its first parent. */
+    private BloomFilter changed;
+}
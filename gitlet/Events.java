@@ -0,0 +1,144 @@
+package gitlet;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Java Flight Recorder events of gitlet's work, shown under "Gitlet" in
+ * JDK Mission Control next to the JVM's own GC and I/O events. Callers
+ * create an event, call begin() before the work and, if shouldCommit()
+ * after it, fill in its fields and commit() it; while no recording enables
+ * an event, shouldCommit() is false and the JIT removes the rest.
+ * @author Megan Hu*/
+final class Events {
+
+    /** Not instantiable. */
+    private Events() {
+    }
+
+    /** An object deserialized from the object store. */
+    @Name("gitlet.ObjectRead")
+    @Label("Object Read")
+    @Category({"Gitlet", "Object Store"})
+    @Description("An object read from .gitlet")
+    @StackTrace(false)
+    static final class ObjectRead extends Event {
+        /** Directory of the object in .gitlet, such as .commits. */
+        @Label("Type")
+        String type;
+        /** Name of the object's file, its id for commits and blobs. */
+        @Label("Id")
+        String id;
+        /** Size of the object's file. */
+        @Label("Size")
+        @DataAmount
+        long size;
+        /** Whether the object came from memory rather than its file. */
+        @Label("Cache Hit")
+        boolean cacheHit;
+    }
+
+    /** An object serialized to the object store. */
+    @Name("gitlet.ObjectWrite")
+    @Label("Object Write")
+    @Category({"Gitlet", "Object Store"})
+    @Description("An object written to .gitlet")
+    @StackTrace(false)
+    static final class ObjectWrite extends Event {
+        /** Directory of the object in .gitlet, such as .blobs. */
+        @Label("Type")
+        String type;
+        /** Name of the object's file, its id for commits and blobs. */
+        @Label("Id")
+        String id;
+        /** Size of the object's file. */
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+    /** A commit object built from its parent and staged changes. */
+    @Name("gitlet.CommitCreate")
+    @Label("Commit Creation")
+    @Category({"Gitlet", "History"})
+    @Description("A new commit built in memory")
+    static final class CommitCreate extends Event {
+        /** Id of the new commit. */
+        @Label("Id")
+        String id;
+        /** Id of its first parent, or "" for the initial commit. */
+        @Label("Parent")
+        String parent;
+        /** Number of files the commit changed from its first parent. */
+        @Label("Changed Files")
+        int changed;
+        /** Number of files the commit tracks. */
+        @Label("Files")
+        int files;
+    }
+
+    /** A search for the split point of a merge. */
+    @Name("gitlet.MergeBase")
+    @Label("Merge Base")
+    @Category({"Gitlet", "History"})
+    @Description("Computation of the split point of two commits")
+    static final class MergeBase extends Event {
+        /** Id of the head commit of the current branch. */
+        @Label("Ours")
+        String ours;
+        /** Id of the head commit of the given branch. */
+        @Label("Theirs")
+        String theirs;
+        /** Id of the split point, or "" if none was needed. */
+        @Label("Base")
+        String base;
+    }
+
+    /** A scan of the working directory for changed and untracked files. */
+    @Name("gitlet.WorkingTreeScan")
+    @Label("Working Tree Scan")
+    @Category({"Gitlet", "Working Tree"})
+    @Description("A comparison of the working directory with the stage")
+    static final class WorkingTreeScan extends Event {
+        /** Number of files in the working directory. */
+        @Label("Files")
+        int files;
+        /** Number of tracked files found modified. */
+        @Label("Modified")
+        int modified;
+        /** Number of tracked files found deleted. */
+        @Label("Deleted")
+        int deleted;
+        /** Number of untracked files. */
+        @Label("Untracked")
+        int untracked;
+    }
+
+    /** Objects copied from one repository to another in a pack. */
+    @Name("gitlet.Transfer")
+    @Label("Transfer")
+    @Category({"Gitlet", "Remotes"})
+    @Description("A pack of commits and blobs sent to another repository")
+    static final class Transfer extends Event {
+        /** Root of the repository sending. */
+        @Label("From")
+        String from;
+        /** Root of the repository receiving. */
+        @Label("To")
+        String to;
+        /** Number of commits sent. */
+        @Label("Commits")
+        int commits;
+        /** Number of blobs sent. */
+        @Label("Blobs")
+        int blobs;
+        /** Total size of the objects' files. */
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+}
@@ -0,0 +1,339 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/** Class implementing the gc command. Marks every commit and blob
+ * reachable from a branch, a stash entry, a reflog entry or the stage,
+ * walking commits in parallel and recording marks in a bitset indexed by
+ * the position of an id among the sorted ids of all objects, then deletes
+ * unmarked objects older than a grace period. Commits with a reachability
+ * bitmap mark everything they reach at once, and new bitmaps are written
+ * at the end.
+ * @author Megan Hu*/
+class GarbageCollector {
+
+    /** Default grace period, in seconds: two weeks. */
+    static final long DEFAULT_GRACE = 14 * 24 * 60 * 60;
+
+    /** Creates a collector for the objects of repository repo.
+     *
+     * @param repo the repository
+     * @param graceSeconds unreachable objects modified less than this many
+     *                     seconds ago are kept
+     */
+    GarbageCollector(Repository repo, long graceSeconds) {
+        this.repo = repo;
+        grace = graceSeconds * 1000;
+        commits = sortedNames(".commits");
+        blobs = sortedNames(".blobs");
+        commitMarks = new AtomicLongArray((commits.length + 63) / 64);
+        blobMarks = new AtomicLongArray((blobs.length + 63) / 64);
+        bitmaps = BitmapIndex.load(repo);
+    }
+
+    /** Runs the collection, printing what was freed and how long marking
+     * and sweeping took.
+     */
+    void run() {
+        long start = System.nanoTime();
+        mark(roots());
+        markStashes();
+        long marked = System.nanoTime();
+        long[] freed = new long[2];
+        HashSet<String> removedCommits = new HashSet<>();
+        for (int i = 0; i < commits.length; i += 1) {
+            if (!isSet(commitMarks, i)
+                    && sweep(".commits", commits[i], freed)) {
+                removedCommits.add(commits[i]);
+                repo.deleteFile(CommitMeta.DIR, commits[i]);
+            }
+        }
+        for (int i = 0; i < blobs.length; i += 1) {
+            if (!isSet(blobMarks, i) && sweep(".blobs", blobs[i], freed)) {
+                repo.deleteFile(Renames.DIR, blobs[i]);
+            }
+        }
+        HashSet<String> staged = new HashSet<>(
+                repo.stage().getStagedAdded().values());
+        for (String name : sortedNames(".stagedblobs")) {
+            if (!staged.contains(name)) {
+                sweep(".stagedblobs", name, freed);
+            }
+        }
+        MessageIndex.removeAll(repo, removedCommits);
+        Refs.pack(repo);
+        long swept = System.nanoTime();
+        ArrayList<String> tips = new ArrayList<>();
+        Refs.forEach(repo, "", (name, id) -> {
+            if (!name.startsWith(Stash.PREFIX)) {
+                tips.add(id);
+            }
+        });
+        int written = BitmapIndex.build(repo, tips);
+        long indexed = System.nanoTime();
+        repo.out().println("Marked " + (count(commitMarks) + count(blobMarks))
+                + " of " + (commits.length + blobs.length) + " objects in "
+                + (marked - start) / 1000000 + " ms.");
+        repo.out().println("Removed " + freed[0] + " objects, freeing "
+                + freed[1] + " bytes, in " + (swept - marked) / 1000000
+                + " ms.");
+        repo.out().println("Wrote " + written + " reachability bitmaps in "
+                + (indexed - swept) / 1000000 + " ms.");
+    }
+
+    /** Returns the ids of the commits everything reachable is reached
+     * from: branch heads, the parents of stash entries and every id
+     * recorded in a reflog.
+     * @return the root commit ids
+     */
+    private List<String> roots() {
+        ArrayList<String> ret = new ArrayList<>();
+        Refs.forEach(repo, "", (name, id) -> ret.add(id));
+        for (Commit entry : Stash.all(repo)) {
+            ret.add(entry.getParent());
+        }
+        Path logs = Utils.join(repo.root(), ".gitlet", "logs").toPath();
+        if (!Files.isDirectory(logs)) {
+            return ret;
+        }
+        try (Stream<Path> paths = Files.walk(logs)) {
+            for (Path p : (Iterable<Path>) paths::iterator) {
+                if (!Files.isRegularFile(p)) {
+                    continue;
+                }
+                try (BufferedReader in = Files.newBufferedReader(p,
+                        StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        String[] fields = line.split(" ", 3);
+                        if (fields.length > 1) {
+                            ret.add(fields[0]);
+                            ret.add(fields[1]);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            repo.out().println("IOException: " + e.getMessage());
+        }
+        return ret;
+    }
+
+    /** Marks the blobs of every stash entry, whose commits are kept out of
+     * .commits and so are not reached by mark.
+     */
+    private void markStashes() {
+        for (Commit entry : Stash.all(repo)) {
+            for (String blob : entry.getBlobs().values()) {
+                int j = Arrays.binarySearch(blobs, blob);
+                if (j >= 0) {
+                    set(blobMarks, j);
+                }
+            }
+        }
+    }
+
+    /** Marks the commits with ids roots, their ancestors, and their blobs.
+     *
+     * @param roots the root commit ids
+     */
+    void mark(List<String> roots) {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            pool.invoke(new MarkTask(null, roots));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Task marking a commit and forking a task for each of its parents,
+     * or forking a task for each commit of a group. Completes when every
+     * task it forked has.
+     */
+    private class MarkTask extends CountedCompleter<Void> {
+
+        /** Serial version of tasks, which are never serialized. */
+        private static final long serialVersionUID = -1898402505770678389L;
+
+        /** A task marking ids, forked by parent.
+         *
+         * @param parent the task that forked this one, or null
+         * @param ids ids of the commits to mark
+         */
+        MarkTask(CountedCompleter<?> parent, List<String> ids) {
+            super(parent);
+            this.ids = ids;
+        }
+
+        @Override
+        public void compute() {
+            if (ids.size() > 1) {
+                for (String id : ids) {
+                    addToPendingCount(1);
+                    new MarkTask(this, Arrays.asList(id)).fork();
+                }
+                tryComplete();
+                return;
+            }
+            for (String id : ids) {
+                int i = Arrays.binarySearch(commits, id);
+                if (i < 0 || !set(commitMarks, i)) {
+                    continue;
+                }
+                RoaringBitmap bitmap = bitmaps == null ? null
+                        : bitmaps.bitmap(id);
+                if (bitmap != null) {
+                    bitmap.forEach(this::markPosition);
+                    continue;
+                }
+                Commit c = (Commit) repo.readFile(".commits", id);
+                for (String blob : c.getBlobs().values()) {
+                    int j = Arrays.binarySearch(blobs, blob);
+                    if (j >= 0) {
+                        set(blobMarks, j);
+                    }
+                }
+                ArrayList<String> parents = new ArrayList<>();
+                if (!c.getParent().equals("")) {
+                    parents.add(c.getParent());
+                }
+                if (c.getParent2() != null) {
+                    parents.add(c.getParent2());
+                }
+                for (String p : parents) {
+                    addToPendingCount(1);
+                    new MarkTask(this, Arrays.asList(p)).fork();
+                }
+            }
+            tryComplete();
+        }
+
+        /** Marks the object at position pos of the bitmap index.
+         *
+         * @param pos the position
+         */
+        private void markPosition(int pos) {
+            String obj = bitmaps.objectAt(pos);
+            if (bitmaps.commits().contains(pos)) {
+                int j = Arrays.binarySearch(commits, obj);
+                if (j >= 0) {
+                    set(commitMarks, j);
+                }
+            } else {
+                int j = Arrays.binarySearch(blobs, obj);
+                if (j >= 0) {
+                    set(blobMarks, j);
+                }
+            }
+        }
+
+        /** Ids of the commits this task marks. */
+        private final List<String> ids;
+    }
+
+    /** Deletes dir/name if it was not modified within the grace period,
+     * adding it to freed.
+     * @param dir the object directory
+     * @param name the id of the object
+     * @param freed count of deleted objects and their total size in bytes
+     * @return true if the object was deleted
+     */
+    private boolean sweep(String dir, String name, long[] freed) {
+        File f = Utils.join(repo.root(), ".gitlet", dir, name);
+        if (System.currentTimeMillis() - f.lastModified() < grace) {
+            return false;
+        }
+        long size = f.length();
+        if (!f.delete()) {
+            return false;
+        }
+        ObjectCache.remove(f.getPath());
+        freed[0] += 1;
+        freed[1] += size;
+        return true;
+    }
+
+    /** Returns the sorted names of the files in dir.
+     *
+     * @param dir a directory of .gitlet
+     * @return the sorted names
+     */
+    private String[] sortedNames(String dir) {
+        File d = Utils.join(repo.root(), ".gitlet", dir);
+        if (!d.isDirectory()) {
+            return new String[0];
+        }
+        List<String> names = Utils.plainFilenamesIn(d);
+        return names.toArray(new String[0]);
+    }
+
+    /** Sets bit i of bits.
+     *
+     * @param bits the bitset
+     * @param i the bit
+     * @return true if the bit was not already set
+     */
+    private static boolean set(AtomicLongArray bits, int i) {
+        long mask = 1L << (i & 63);
+        while (true) {
+            long old = bits.get(i >>> 6);
+            if ((old & mask) != 0) {
+                return false;
+            }
+            if (bits.compareAndSet(i >>> 6, old, old | mask)) {
+                return true;
+            }
+        }
+    }
+
+    /** Returns whether bit i of bits is set.
+     *
+     * @param bits the bitset
+     * @param i the bit
+     * @return true if set
+     */
+    private static boolean isSet(AtomicLongArray bits, int i) {
+        return (bits.get(i >>> 6) & (1L << (i & 63))) != 0;
+    }
+
+    /** Returns the number of bits set in bits.
+     *
+     * @param bits the bitset
+     * @return the number of bits set
+     */
+    private static long count(AtomicLongArray bits) {
+        long ret = 0;
+        for (int i = 0; i < bits.length(); i += 1) {
+            ret += Long.bitCount(bits.get(i));
+        }
+        return ret;
+    }
+
+    /** Grace period, in milliseconds. */
+    private final long grace;
+    /** Sorted ids of all commits. */
+    private final String[] commits;
+    /** Sorted ids of all blobs. */
+    private final String[] blobs;
+    /** Marks of commits, bit i standing for commits[i]. */
+    private final AtomicLongArray commitMarks;
+    /** Marks of blobs, bit i standing for blobs[i]. */
+    private final AtomicLongArray blobMarks;
+    /** Reachability bitmaps written by the last collection, or null. */
+    private final BitmapIndex bitmaps;
+    /** The repository collected. */
+    private final Repository repo;
+}
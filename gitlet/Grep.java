@@ -0,0 +1,90 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Search of the files of commits for lines matching a regular expression,
+ * reading blobs from the object store rather than a checkout. Every
+ * distinct blob of the commits is searched once, by a task of the common
+ * fork-join pool, however many commits hold it; the tasks are started in
+ * the order their results are printed, so matches are printed as soon as
+ * the blobs before them have been searched, in order of commit and then
+ * file name.
+ * @author Megan Hu*/
+final class Grep {
+
+    /** Not instantiable. */
+    private Grep() {
+    }
+
+    /** Prints, for each of commits and each of its files in order of name,
+     * the lines matching pattern as FILE:LINE:TEXT, prefixed by the label
+     * of the commit and a colon unless it is null.
+     * @param repo the repository
+     * @param pattern the regular expression
+     * @param commits the commits by label, in order
+     */
+    static void run(Repository repo, Pattern pattern,
+                    Map<String, Commit> commits) {
+        ArrayList<String> labels = new ArrayList<>();
+        ArrayList<TreeMap<String, String>> files = new ArrayList<>();
+        LinkedHashSet<String> blobs = new LinkedHashSet<>();
+        for (Map.Entry<String, Commit> e : commits.entrySet()) {
+            TreeMap<String, String> f = new TreeMap<>(e.getValue().getBlobs());
+            labels.add(e.getKey());
+            files.add(f);
+            blobs.addAll(f.values());
+        }
+        PartialClone.prefetch(repo, blobs);
+        HashMap<String, CompletableFuture<List<String>>> searches =
+                new HashMap<>();
+        for (String id : blobs) {
+            searches.put(id, CompletableFuture.supplyAsync(() ->
+                    search(repo, pattern, id),
+                    ForkJoinPool.commonPool()));
+        }
+        for (int i = 0; i < labels.size(); i += 1) {
+            String prefix = labels.get(i) == null ? "" : labels.get(i) + ":";
+            for (Map.Entry<String, String> e : files.get(i).entrySet()) {
+                for (String line : searches.get(e.getValue()).join()) {
+                    repo.out().println(prefix + e.getKey() + ":" + line);
+                }
+            }
+        }
+    }
+
+    /** Returns the lines of the blob with id id that match pattern, each
+     * as LINE:TEXT with LINE counted from 1.
+     * @param repo the repository
+     * @param pattern the regular expression
+     * @param id the id of the blob
+     * @return the matching lines
+     */
+    private static List<String> search(Repository repo, Pattern pattern,
+                                       String id) {
+        String content = ((Blob) repo.readFile(".blobs", id)).getContent();
+        ArrayList<String> ret = new ArrayList<>();
+        Matcher m = pattern.matcher("");
+        int start = 0;
+        for (int n = 1; start < content.length(); n += 1) {
+            int end = content.indexOf('\n', start);
+            if (end < 0) {
+                end = content.length();
+            }
+            String line = content.substring(start, end);
+            if (m.reset(line).find()) {
+                ret.add(n + ":" + line);
+            }
+            start = end + 1;
+        }
+        return ret;
+    }
+}
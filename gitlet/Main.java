@@ -1,483 +1,575 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.FileNotFoundException;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
-import java.nio.file.NoSuchFileException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Megan Hu
  */
 public class Main {
 
-    /** Deletes file with the path sysDir/.gitlet/dir/filename.
-     *
-     * @param dir directory of the file
-     * @param fileName name of the file
-     */
-    public static void deleteFile(String dir, String fileName) {
-        if (dir != null && fileName != null) {
-            Path path = Paths.get(sysDir, ".gitlet", dir).resolve(fileName);
-            try {
-                Files.deleteIfExists(path);
-            } catch (NoSuchFileException e) {
-                System.out.println("NoSuchFileException: " + e.getMessage());
-            } catch (IOException e) {
-                System.out.println("IOException: " + e.getMessage());
-            }
-        } else if (dir.equals(null)) {
-            System.out.println("Null directory.");
-        } else {
-            System.out.println("Null filename.");
-        }
-    }
-
-    /** Returns ArrayList of Objects of files in the
-     * given directory, sysDir/.gitlet/dir.
-     * @param dir the given directory
-     * @return arraylist of files in dir
-     */
-    public static ArrayList<Object> readFiles(String dir) {
-        ArrayList<Object> objs = new ArrayList<>();
-        if (dir == null) {
-            System.out.println("Null directory.");
-            return objs;
-        }
-        Path path = Paths.get(System.getProperty("user.dir"), ".gitlet", dir);
-
-        File[] files = new File(path.toString()).listFiles();
-        ArrayList<String> fileNames = new ArrayList<>();
-        for (File file : files) {
-            if (file.isFile()) {
-                fileNames.add(file.getName());
-            }
-        }
-        for (String fileName : fileNames) {
-            objs.add(readFile(dir, fileName));
-        }
-        return objs;
-    }
-
-    /** Reads file named fileName in dir, returning the object serialized
-     * in the file.
-     * @param dir given dir
-     * @param fileName given file name
-     * @return deserialized object serialized in sysDir/.gitlet/dir/fileName
-     */
-    public static Object readFile(String dir, String fileName) {
-        Object obj = null;
-        if (dir != null && fileName != null) {
-            try {
-                File f = Utils.join(sysDir, ".gitlet", dir, fileName);
-                ObjectInputStream in = new ObjectInputStream(
-                        new FileInputStream(f));
-                while (true) {
-                    obj = in.readObject();
-                    in.close();
-                    break;
-                }
-            } catch (FileNotFoundException e) {
-                System.out.println("File does not exist.");
-            } catch (IOException e) {
-                System.out.println("IOException: " + e.getMessage());
-            } catch (ClassNotFoundException e) {
-                System.out.println("ClassNotFoundException: " + e.getMessage());
-            }
-
-        }
-        return obj;
-    }
-
-    /** Writes obj to fileName in file.
-     * @param dir given dir
-     * @param fileName given filename
-     * @param obj object to be written to sysDir/.gitlet/dir/filename
-     */
-    public static void writeFile(String dir, String fileName, Object obj) {
-        if (dir != null && fileName != null) {
-            Path path = Paths.get(System.getProperty("user.dir"),
-                    ".gitlet", dir);
-
-            if (!Files.exists(path)) {
-                File f = Utils.join(sysDir, ".gitlet", dir);
-                f.mkdirs();
-            }
-            path = path.resolve(fileName);
-            try {
-                ObjectOutputStream objOut = new ObjectOutputStream(
-                        new FileOutputStream(path.toString()));
-                objOut.writeObject(obj);
-                objOut.close();
-            } catch (IOException e) {
-                System.out.println("IOException: " + e.getMessage());
-            }
-        } else if (fileName == null) {
-            System.out.println("Null filename.");
-        } else {
-            System.out.println("Null directory.");
-        }
-    }
-
-    /** Reads file in current working directory to a string.
-     * @param dir given dir
-     * @param fileName given fileName
-     * @return contents of sysDir/dir/fileName as a string
-     */
-    public static String readCWDFileToString(String dir, String fileName) {
-        if (dir != null && fileName != null) {
-            File f = Utils.join(sysDir, dir, fileName);
-            try {
-                String ret = Utils.readContentsAsString(f);
-                return ret;
-            } catch (IllegalArgumentException e) {
-                System.out.println("File does not exist.");
-            }
-        }
-        return "";
-    }
-
-    /** Writes string content to fileName in dir in the current working
-     * directory.
-     * @param dir given dir
-     * @param fileName given fileName
-     * @param content content to be written, in the form of a string
-     */
-    public static void writeToCWD(String dir, String fileName, String content) {
-        if (dir != null && fileName != null) {
-            Path path = Paths.get(sysDir, dir);
-            if (!Files.exists(path)) {
-                new File(path.toString()).mkdirs();
-            }
-            path = path.resolve(fileName);
-            File f = new File(path.toString());
-            Utils.writeContents(f, content.getBytes());
-        } else if (dir == null) {
-            System.out.println("Null directory.");
-        } else if (fileName.isEmpty()) {
-            System.out.println("Null filename");
-        }
-
-    }
-
     /** Usage: java gitlet.Main ARGS, where ARGS contains
      *  <COMMAND> <OPERAND> .
      *  @param args arguments given*/
     public static void main(String... args) {
-        if (Files.exists(Paths.get(System.getProperty("user.dir"),
-                ".gitlet").resolve("tree.bin"))) {
-            mainTree = (Tree) readFile("", "tree.bin");
-            mainStage = (Stage) readFile("", "stage.bin");
+        boolean printStats = args.length > 0 && args[0].equals("--stats");
+        if (printStats) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        String statsLog = System.getenv(Stats.ENV);
+        Stats.enable(printStats || (statsLog != null && !statsLog.isEmpty()));
+        long start = Stats.start();
+        Repository repo = new Repository(
+                new File(System.getProperty("user.dir")), System.out);
+        repo.execute(args);
+        if (Stats.enabled()) {
+            Stats.report(args, System.nanoTime() - start, printStats);
         }
-        runCommands(args);
-        writeFile("", "tree.bin", mainTree);
-        writeFile("", "stage.bin", mainStage);
     }
 
     /** Helper method to run commands.
+     * @param repo the repository
      * @param args given*/
-    public static void runCommands(String[] args) {
+    public static void runCommands(Repository repo, String[] args) {
         switch (args[0]) {
         default:
             return;
         case "init":
-            init();
+            init(repo);
             break;
         case "add":
-            add(args[1]);
+            add(repo, args[1]);
             break;
         case "commit":
             if (args[1].length() < 1 || args.length < 2) {
-                System.out.println("Please enter a commit message.");
+                repo.out().println("Please enter a commit message.");
             }
-            commit(args[1]);
+            commit(repo, args[1]);
             break;
         case "log":
-            log();
+            if (args.length == 3 && args[1].equals("--")) {
+                log(repo, args[2]);
+            } else if (args.length == 2 && args[1].equals("--stat")) {
+                repo.out().println(repo.tree().logStat());
+            } else if (args.length == 3 && args[1].equals("-S")
+                    && !args[2].isEmpty()) {
+                repo.out().println(repo.tree().logPickaxe(args[2]));
+            } else {
+                log(repo);
+            }
             break;
         case "checkout":
-            whichCheckout(args);
+            whichCheckout(repo, args);
             break;
         case "rm":
-            rm(args[1]);
+            rm(repo, args[1]);
             break;
         case "global-log":
-            globalLog();
+            globalLog(repo);
             break;
         case "find":
-            find(args[1]);
+            if (args[1].equals("--grep") && args.length == 3) {
+                grep(repo, args[2]);
+            } else {
+                find(repo, args[1]);
+            }
             break;
         case "status":
-            status();
+            status(repo, args.length == 2 && args[1].equals("--find-renames"));
             break;
         case "branch":
-            branch(args[1]);
+            branch(repo, args[1]);
             break;
         case "rm-branch":
-            rmBranch(args[1]);
+            rmBranch(repo, args[1]);
             break;
         case "reset":
-            reset(args[1]);
+            reset(repo, args[1]);
             break;
         case "merge":
-            merge(args[1]);
+            if (args.length == 3 && args[1].equals("--dry-run")) {
+                repo.tree().merge(args[2], repo.stage(), true);
+            } else {
+                merge(repo, args[1]);
+            }
+            break;
+        case "cherry-pick":
+            cherryPick(repo, args[1]);
+            break;
+        case "rebase":
+            repo.tree().rebase(args[1], repo.stage());
+            break;
+        case "reflog":
+            reflog(repo, args.length > 1 ? args[1] : "HEAD");
+            break;
+        case "gc":
+            gc(repo, args);
+            break;
+        case "count-objects":
+            countObjects(repo, args.length > 1 ? args[1] : null);
+            break;
+        case "pack-refs":
+            Refs.pack(repo);
+            break;
+        case "sparse-checkout":
+            Sparse.command(repo, args, repo.tree().getCurrBranchCommit());
+            break;
+        case "stash":
+            Stash.command(repo, args);
+            break;
+        case "grep":
+            grepFiles(repo, args);
+            break;
+        case "archive":
+            archive(repo, args);
+            break;
+        case "add-remote":
+            Remote.add(repo, args[1], args[2]);
+            break;
+        case "rm-remote":
+            Remote.remove(repo, args[1]);
+            break;
+        case "clone":
+            clone(repo, args);
+            break;
+        case "fetch":
+        case "push":
+        case "pull":
+            remote(repo, args);
             break;
         }
 
     }
 
     /** Helper method for choosing checkout method.
+     * @param repo the repository
      * @param args args given
      */
-    public static void whichCheckout(String[] args) {
+    public static void whichCheckout(Repository repo, String[] args) {
         if (args.length == 3) {
             if (!args[1].equals("--")) {
-                System.out.println("Incorrect operands.");
+                repo.out().println("Incorrect operands.");
                 return;
             }
-            checkoutFile(args[2]);
+            checkoutFile(repo, args[2]);
         } else if (args.length == 4) {
             if (!args[2].equals("--")) {
-                System.out.println("Incorrect operands.");
+                repo.out().println("Incorrect operands.");
                 return;
             }
-            checkoutCommit(args[1], args[3]);
+            checkoutCommit(repo, args[1], args[3]);
         } else if (args.length == 2) {
-            checkoutBranch(args[1]);
+            checkoutBranch(repo, args[1]);
         } else {
-            System.out.println("Incorrect operands.");
+            repo.out().println("Incorrect operands.");
         }
     }
 
     /** Helper method to run merge.
      *
+     * @param repo the repository
      * @param branchName name of the branch to be merged
      */
-    public static void merge(String branchName) {
-        mainTree.merge(branchName, mainStage);
+    public static void merge(Repository repo, String branchName) {
+        repo.tree().merge(branchName, repo.stage());
     }
 
-    /** Helper method to run merge.
+    /** Helper method to run cherry-pick.
+     *
+     * @param repo the repository
+     * @param commit id of the commit, or REF@{N}
+     */
+    public static void cherryPick(Repository repo, String commit) {
+        String id = repo.tree().resolveRevision(commit);
+        id = id == null ? "" : repo.tree().commitExists(id);
+        if (id.equals("")) {
+            repo.out().println("No commit with that id exists.");
+            return;
+        }
+        repo.tree().cherryPick(id, repo.stage());
+    }
+
+    /** Helper method to run clone SOURCE DIR [BRANCH], preceded by
+     * --partial for a clone holding only the blobs of BRANCH.
+     * @param repo the repository
+     * @param args args given
+     */
+    public static void clone(Repository repo, String[] args) {
+        boolean partial = args.length > 1 && args[1].equals("--partial");
+        int i = partial ? 2 : 1;
+        if (args.length - i == 2) {
+            Clone.run(repo, args[i], args[i + 1], null, partial);
+        } else if (args.length - i == 3) {
+            Clone.run(repo, args[i], args[i + 1], args[i + 2], partial);
+        } else {
+            repo.out().println("Incorrect operands.");
+        }
+    }
+
+    /** Helper method to run fetch, push and pull, which take the name of
+     * a remote and of a branch in it, preceded by --progress to report
+     * progress even when not run from a terminal.
+     * @param repo the repository
+     * @param args args given
+     */
+    public static void remote(Repository repo, String[] args) {
+        boolean progress = System.console() != null;
+        int i = 1;
+        if (args.length == 4 && args[1].equals("--progress")) {
+            progress = true;
+            i = 2;
+        } else if (args.length != 3) {
+            repo.out().println("Incorrect operands.");
+            return;
+        }
+        if (args[0].equals("fetch")) {
+            Remote.fetch(repo, args[i], args[i + 1], progress);
+        } else if (args[0].equals("push")) {
+            Remote.push(repo, args[i], args[i + 1], progress);
+        } else {
+            Remote.pull(repo, args[i], args[i + 1], progress);
+        }
+    }
+
+    /** Helper method to run reset.
+     *
+     * @param repo the repository
+     * @param commit id of the commit, or REF@{N}
+     */
+    public static void reset(Repository repo, String commit) {
+        String id = repo.tree().resolveRevision(commit);
+        if (id == null) {
+            repo.out().println("No commit with that id exists.");
+            return;
+        }
+        repo.tree().reset(id);
+        repo.stage().clear();
+    }
+
+    /** Helper method to run archive COMMIT [--format=tar|zip]
+     * [--output=FILE], writing the archive to FILE, relative to the working
+     * directory, or else to standard output.
+     * @param repo the repository
+     * @param args args given
+     */
+    public static void archive(Repository repo, String[] args) {
+        String format = "tar";
+        String output = null;
+        for (int i = 2; i < args.length; i += 1) {
+            if (args[i].startsWith("--format=")) {
+                format = args[i].substring("--format=".length());
+            } else if (args[i].startsWith("--output=")) {
+                output = args[i].substring("--output=".length());
+            } else {
+                format = null;
+            }
+        }
+        if (args.length < 2 || format == null
+                || !format.equals("tar") && !format.equals("zip")) {
+            repo.out().println("Incorrect operands.");
+            return;
+        }
+        String id = commitId(repo, args[1]);
+        if (id == null) {
+            repo.out().println("No commit with that id exists.");
+            return;
+        }
+        Commit commit = (Commit) repo.readFile(".commits", id);
+        try {
+            if (output == null) {
+                Archive.write(repo, commit, format, repo.out());
+                repo.out().flush();
+                return;
+            }
+            File f = new File(output);
+            if (!f.isAbsolute()) {
+                f = new File(repo.root(), output);
+            }
+            try (OutputStream out = new BufferedOutputStream(
+                    Files.newOutputStream(f.toPath()), 1 << 16)) {
+                Archive.write(repo, commit, format, out);
+            }
+        } catch (IOException e) {
+            repo.out().println("IOException: " + e.getMessage());
+        }
+    }
+
+    /** Helper method to run grep PATTERN [COMMIT...], searching the files
+     * of each COMMIT, or of the current branch's head if none are given,
+     * for lines matching the regular expression PATTERN.
+     * @param repo the repository
+     * @param args args given
+     */
+    public static void grepFiles(Repository repo, String[] args) {
+        if (args.length < 2) {
+            repo.out().println("Incorrect operands.");
+            return;
+        }
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(args[1]);
+        } catch (PatternSyntaxException e) {
+            repo.out().println("Invalid pattern.");
+            return;
+        }
+        LinkedHashMap<String, Commit> commits = new LinkedHashMap<>();
+        if (args.length == 2) {
+            commits.put(null, repo.tree().getCurrBranchCommit());
+        }
+        for (int i = 2; i < args.length; i += 1) {
+            String id = commitId(repo, args[i]);
+            if (id == null) {
+                repo.out().println("No commit with that id exists.");
+                return;
+            }
+            commits.put(args[i], (Commit) repo.readFile(".commits", id));
+        }
+        Grep.run(repo, pattern, commits);
+    }
+
+    /** Returns the id of the commit named by revision: a branch, REF@{N},
+     * or a commit id, which may be abbreviated.
+     * @param repo the repository
+     * @param revision the revision
+     * @return the full id of the commit, or null if there is none
+     */
+    static String commitId(Repository repo, String revision) {
+        String id = Refs.resolve(repo, Refs.head(revision));
+        if (id != null) {
+            return id;
+        }
+        id = repo.tree().resolveRevision(revision);
+        if (id == null || id.length() > Utils.UID_LENGTH) {
+            return null;
+        } else if (id.length() == Utils.UID_LENGTH) {
+            return Remote.has(repo, ".commits", id) ? id : null;
+        }
+        id = repo.tree().commitExists(id);
+        return id.equals("") ? null : id;
+    }
+
+    /** Helper method to run gc, which accepts --grace=SECONDS to keep
+     * unreachable objects modified within SECONDS.
+     * @param repo the repository
+     * @param args args given
+     */
+    public static void gc(Repository repo, String[] args) {
+        long grace = GarbageCollector.DEFAULT_GRACE;
+        if (args.length == 2 && args[1].startsWith("--grace=")) {
+            try {
+                grace = Long.parseLong(args[1].substring(
+                        "--grace=".length()));
+            } catch (NumberFormatException e) {
+                repo.out().println("Incorrect operands.");
+                return;
+            }
+        } else if (args.length != 1) {
+            repo.out().println("Incorrect operands.");
+            return;
+        }
+        new GarbageCollector(repo, grace).run();
+    }
+
+    /** Helper method to run count-objects.
      *
-     * @param commit id of the commit to be merged
+     * @param repo the repository
+     * @param branchName name of the branch, or null for the current branch
      */
-    public static void reset(String commit) {
-        mainTree.reset(commit);
-        mainStage.clear();
+    public static void countObjects(Repository repo, String branchName) {
+        repo.tree().countObjects(branchName == null
+                ? repo.tree().getCurrBranch() : branchName);
+    }
+
+    /** Helper method to run reflog.
+     *
+     * @param repo the repository
+     * @param branchName name of the branch, or HEAD
+     */
+    public static void reflog(Repository repo, String branchName) {
+        repo.tree().reflog(branchName);
     }
 
     /** Helper method to run branch.
      *
+     * @param repo the repository
      * @param branchName name of the branch
      */
-    public static void branch(String branchName) {
-        mainTree.branch(branchName);
+    public static void branch(Repository repo, String branchName) {
+        repo.tree().branch(branchName);
     }
 
     /** Helper method to run rm-branch.
      *
+     * @param repo the repository
      * @param branchName name of the branch
      */
-    public static void rmBranch(String branchName) {
-        mainTree.rmBranch(branchName);
+    public static void rmBranch(Repository repo, String branchName) {
+        repo.tree().rmBranch(branchName);
     }
 
     /** Helper method to run status.
-     *
+     * @param repo the repository
      */
-    public static void status() {
-        System.out.println("=== Branches ===");
-        System.out.println(mainTree.status());
-        System.out.println(mainStage.status());
+    public static void status(Repository repo) {
+        status(repo, false);
+    }
+
+    /** Helper method to run status, followed, if renames, by the files
+     * staged or left for addition that are renames of files staged or
+     * left for removal.
+     * @param repo the repository
+     * @param renames whether to detect renames
+     */
+    public static void status(Repository repo, boolean renames) {
+        repo.out().println("=== Branches ===");
+        repo.tree().status();
+        repo.out().println(repo.stage().status());
+        if (renames) {
+            repo.out().println("=== Renamed Files ===");
+            for (Renames.Rename r : repo.stage().renames()) {
+                repo.out().println(r.getFrom() + " -> " + r.getTo() + " ("
+                        + r.getScore() + "%)");
+            }
+            repo.out().println();
+        }
     }
 
     /** Helper method to run find.
      *
+     * @param repo the repository
      * @param message message of the commit
      */
-    public static void find(String message) {
-        String ret = mainTree.find(message);
+    public static void find(Repository repo, String message) {
+        String ret = repo.tree().find(message);
         if (ret.length() < 1) {
-            System.out.println("Found no commit with that message.");
+            repo.out().println("Found no commit with that message.");
         } else {
-            System.out.println(ret);
+            repo.out().println(ret);
         }
     }
 
-    /** Helper method to run global-log.
+    /** Helper method to run find --grep.
      *
+     * @param repo the repository
+     * @param query words of the message of the commit
+     */
+    public static void grep(Repository repo, String query) {
+        String ret = repo.tree().grep(query);
+        if (ret.length() < 1) {
+            repo.out().println("Found no commit with that message.");
+        } else {
+            repo.out().println(ret);
+        }
+    }
+
+    /** Helper method to run global-log.
+     * @param repo the repository
      */
-    public static void globalLog() {
-        System.out.println(mainTree.globalLog());
+    public static void globalLog(Repository repo) {
+        repo.out().println(repo.tree().globalLog());
     }
 
     /** Helper method to run rm.
      *
+     * @param repo the repository
      * @param fileName name of the file
      */
-    public static void rm(String fileName) {
-        mainStage.rm(fileName, mainTree.getCurrBranchCommit());
+    public static void rm(Repository repo, String fileName) {
+        repo.stage().rm(fileName, repo.tree().getCurrBranchCommit());
     }
 
     /** Helper method to run add.
      *
+     * @param repo the repository
      * @param fileName name of the file
      */
-    public static void add(String fileName) {
-        mainStage.add(fileName, mainTree.getCurrBranchCommit());
+    public static void add(Repository repo, String fileName) {
+        repo.stage().add(fileName, repo.tree().getCurrBranchCommit());
     }
 
     /** Helper method to run commit.
      *
+     * @param repo the repository
      * @param mess the message associated with the commit
      */
-    public static void commit(String mess) {
-        if (mainStage.getStagedRemoved().isEmpty()
-                && mainStage.getStagedAdded().isEmpty()) {
-            System.out.println("No changes added to the commit.");
+    public static void commit(Repository repo, String mess) {
+        if (repo.stage().getStagedRemoved().isEmpty()
+                && repo.stage().getStagedAdded().isEmpty()) {
+            repo.out().println("No changes added to the commit.");
             return;
         }
-        mainTree.addCommit("", mess, mainStage.getStagedAdded(),
-                mainStage.getStagedRemoved());
+        repo.tree().addCommit("", mess, repo.stage().getStagedAdded(),
+                repo.stage().getStagedRemoved());
     }
 
     /** Helper method to run checkout for case 1, a file.
      *
+     * @param repo the repository
      * @param fileName name of the file to be checked out
      */
-    public static void checkoutFile(String fileName) {
-        mainTree.checkoutFile(fileName);
+    public static void checkoutFile(Repository repo, String fileName) {
+        repo.tree().checkoutFile(fileName);
     }
 
     /** Helper method to run checkout for case 2, a file in a commit.
      *
+     * @param repo the repository
      * @param id id of the commit
      * @param fileName name of the file in the commit
      */
-    public static void checkoutCommit(String id, String fileName) {
-        mainTree.checkoutCommit(id, fileName);
+    public static void checkoutCommit(Repository repo, String id,
+                                      String fileName) {
+        String commit = repo.tree().resolveRevision(id);
+        if (commit == null) {
+            repo.out().println("No commit with that id exists.");
+            return;
+        }
+        repo.tree().checkoutCommit(commit, fileName);
     }
 
     /** Helper method to run checkout for case 3, a branch.
      *
+     * @param repo the repository
      * @param branchName name of the branch
      */
-    public static void checkoutBranch(String branchName) {
-        mainTree.checkoutBranch(branchName);
+    public static void checkoutBranch(Repository repo, String branchName) {
+        repo.tree().checkoutBranch(branchName);
     }
 
     /** Helper method to run log.
-     *
+     * @param repo the repository
      */
-    public static void log() {
-        System.out.println(mainTree.log());
-    }
-
-    /** Helper method to run init.
-     *
-     */
-    public static void init() {
-        makeInit();
-        mainTree = new Tree();
-        mainStage = new Stage();
-        mainStage.setCurrentBlobs(mainTree.getCurrBranchCommit());
-        writeFile("", "tree.bin", mainTree);
-        writeFile("", "stage.bin", mainStage);
-    }
-
-    /** Initializes .gitlet and .commits, .blobs, and .stagedblobs
-     * directories. */
-    public static void makeInit() {
-        Path mainPath = Paths.get(sysDir, ".gitlet");
-        Path commitsPath = Paths.get(sysDir, ".gitlet", ".commits");
-        Path blobsPath = Paths.get(sysDir, ".gitlet", ".blobs");
-        Path tempBlobsPath = Paths.get(sysDir,
-                ".gitlet", ".stagedblobs");
-        if (!Files.exists(mainPath)) {
-            new File(mainPath.toString()).mkdirs();
-            new File(commitsPath.toString()).mkdirs();
-            new File(blobsPath.toString()).mkdirs();
-            new File(tempBlobsPath.toString()).mkdirs();
-        } else {
-            System.out.println("A gitlet version-control system already "
-                    + "exists in the current directory.");
-        }
+    public static void log(Repository repo) {
+        repo.out().println(repo.tree().log());
     }
 
-    /** Deletes file named fileName in dir in current working directory.
+    /** Helper method to run log -- FILE.
      *
-     * @param dir name of the directory
+     * @param repo the repository
      * @param fileName name of the file
      */
-    public static void deleteCWDFile(String dir, String fileName) {
-        Path path = Paths.get(sysDir, dir);
-        path = path.resolve(fileName);
-        try {
-            Files.deleteIfExists(path);
-        } catch (IOException e) {
-            System.out.println("IOException: " + e.getMessage());
-        }
-    }
-
-    /** Returns a list of the files inside directory dir in the
-     * current working directory.
-     * @param dir name of the directory
-     */
-    public static ArrayList<String> listDirFiles(String dir) {
-        ArrayList<String> ret = new ArrayList<>();
-        Path path = Paths.get(sysDir, dir);
-        File[] files = new File(path.toString()).listFiles();
-        for (File f: files) {
-            ret.add(f.getName());
+    public static void log(Repository repo, String fileName) {
+        String ret = repo.tree().log(fileName);
+        if (ret.length() > 0) {
+            repo.out().println(ret);
         }
-        return ret;
     }
 
-    /** Getter method for mainTree.
-     *
-     * @return mainTree
-     */
-    public static Tree mainTree() {
-        return mainTree;
-    }
-
-    /** Getter method for mainStage.
-     *
-     * @return mainStage
-     */
-    public static Stage mainStage() {
-        return mainStage;
-    }
-
-    /** Setter method for mainStage.
-     *
-     * @param stage the stage
-     */
-    public static void setStage(Stage stage) {
-        mainStage = stage;
-    }
-
-    /** Getter method for sysDir.
-     *
-     * @return sysDir
+    /** Helper method to run init.
+     * @param repo the repository
      */
-    private static String sysDir() {
-        return sysDir;
+    public static void init(Repository repo) {
+        repo.makeInit();
+        repo.setTree(new Tree(repo));
+        repo.setStage(new Stage(repo));
+        repo.stage().setCurrentBlobs(repo.tree().getCurrBranchCommit());
+        repo.save();
     }
-    /** Tree object representing the commit tree structure. */
-    private static Tree mainTree = null;
-
-    /** Stage object representing the stage that holds blobs. */
-    private static Stage mainStage = null;
-
-    /** The current working directory. */
-    private static String sysDir = System.getProperty("user.dir");
-
 }
@@ -0,0 +1,358 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/** A three-way merge of the files of two commits against their split
+ * point, computed from the object store alone, following files renamed on
+ * one side and changed on the other. It reads commits and blobs but never
+ * the working directory or stage, and writes nothing but cached
+ * similarity signatures, so a merge can be previewed, and many merges can
+ * be computed at once from different threads, before one is applied.
+ * @author Megan Hu*/
+final class MergeEngine {
+
+    /** Not instantiable. */
+    private MergeEngine() {
+    }
+
+    /** Returns the split point of ours and theirs: a lowest common
+     * ancestor of the two, found by commit id through both parents, or the
+     * initial commit if none is found.
+     * @param repo the repository
+     * @param ours the commit merged into
+     * @param theirs the commit merged
+     * @return the split point
+     */
+    static Commit base(Repository repo, Commit ours, Commit theirs) {
+        String id = BitmapIndex.mergeBase(repo, ours.getId(), theirs.getId());
+        if (id != null) {
+            return (Commit) repo.readFile(".commits", id);
+        }
+        Commit ret = ours;
+        while (!ret.getParent().equals("")) {
+            ret = (Commit) repo.readFile(".commits", ret.getParent());
+        }
+        return ret;
+    }
+
+    /** Merges the files of theirs into those of ours, base being their
+     * split point. A file changed on only one side since base takes that
+     * side's version, including its removal; a file changed the same way
+     * on both sides takes that version; a file changed differently on the
+     * two sides is a conflict. A file renamed on one side and changed on
+     * the other is merged under its new name.
+     * @param repo the repository
+     * @param ours the commit merged into
+     * @param theirs the commit merged
+     * @param base the split point
+     * @return the merged files and conflicts
+     */
+    static Result merge(Repository repo, Commit ours, Commit theirs,
+                        Commit base) {
+        Map<String, String> oursBlobs = ours.getBlobs();
+        Map<String, String> theirsBlobs = theirs.getBlobs();
+        Map<String, String> baseBlobs = base.getBlobs();
+        prefetch(repo, oursBlobs, theirsBlobs, baseBlobs);
+        Result ret = new Result(ours, theirs, base);
+        HashSet<String> handled = new HashSet<>();
+        mergeRenames(repo, ret, handled, baseBlobs, oursBlobs, theirsBlobs,
+                true);
+        mergeRenames(repo, ret, handled, baseBlobs, theirsBlobs, oursBlobs,
+                false);
+        for (Map.Entry<String, String> e : oursBlobs.entrySet()) {
+            if (!handled.contains(e.getKey())) {
+                merge(repo, ret, e.getKey(), e.getValue(),
+                        theirsBlobs.get(e.getKey()),
+                        baseBlobs.get(e.getKey()));
+            }
+        }
+        for (Map.Entry<String, String> e : theirsBlobs.entrySet()) {
+            if (!oursBlobs.containsKey(e.getKey())
+                    && !handled.contains(e.getKey())) {
+                merge(repo, ret, e.getKey(), null, e.getValue(),
+                        baseBlobs.get(e.getKey()));
+            }
+        }
+        return ret;
+    }
+
+    /** Fetches in one pack, if this is a partial clone, the blobs of the
+     * files that are not the same on all sides, which are the only ones
+     * the merge may read.
+     * @param repo the repository
+     * @param sides the blob ids of each side by file name
+     */
+    @SafeVarargs
+    private static void prefetch(Repository repo,
+                                 Map<String, String>... sides) {
+        if (!PartialClone.isPartial(repo)) {
+            return;
+        }
+        HashSet<String> wanted = new HashSet<>();
+        for (Map<String, String> side : sides) {
+            for (Map.Entry<String, String> e : side.entrySet()) {
+                for (Map<String, String> other : sides) {
+                    if (!e.getValue().equals(other.get(e.getKey()))) {
+                        wanted.add(e.getValue());
+                        break;
+                    }
+                }
+            }
+        }
+        PartialClone.prefetch(repo, wanted);
+    }
+
+    /** Adds to result the merges of the files that one side, renamed,
+     * renamed since base while the other side, other, changed them,
+     * adding the names of both versions of each to handled. Such a file
+     * takes the new name and the contents of whichever side changed them,
+     * and conflicts under the new name if both did. Only files the other
+     * side changed are looked for, so merges without such files compute
+     * no signatures.
+     * @param repo the repository
+     * @param result the result
+     * @param handled names of the files already merged
+     * @param base blob ids of the split point
+     * @param renamed blob ids of the side looked for renames in
+     * @param other blob ids of the other side
+     * @param renamedIsOurs whether renamed is the commit merged into
+     */
+    private static void mergeRenames(Repository repo, Result result,
+                                     Set<String> handled,
+                                     Map<String, String> base,
+                                     Map<String, String> renamed,
+                                     Map<String, String> other,
+                                     boolean renamedIsOurs) {
+        HashMap<String, String> deleted = new HashMap<>();
+        for (Map.Entry<String, String> e : base.entrySet()) {
+            String o = other.get(e.getKey());
+            if (!renamed.containsKey(e.getKey()) && o != null
+                    && !o.equals(e.getValue())) {
+                deleted.put(e.getKey(), e.getValue());
+            }
+        }
+        if (deleted.isEmpty()) {
+            return;
+        }
+        HashMap<String, String> added = new HashMap<>();
+        for (Map.Entry<String, String> e : renamed.entrySet()) {
+            if (!base.containsKey(e.getKey())
+                    && !other.containsKey(e.getKey())) {
+                added.put(e.getKey(), e.getValue());
+            }
+        }
+        for (Renames.Rename r : Renames.detect(
+                Renames.signaturesOf(repo, deleted),
+                Renames.signaturesOf(repo, added), Collections.emptyMap())) {
+            String from = r.getFrom();
+            String to = r.getTo();
+            if (handled.contains(from) || handled.contains(to)) {
+                continue;
+            }
+            handled.add(from);
+            handled.add(to);
+            result.renames.add(r);
+            String renamedBlob = renamed.get(to);
+            String otherBlob = other.get(from);
+            Renames.Signature baseSig =
+                    Renames.signatureOf(repo, base.get(from));
+            Renames.Signature renamedSig =
+                    Renames.signatureOf(repo, renamedBlob);
+            if (!renamedIsOurs) {
+                result.removed.put(from, otherBlob);
+            }
+            if (renamedSig.sameContents(baseSig)) {
+                String content = ((Blob) repo.readFile(".blobs", otherBlob))
+                        .getContent();
+                Blob moved = new Blob(to, content);
+                result.newBlobs.add(moved);
+                result.files.put(to, moved.getHashValue());
+                result.changed.put(to, moved.getHashValue());
+            } else if (Renames.signatureOf(repo, otherBlob).sameContents(
+                    renamedSig)) {
+                result.files.put(to, renamedBlob);
+                if (!renamedIsOurs) {
+                    result.changed.put(to, renamedBlob);
+                }
+            } else if (renamedIsOurs) {
+                result.conflicts.put(to,
+                        conflict(repo, renamedBlob, otherBlob));
+            } else {
+                result.conflicts.put(to,
+                        conflict(repo, otherBlob, renamedBlob));
+            }
+        }
+    }
+
+    /** Adds the merge of file name to result, given the ids of its blobs
+     * on each side and at the split point, null where it is absent.
+     * @param repo the repository
+     * @param result the result
+     * @param name the file name
+     * @param ours its blob in the commit merged into
+     * @param theirs its blob in the commit merged
+     * @param base its blob at the split point
+     */
+    private static void merge(Repository repo, Result result, String name,
+                              String ours, String theirs, String base) {
+        if (Objects.equals(ours, theirs) || Objects.equals(theirs, base)) {
+            if (ours != null) {
+                result.files.put(name, ours);
+            }
+        } else if (Objects.equals(ours, base)) {
+            if (theirs != null) {
+                result.files.put(name, theirs);
+                result.changed.put(name, theirs);
+            } else {
+                result.removed.put(name, ours);
+            }
+        } else {
+            result.conflicts.put(name, conflict(repo, ours, theirs));
+        }
+    }
+
+    /** Returns the contents of a conflicted file whose versions are the
+     * blobs ours and theirs, null for a removed version.
+     * @param repo the repository
+     * @param ours the blob of the commit merged into, or null
+     * @param theirs the blob of the commit merged, or null
+     * @return the contents with both versions marked
+     */
+    private static String conflict(Repository repo, String ours,
+                                   String theirs) {
+        StringBuilder ret = new StringBuilder("<<<<<<< HEAD\n");
+        if (ours != null) {
+            ret.append(((Blob) repo.readFile(".blobs", ours)).getContent());
+        }
+        ret.append("=======\n");
+        if (theirs != null) {
+            ret.append(((Blob) repo.readFile(".blobs", theirs)).getContent());
+        }
+        return ret.append(">>>>>>>\n").toString();
+    }
+
+    /** The outcome of a merge: the files merged cleanly, how they differ
+     * from the commit merged into, and the conflicts. */
+    static final class Result {
+
+        /** The result of merging theirs into ours from base.
+         *
+         * @param ours the commit merged into
+         * @param theirs the commit merged
+         * @param base the split point
+         */
+        private Result(Commit ours, Commit theirs, Commit base) {
+            this.ours = ours;
+            this.theirs = theirs;
+            this.base = base;
+        }
+
+        /** Returns whether the merge had no conflicts.
+         *
+         * @return true if clean
+         */
+        boolean isClean() {
+            return conflicts.isEmpty();
+        }
+
+        /** Returns the files of the merge that did not conflict and the
+         * ids of their blobs.
+         * @return blob ids by file name
+         */
+        Map<String, String> files() {
+            return Collections.unmodifiableMap(files);
+        }
+
+        /** Returns the files added or changed from ours, and the ids of
+         * their new blobs.
+         * @return blob ids by file name, sorted by name
+         */
+        Map<String, String> changed() {
+            return Collections.unmodifiableMap(changed);
+        }
+
+        /** Returns the files of ours that the merge removes, and the ids
+         * of their blobs in ours.
+         * @return blob ids by file name, sorted by name
+         */
+        Map<String, String> removed() {
+            return Collections.unmodifiableMap(removed);
+        }
+
+        /** Returns the conflicted files and their contents with both
+         * versions marked.
+         * @return contents by file name, sorted by name
+         */
+        Map<String, String> conflicts() {
+            return Collections.unmodifiableMap(conflicts);
+        }
+
+        /** Returns the blobs the merge created for files that were renamed
+         * on one side and changed on the other, which must be written
+         * before the merge is applied.
+         * @return the new blobs
+         */
+        List<Blob> newBlobs() {
+            return Collections.unmodifiableList(newBlobs);
+        }
+
+        /** Returns the renames the merge followed.
+         *
+         * @return the renames
+         */
+        List<Renames.Rename> renames() {
+            return Collections.unmodifiableList(renames);
+        }
+
+        /** Getter method for ours.
+         *
+         * @return the commit merged into
+         */
+        Commit getOurs() {
+            return ours;
+        }
+
+        /** Getter method for theirs.
+         *
+         * @return the commit merged
+         */
+        Commit getTheirs() {
+            return theirs;
+        }
+
+        /** Getter method for base.
+         *
+         * @return the split point
+         */
+        Commit getBase() {
+            return base;
+        }
+
+        /** The commit merged into. */
+        private final Commit ours;
+        /** The commit merged. */
+        private final Commit theirs;
+        /** Their split point. */
+        private final Commit base;
+        /** Files merged cleanly, and their blobs. */
+        private final HashMap<String, String> files = new HashMap<>();
+        /** Files added or changed from ours, and their new blobs. */
+        private final TreeMap<String, String> changed = new TreeMap<>();
+        /** Files of ours removed, and their blobs in ours. */
+        private final TreeMap<String, String> removed = new TreeMap<>();
+        /** Conflicted files and their marked contents. */
+        private final TreeMap<String, String> conflicts = new TreeMap<>();
+        /** Blobs created by the merge. */
+        private final ArrayList<Blob> newBlobs = new ArrayList<>();
+        /** Renames the merge followed. */
+        private final ArrayList<Renames.Rename> renames = new ArrayList<>();
+    }
+}
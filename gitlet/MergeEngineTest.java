@@ -0,0 +1,356 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of merges computed in memory.
+ *  @author Megan Hu
+ */
+public class MergeEngineTest {
+
+    /** Files changed on one side take that side's version, files changed
+     * differently on both sides conflict, and neither the working
+     * directory nor a dry run is changed by computing the merge. */
+    @Test
+    public void threeWayMerge() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-merge").toFile();
+        try {
+            Repository repo = new Repository(dir);
+            repo.init();
+            write(dir, "same.txt", "same\n");
+            write(dir, "ours.txt", "ours 1\n");
+            write(dir, "theirs.txt", "theirs 1\n");
+            write(dir, "both.txt", "both 1\n");
+            write(dir, "gone.txt", "gone\n");
+            for (String f : List.of("same.txt", "ours.txt", "theirs.txt",
+                    "both.txt", "gone.txt")) {
+                repo.add(f);
+            }
+            repo.commit("Base");
+            repo.branch("other");
+            write(dir, "ours.txt", "ours 2\n");
+            write(dir, "both.txt", "both ours\n");
+            repo.add("ours.txt");
+            repo.add("both.txt");
+            repo.commit("Ours");
+            repo.checkout("other");
+            write(dir, "theirs.txt", "theirs 2\n");
+            write(dir, "both.txt", "both theirs\n");
+            write(dir, "new.txt", "new\n");
+            repo.add("theirs.txt");
+            repo.add("both.txt");
+            repo.add("new.txt");
+            repo.rm("gone.txt");
+            repo.commit("Theirs");
+            repo.checkout("master");
+
+            Commit ours = read(repo, repo.resolve("master"));
+            Commit theirs = read(repo, repo.resolve("other"));
+            MergeEngine.Result r = MergeEngine.merge(repo, ours, theirs,
+                    MergeEngine.base(repo, ours, theirs));
+            assertFalse(r.isClean());
+            assertEquals("Base", r.getBase().getMessage());
+            assertEquals(List.of("new.txt", "theirs.txt"),
+                    List.copyOf(r.changed().keySet()));
+            assertEquals(List.of("gone.txt"),
+                    List.copyOf(r.removed().keySet()));
+            assertEquals("<<<<<<< HEAD\nboth ours\n=======\nboth theirs\n"
+                    + ">>>>>>>\n", r.conflicts().get("both.txt"));
+            Map<String, String> files = r.files();
+            assertEquals(repo.files("master").get("ours.txt"),
+                    files.get("ours.txt"));
+            assertEquals(repo.files("other").get("theirs.txt"),
+                    files.get("theirs.txt"));
+            assertFalse(files.containsKey("both.txt"));
+            assertFalse(files.containsKey("gone.txt"));
+
+            String head = repo.resolve("master");
+            String preview = repo.run("merge", "--dry-run", "other")
+                    .getOutput();
+            assertTrue(preview.contains("C both.txt\nD gone.txt\n"
+                    + "A new.txt\nM theirs.txt\n"));
+            assertEquals(head, repo.resolve("master"));
+            assertFalse(new File(dir, "new.txt").exists());
+            assertEquals("theirs 1\n", Utils.readContentsAsString(
+                    new File(dir, "theirs.txt")));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Rebasing replays each commit of the current branch on the other
+     * branch, dropping those already there, and a conflict in any of them
+     * leaves the branch and working directory as they were. */
+    @Test
+    public void rebaseAndCherryPick() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-rebase").toFile();
+        try {
+            Repository repo = new Repository(dir);
+            repo.init();
+            write(dir, "a.txt", "a\n");
+            write(dir, "b.txt", "b\n");
+            repo.add("a.txt");
+            repo.add("b.txt");
+            repo.commit("Base");
+            repo.branch("topic");
+            write(dir, "a.txt", "a main\n");
+            repo.add("a.txt");
+            repo.commit("Main");
+            repo.checkout("topic");
+            write(dir, "b.txt", "b topic\n");
+            repo.add("b.txt");
+            repo.commit("Topic b");
+            write(dir, "a.txt", "a main\n");
+            repo.add("a.txt");
+            repo.commit("Same as main");
+            write(dir, "c.txt", "c\n");
+            repo.add("c.txt");
+            repo.commit("Topic c");
+
+            assertEquals("Replayed 2 of 3 commits onto master.",
+                    repo.rebase("master").getOutput().trim());
+            List<Commit> log = repo.log();
+            assertEquals(List.of("Topic c", "Topic b", "Main", "Base",
+                    "initial commit"), log.stream().map(Commit::getMessage)
+                    .collect(Collectors.toList()));
+            assertEquals("a main\n", repo.contents("topic", "a.txt"));
+            assertEquals("b topic\n", Utils.readContentsAsString(
+                    new File(dir, "b.txt")));
+            assertTrue(repo.status().getModified().isEmpty());
+
+            repo.checkout("master");
+            write(dir, "b.txt", "b master\n");
+            repo.add("b.txt");
+            repo.commit("Master b");
+            repo.checkout("topic");
+            String head = repo.resolve("topic");
+            String out = repo.rebase("master").getOutput();
+            assertTrue(out.contains("merge conflict in b.txt"));
+            assertEquals(head, repo.resolve("topic"));
+            assertEquals("b topic\n", Utils.readContentsAsString(
+                    new File(dir, "b.txt")));
+
+            repo.checkout("master");
+            repo.cherryPick(head);
+            assertEquals("Topic c", repo.log().get(0).getMessage());
+            assertEquals("c\n", repo.contents("master", "c.txt"));
+            assertEquals("b master\n", repo.contents("master", "b.txt"));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Merging a branch still at the commits a rebase replayed takes the
+     * commit both were made on as the split point, not the replayed commit
+     * with the same message, so the rebased branch keeps what it was
+     * rebased onto. */
+    @Test
+    public void mergeAfterRebase() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-rebase-merge").toFile();
+        try {
+            Repository repo = new Repository(dir);
+            repo.init();
+            write(dir, "f.txt", "x\n");
+            repo.add("f.txt");
+            repo.commit("One");
+            String one = repo.resolve("master");
+            repo.branch("feat");
+            write(dir, "f.txt", "x\nm\n");
+            repo.add("f.txt");
+            repo.commit("Two");
+            repo.checkout("feat");
+            write(dir, "g.txt", "g\n");
+            repo.add("g.txt");
+            repo.commit("Feat");
+            repo.branch("old");
+            repo.rebase("master");
+            assertEquals("x\nm\n", repo.contents("feat", "f.txt"));
+
+            String preview = repo.run("merge", "--dry-run", "old")
+                    .getOutput();
+            assertTrue(preview.contains("Split point: " + one + "\n"));
+            assertFalse(preview.contains("M f.txt"));
+            repo.merge("old");
+            assertEquals("x\nm\n", repo.contents("feat", "f.txt"));
+            assertEquals("x\nm\n", Utils.readContentsAsString(
+                    new File(dir, "f.txt")));
+            assertEquals("g\n", repo.contents("feat", "g.txt"));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** A file renamed on one branch and edited on the other ends up under
+     * its new name with the edit. */
+    @Test
+    public void mergeFollowsRenames() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-rename").toFile();
+        try {
+            Repository repo = new Repository(dir);
+            repo.init();
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 30; i += 1) {
+                text.append("line ").append(i).append("\n");
+            }
+            write(dir, "old.txt", text.toString());
+            repo.add("old.txt");
+            repo.commit("Base");
+            repo.branch("other");
+            new File(dir, "old.txt").delete();
+            write(dir, "new.txt", text.toString());
+            repo.rm("old.txt");
+            repo.add("new.txt");
+            repo.commit("Rename");
+            repo.checkout("other");
+            write(dir, "old.txt", text + "edited\n");
+            repo.add("old.txt");
+            repo.commit("Edit");
+            repo.checkout("master");
+
+            assertEquals("", repo.merge("other").getOutput());
+            assertEquals("Merged other into master.",
+                    repo.log().get(0).getMessage());
+            assertFalse(new File(dir, "old.txt").exists());
+            assertEquals(text + "edited\n", repo.contents("master",
+                    "new.txt"));
+            assertNull(repo.contents("master", "old.txt"));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** The merge base event of a fast-forward records the head the
+     * current branch had before the merge moved it. */
+    @Test
+    public void mergeBaseEventOfFastForward() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-merge").toFile();
+        try (Recording recording = new Recording()) {
+            Repository repo = new Repository(dir);
+            repo.init();
+            String before = repo.resolve("master");
+            repo.branch("other");
+            repo.checkout("other");
+            Utils.writeContents(new File(dir, "a.txt"), "a\n");
+            repo.add("a.txt");
+            repo.commit("Add a");
+            String after = repo.resolve("other");
+            repo.checkout("master");
+
+            recording.enable("gitlet.MergeBase");
+            recording.start();
+            assertEquals("Current branch fast-forwarded.\n",
+                    repo.merge("other").getOutput());
+            recording.stop();
+            Path events = new File(dir, "merge.jfr").toPath();
+            recording.dump(events);
+            List<RecordedEvent> found = RecordingFile.readAllEvents(events)
+                    .stream().filter(e -> e.getEventType().getName()
+                            .equals("gitlet.MergeBase"))
+                    .collect(Collectors.toList());
+            assertEquals(1, found.size());
+            assertEquals(before, found.get(0).getString("ours"));
+            assertEquals(after, found.get(0).getString("theirs"));
+            assertEquals("", found.get(0).getString("base"));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** The split point is found by commit id through both parents: commits
+     * with the same message on both branches are not taken for a common
+     * ancestor, and a commit merged in earlier is found through the merge's
+     * second parent. */
+    @Test
+    public void baseFollowsIdsAndSecondParents() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-base").toFile();
+        try {
+            Repository repo = new Repository(dir);
+            repo.init();
+            write(dir, "a.txt", "a\n");
+            repo.add("a.txt");
+            repo.commit("Base");
+            String base = repo.resolve("master");
+            repo.branch("other");
+            write(dir, "m.txt", "m\n");
+            repo.add("m.txt");
+            repo.commit("Work");
+            repo.checkout("other");
+            write(dir, "o.txt", "o\n");
+            repo.add("o.txt");
+            repo.commit("Work");
+            String work = repo.resolve("other");
+            repo.checkout("master");
+            assertEquals(base, base(repo, "master", "other"));
+
+            repo.merge("other");
+            repo.checkout("other");
+            write(dir, "o.txt", "o 2\n");
+            repo.add("o.txt");
+            repo.commit("More");
+            repo.checkout("master");
+            assertEquals(work, base(repo, "master", "other"));
+            assertEquals(work, base(repo, "other", "master"));
+            assertEquals("", repo.merge("other").getOutput());
+            assertEquals("m\n", repo.contents("master", "m.txt"));
+            assertEquals("o 2\n", repo.contents("master", "o.txt"));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Returns the id of the split point of the heads of branches ours and
+     * theirs in repo.
+     * @param repo the repository
+     * @param ours the branch merged into
+     * @param theirs the branch merged
+     * @return the id of the split point
+     */
+    private static String base(Repository repo, String ours, String theirs) {
+        return MergeEngine.base(repo, read(repo, repo.resolve(ours)),
+                read(repo, repo.resolve(theirs))).getId();
+    }
+
+    /** Returns the commit with the given id in repo.
+     *
+     * @param repo the repository
+     * @param id the commit id
+     * @return the commit
+     */
+    private static Commit read(Repository repo, String id) {
+        return (Commit) repo.readFile(".commits", id);
+    }
+
+    /** Writes contents to the file name in dir.
+     *
+     * @param dir the directory
+     * @param name the file name
+     * @param contents the contents
+     */
+    private static void write(File dir, String name, String contents) {
+        Utils.writeContents(new File(dir, name), contents);
+    }
+
+    /** Deletes f and everything under it.
+     *
+     * @param f a file or directory
+     */
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,320 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/** Class maintaining a persistent index of commit messages, so that
+ * find does not have to read every commit. The index lives in
+ * .gitlet/.index and is made of two sets of shards, each a serialized
+ * HashMap keyed by the first two hex digits of a SHA-1:
+ * messages/XX maps the hash of a whole message to the ids of the commits
+ * with that message, and words/XX maps each lower-case word of a message
+ * to the ids of the commits containing it. A new commit is not written to
+ * the shards at once: its id is appended to the log pending, which
+ * lookups read as well, and the pending commits are folded into the
+ * shards, each shard touched written once, when FOLD of them have
+ * accumulated or gc runs.
+ * @author Megan Hu*/
+class MessageIndex {
+
+    /** Directory of the index, relative to .gitlet. */
+    static final String DIR = ".index";
+
+    /** Shard directory of whole messages. */
+    private static final String MESSAGES = DIR + "/messages";
+
+    /** Shard directory of words. */
+    private static final String WORDS = DIR + "/words";
+
+    /** Log of the ids of commits not yet in the shards, one per line. */
+    private static final String PENDING = DIR + "/pending";
+
+    /** Number of pending commits at which they are folded into the
+     * shards. */
+    static final int FOLD = 64;
+
+    /** Returns whether this repository has a message index.
+     *
+     * @param repo the repository
+     * @return true if the index exists
+     */
+    static boolean exists(Repository repo) {
+        return Utils.join(repo.root(), ".gitlet", DIR).isDirectory();
+    }
+
+    /** Adds commit to the index, if there is one, by appending its id to
+     * the pending log with a single write. Once FOLD commits are pending
+     * they are folded into the shards.
+     * @param repo the repository
+     * @param commit the commit
+     */
+    static void add(Repository repo, Commit commit) {
+        if (!exists(repo)) {
+            return;
+        }
+        File log = Utils.join(repo.root(), ".gitlet", PENDING);
+        try {
+            Files.write(log.toPath(), (commit.getId() + "\n")
+                    .getBytes(StandardCharsets.US_ASCII),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            repo.out().println("IOException: " + e.getMessage());
+            return;
+        }
+        if (log.length() >= FOLD * (commit.getId().length() + 1)) {
+            fold(repo);
+        }
+    }
+
+    /** Adds the pending commits of the index, if there is one, to its
+     * shards and empties the pending log. Pending commits that no longer
+     * exist are dropped.
+     * @param repo the repository
+     */
+    static void fold(Repository repo) {
+        if (!exists(repo)) {
+            return;
+        }
+        List<Commit> commits = pending(repo);
+        if (!commits.isEmpty()) {
+            addAll(repo, commits);
+        }
+        Utils.join(repo.root(), ".gitlet", PENDING).delete();
+    }
+
+    /** Returns the ids of the commits whose message is message, reading a
+     * single shard.
+     * @param repo the repository
+     * @param message the message
+     * @return the ids, oldest first
+     */
+    static List<String> find(Repository repo, String message) {
+        String key = Utils.sha1(message);
+        LinkedHashSet<String> ret = new LinkedHashSet<>(readShard(repo,
+                MESSAGES, key).getOrDefault(key, new ArrayList<>()));
+        for (Commit c : pending(repo)) {
+            if (c.getMessage().equals(message)) {
+                ret.add(c.getId());
+            }
+        }
+        return new ArrayList<>(ret);
+    }
+
+    /** Returns the ids of the commits whose message contains every word of
+     * query, ignoring case.
+     * @param repo the repository
+     * @param query the words to look for
+     * @return the ids, oldest first
+     */
+    static List<String> grep(Repository repo, String query) {
+        List<String> queryWords = words(query);
+        LinkedHashSet<String> ret = null;
+        for (String word : queryWords) {
+            ArrayList<String> ids = readShard(repo, WORDS, Utils.sha1(word))
+                    .getOrDefault(word, new ArrayList<>());
+            if (ret == null) {
+                ret = new LinkedHashSet<>(ids);
+            } else {
+                ret.retainAll(ids);
+            }
+        }
+        if (ret == null) {
+            return new ArrayList<>();
+        }
+        for (Commit c : pending(repo)) {
+            if (words(c.getMessage()).containsAll(queryWords)) {
+                ret.add(c.getId());
+            }
+        }
+        return new ArrayList<>(ret);
+    }
+
+    /** Adds commits to the index, creating it if it does not exist.
+     * Each shard touched is read and written once.
+     * @param repo the repository
+     * @param commits the commits to add
+     */
+    static void addAll(Repository repo, List<Commit> commits) {
+        ArrayList<String> ids = new ArrayList<>();
+        ArrayList<String> texts = new ArrayList<>();
+        for (Commit c : commits) {
+            ids.add(c.getId());
+            texts.add(c.getMessage());
+        }
+        addAll(repo, ids, texts);
+    }
+
+    /** Adds the commits with ids and messages to the index, creating it if
+     * it does not exist. Each shard touched is read and written once.
+     * @param repo the repository
+     * @param ids the ids of the commits
+     * @param texts the message of each commit in ids
+     */
+    static void addAll(Repository repo, List<String> ids, List<String> texts) {
+        HashMap<String, HashMap<String, ArrayList<String>>> messages =
+                new HashMap<>();
+        HashMap<String, HashMap<String, ArrayList<String>>> words =
+                new HashMap<>();
+        for (int i = 0; i < ids.size(); i += 1) {
+            String key = Utils.sha1(texts.get(i));
+            shardFor(repo, messages, MESSAGES, key)
+                    .computeIfAbsent(key, k -> new ArrayList<>())
+                    .add(ids.get(i));
+            for (String word : new LinkedHashSet<>(words(texts.get(i)))) {
+                shardFor(repo, words, WORDS, Utils.sha1(word))
+                        .computeIfAbsent(word, k -> new ArrayList<>())
+                        .add(ids.get(i));
+            }
+        }
+        writeShards(repo, MESSAGES, messages);
+        writeShards(repo, WORDS, words);
+    }
+
+    /** Removes the commits with ids from the index, if there is one,
+     * rewriting only the shards that mention them. Pending commits are
+     * folded into the shards first.
+     * @param repo the repository
+     * @param ids ids of the removed commits
+     */
+    static void removeAll(Repository repo, Set<String> ids) {
+        fold(repo);
+        if (ids.isEmpty() || !exists(repo)) {
+            return;
+        }
+        for (String dir : new String[] {MESSAGES, WORDS}) {
+            File d = Utils.join(repo.root(), ".gitlet", dir);
+            if (!d.isDirectory()) {
+                continue;
+            }
+            for (String name : Utils.plainFilenamesIn(d)) {
+                HashMap<String, ArrayList<String>> shard =
+                        readShard(repo, dir, name);
+                boolean changed = false;
+                Iterator<ArrayList<String>> it = shard.values().iterator();
+                while (it.hasNext()) {
+                    ArrayList<String> postings = it.next();
+                    changed |= postings.removeAll(ids);
+                    if (postings.isEmpty()) {
+                        it.remove();
+                    }
+                }
+                if (changed) {
+                    repo.writeFile(dir, name, shard);
+                }
+            }
+        }
+    }
+
+    /** Returns the lower-case words of text.
+     *
+     * @param text the text
+     * @return its words, in order
+     */
+    static List<String> words(String text) {
+        ArrayList<String> ret = new ArrayList<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        for (String w : lower.split("[^\\p{L}\\p{N}]+")) {
+            if (!w.isEmpty()) {
+                ret.add(w);
+            }
+        }
+        return ret;
+    }
+
+    /** Returns the shard of key in dir from loaded, reading it on first use.
+     *
+     * @param repo the repository
+     * @param loaded shards read so far, by shard name
+     * @param dir the shard directory
+     * @param key the hash of the key
+     * @return the shard
+     */
+    private static HashMap<String, ArrayList<String>> shardFor(
+            Repository repo,
+            HashMap<String, HashMap<String, ArrayList<String>>> loaded,
+            String dir, String key) {
+        return loaded.computeIfAbsent(key.substring(0, 2),
+                k -> readShard(repo, dir, key));
+    }
+
+    /** Writes every shard in loaded back to dir.
+     *
+     * @param repo the repository
+     * @param dir the shard directory
+     * @param loaded shards by shard name
+     */
+    private static void writeShards(Repository repo, String dir,
+            HashMap<String, HashMap<String, ArrayList<String>>> loaded) {
+        loaded.forEach((name, shard) -> repo.writeFile(dir, name, shard));
+    }
+
+    /** Returns the pending commits of repo that still exist, oldest
+     * first.
+     * @param repo the repository
+     * @return the commits
+     */
+    private static List<Commit> pending(Repository repo) {
+        File log = Utils.join(repo.root(), ".gitlet", PENDING);
+        ArrayList<Commit> ret = new ArrayList<>();
+        if (!log.isFile()) {
+            return ret;
+        }
+        String[] ids = Utils.readContentsAsString(log).split("\n");
+        for (String id : new LinkedHashSet<>(Arrays.asList(ids))) {
+            if (Utils.join(repo.root(), ".gitlet", ".commits", id).isFile()) {
+                ret.add((Commit) repo.readFile(".commits", id));
+            }
+        }
+        return ret;
+    }
+
+    /** Returns the shard of dir holding key, or an empty map.
+     *
+     * @param repo the repository
+     * @param dir the shard directory
+     * @param key the hash of the key
+     * @return the shard
+     */
+    @SuppressWarnings("unchecked")
+    private static HashMap<String, ArrayList<String>> readShard(
+            Repository repo, String dir, String key) {
+        String name = key.substring(0, 2);
+        File f = Utils.join(repo.root(), ".gitlet", dir, name);
+        if (!f.isFile()) {
+            return new HashMap<>();
+        }
+        return (HashMap<String, ArrayList<String>>) repo.readFile(dir, name);
+    }
+
+    /** Returns the commits in .commits satisfying matches, reading them in
+     * parallel, for repositories without an index. The index is built
+     * from the commits read, so later lookups do not scan.
+     * @param repo the repository
+     * @param matches the test a commit must satisfy
+     * @return the ids of the matching commits
+     */
+    static List<String> scan(Repository repo, Predicate<Commit> matches) {
+        List<String> names = Utils.plainFilenamesIn(
+                Utils.join(repo.root(), ".gitlet", ".commits"));
+        List<Commit> commits = names.parallelStream()
+                .map(n -> (Commit) repo.readFile(".commits", n))
+                .collect(Collectors.toList());
+        addAll(repo, commits);
+        return commits.parallelStream()
+                .filter(matches)
+                .map(Commit::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,148 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/** A cache of the commits and blobs read by Repository.readFile, shared by
+ * every repository open in the JVM. Commits and blobs never change once
+ * written, so an object read once can be handed out again without
+ * deserializing it; deleting an object through Repository.deleteFile or
+ * the garbage collector removes it from the cache. Entries are charged the
+ * size of their file and the least recently used are evicted once the total
+ * exceeds the capacity. The capacity is 0, which caches nothing, unless
+ * setCapacity changes it, as the server does.
+ * @author Megan Hu*/
+final class ObjectCache {
+
+    /** Not instantiable. */
+    private ObjectCache() {
+    }
+
+    /** Returns whether objects of .gitlet/dir are cached.
+     *
+     * @param dir the directory in .gitlet
+     * @return true for commits and blobs while the cache is on
+     */
+    static boolean caches(String dir) {
+        return capacity > 0
+                && (dir.equals(".commits") || dir.equals(".blobs"));
+    }
+
+    /** Sets the number of bytes of object files the cache may hold,
+     * evicting entries if it holds more.
+     * @param bytes the capacity, or 0 to cache nothing
+     */
+    static synchronized void setCapacity(long bytes) {
+        capacity = bytes;
+        evict();
+    }
+
+    /** Returns the object read from the file at path, or null if it is not
+     * cached.
+     * @param path the absolute path of the object's file
+     * @return the object, or null
+     */
+    static synchronized Object get(String path) {
+        Entry e = entries.get(path);
+        if (e == null) {
+            misses += 1;
+            return null;
+        }
+        hits += 1;
+        return e.obj;
+    }
+
+    /** Caches obj, read from the file at path of size bytes.
+     *
+     * @param path the absolute path of the object's file
+     * @param obj the object
+     * @param size the size of the file
+     */
+    static synchronized void put(String path, Object obj, long size) {
+        if (size > capacity) {
+            return;
+        }
+        Entry old = entries.put(path, new Entry(obj, size));
+        if (old != null) {
+            used -= old.size;
+        }
+        used += size;
+        evict();
+    }
+
+    /** Forgets the object in the file at path, which has been deleted.
+     *
+     * @param path the absolute path of the object's file
+     */
+    static synchronized void remove(String path) {
+        Entry old = entries.remove(path);
+        if (old != null) {
+            used -= old.size;
+        }
+    }
+
+    /** Returns the number of bytes of object files cached.
+     *
+     * @return the bytes used
+     */
+    static synchronized long used() {
+        return used;
+    }
+
+    /** Returns the number of lookups that found their object and that did
+     * not, since the cache was last cleared.
+     * @return hits and misses
+     */
+    static synchronized long[] counts() {
+        return new long[] {hits, misses};
+    }
+
+    /** Empties the cache and clears its counts. */
+    static synchronized void clear() {
+        entries.clear();
+        used = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    /** Evicts the least recently used entries until the cache holds no
+     * more than its capacity. */
+    private static void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (used > capacity && it.hasNext()) {
+            used -= it.next().size;
+            it.remove();
+        }
+    }
+
+    /** A cached object and the size it is charged. */
+    private static final class Entry {
+
+        /** An entry for obj, charged size bytes.
+         *
+         * @param obj the object
+         * @param size the size of its file
+         */
+        Entry(Object obj, long size) {
+            this.obj = obj;
+            this.size = size;
+        }
+
+        /** The object. */
+        private final Object obj;
+        /** The size of the object's file. */
+        private final long size;
+    }
+
+    /** The entries by path, least recently used first. */
+    private static final LinkedHashMap<String, Entry> entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** The number of bytes the cache may hold. */
+    private static volatile long capacity;
+    /** The number of bytes the cache holds. */
+    private static long used;
+    /** The number of lookups that found their object. */
+    private static long hits;
+    /** The number of lookups that did not. */
+    private static long misses;
+}
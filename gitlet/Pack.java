@@ -0,0 +1,295 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** A stream of objects copied from one repository to another in a single
+ * transfer. A pack is deflated and holds MAGIC, the number of commits and
+ * of blobs it carries, then each object as a kind byte, its id, its length
+ * and the bytes of its file in .gitlet, and finally the kind END. Blobs
+ * come before commits and each commit after its parents, with its
+ * metadata right after it, so that a receiver interrupted part way never
+ * holds a commit without its history.
+ * @author Megan Hu*/
+final class Pack {
+
+    /** First int of every pack. */
+    static final int MAGIC = 0x474c504b;
+
+    /** Kind of a blob. */
+    static final byte BLOB = 0;
+
+    /** Kind of a commit. */
+    static final byte COMMIT = 1;
+
+    /** Kind of the metadata of the commit before it. */
+    static final byte META = 2;
+
+    /** Kind ending a pack. */
+    static final byte END = -1;
+
+    /** Pattern of an object id. */
+    private static final Pattern ID = Pattern.compile("[0-9a-f]{40}");
+
+    /** Id of this process, naming the temporary files of objects. */
+    private static final long PID = ProcessHandle.current().pid();
+
+    /** Size of the buffers around the stream. */
+    private static final int BUFFER = 1 << 16;
+
+    /** Not instantiable. */
+    private Pack() {
+    }
+
+    /** Writes to out a pack of the blobs and commits with the given ids
+     * from repository repo, closing out.
+     * @param repo the repository
+     * @param out the stream
+     * @param commits ids of the commits, each after its parents
+     * @param blobs ids of the blobs
+     * @throws IOException if an object cannot be read or out written
+     */
+    static void write(Repository repo, OutputStream out, List<String> commits,
+                      List<String> blobs) throws IOException {
+        try (DataOutputStream data = new DataOutputStream(
+                new BufferedOutputStream(new DeflaterOutputStream(out,
+                        new Deflater(Deflater.BEST_SPEED), BUFFER),
+                        BUFFER))) {
+            data.writeInt(MAGIC);
+            data.writeInt(commits.size());
+            data.writeInt(blobs.size());
+            for (String id : blobs) {
+                writeObject(repo, data, BLOB, ".blobs", id);
+            }
+            for (String id : commits) {
+                writeObject(repo, data, COMMIT, ".commits", id);
+                if (file(repo, CommitMeta.DIR, id).isFile()) {
+                    writeObject(repo, data, META, CommitMeta.DIR, id);
+                }
+            }
+            data.writeByte(END);
+        }
+    }
+
+    /** Reads the pack in into repository repo, adding its commits to the
+     * message index if there is one, and closes in. If progress, reports
+     * progress and throughput on System.err.
+     * @param repo the repository
+     * @param in the stream
+     * @param progress whether to report progress
+     * @return what was received
+     * @throws IOException if in is not a whole pack or an object cannot be
+     *         written
+     */
+    static Transfer read(Repository repo, InputStream in, boolean progress)
+            throws IOException {
+        long start = System.nanoTime();
+        ArrayList<Commit> received = new ArrayList<>();
+        boolean indexed = MessageIndex.exists(repo);
+        try (DataInputStream data = new DataInputStream(
+                new BufferedInputStream(new InflaterInputStream(in,
+                        new Inflater(), BUFFER), BUFFER))) {
+            if (data.readInt() != MAGIC) {
+                throw new IOException("not a pack");
+            }
+            Transfer ret = new Transfer(data.readInt(), data.readInt());
+            int total = ret.commits + ret.blobs;
+            int done = 0;
+            int shown = -1;
+            for (byte kind = data.readByte(); kind != END;
+                 kind = data.readByte()) {
+                String id = data.readUTF();
+                if (kind != BLOB && kind != COMMIT && kind != META
+                        || !ID.matcher(id).matches()) {
+                    throw new IOException("bad object " + id);
+                }
+                byte[] bytes = new byte[data.readInt()];
+                data.readFully(bytes);
+                String dir = kind == BLOB ? ".blobs"
+                        : kind == COMMIT ? ".commits" : CommitMeta.DIR;
+                store(repo, dir, id, bytes);
+                ret.bytes += bytes.length;
+                if (kind == META) {
+                    continue;
+                }
+                if (kind == COMMIT && indexed) {
+                    received.add(toCommit(bytes));
+                }
+                done += 1;
+                if (done > total) {
+                    throw new IOException("pack holds more than " + total
+                            + " objects");
+                }
+                int percent = done * 100 / total;
+                if (progress && percent != shown) {
+                    shown = percent;
+                    System.err.print("\rReceiving objects: " + percent
+                            + "% (" + done + "/" + total + ")");
+                }
+            }
+            if (done != total) {
+                throw new IOException("pack ended after " + done + " of "
+                        + total + " objects");
+            }
+            if (!received.isEmpty()) {
+                MessageIndex.addAll(repo, received);
+            }
+            ret.nanos = System.nanoTime() - start;
+            if (progress && total > 0) {
+                System.err.println(", " + ret.throughput() + ", done.");
+            }
+            return ret;
+        }
+    }
+
+    /** Writes the object id of the given kind, stored in dir, to data.
+     *
+     * @param repo the repository
+     * @param data the stream
+     * @param kind the kind of the object
+     * @param dir its directory in .gitlet
+     * @param id its id
+     * @throws IOException if it cannot be read or data written
+     */
+    private static void writeObject(Repository repo, DataOutputStream data,
+                                    byte kind, String dir, String id)
+            throws IOException {
+        byte[] bytes = Files.readAllBytes(file(repo, dir, id).toPath());
+        data.writeByte(kind);
+        data.writeUTF(id);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    /** Stores bytes as the file id in dir, through a temporary file so
+     * that the object never appears partly written.
+     * @param repo the repository
+     * @param dir the directory in .gitlet
+     * @param id the name of the file
+     * @param bytes its contents
+     * @throws IOException if it cannot be written
+     */
+    private static void store(Repository repo, String dir, String id,
+                              byte[] bytes) throws IOException {
+        File f = file(repo, dir, id);
+        f.getParentFile().mkdirs();
+        Path tmp = new File(f.getPath() + "." + PID + "."
+                + Thread.currentThread().getId() + ".tmp").toPath();
+        Files.write(tmp, bytes);
+        Files.move(tmp, f.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Returns the commit serialized in bytes.
+     *
+     * @param bytes the contents of a commit's file
+     * @return the commit
+     * @throws IOException if bytes do not hold a commit
+     */
+    private static Commit toCommit(byte[] bytes) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes))) {
+            return (Commit) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /** Returns the file of id in dir in repository repo.
+     *
+     * @param repo the repository
+     * @param dir the directory in .gitlet
+     * @param id the name of the file
+     * @return the file
+     */
+    private static File file(Repository repo, String dir, String id) {
+        return Utils.join(repo.root(), ".gitlet", dir, id);
+    }
+
+    /** The objects a pack carried, and how long reading it took. */
+    static final class Transfer {
+
+        /** A transfer of the given numbers of objects.
+         *
+         * @param commits the number of commits
+         * @param blobs the number of blobs
+         */
+        Transfer(int commits, int blobs) {
+            this.commits = commits;
+            this.blobs = blobs;
+        }
+
+        /** Getter method for commits.
+         *
+         * @return the number of commits received
+         */
+        int getCommits() {
+            return commits;
+        }
+
+        /** Getter method for blobs.
+         *
+         * @return the number of blobs received
+         */
+        int getBlobs() {
+            return blobs;
+        }
+
+        /** Getter method for bytes.
+         *
+         * @return the total size of the objects' files
+         */
+        long getBytes() {
+            return bytes;
+        }
+
+        /** Returns the size received and the rate it was received at.
+         *
+         * @return the throughput, as in "1.20 MiB | 30.50 MiB/s"
+         */
+        String throughput() {
+            double seconds = Math.max(nanos, 1) / 1e9;
+            return size(bytes) + " | " + size((long) (bytes / seconds))
+                    + "/s";
+        }
+
+        /** Returns n bytes in KiB or MiB.
+         *
+         * @param n the number of bytes
+         * @return the size, as in "1.20 MiB"
+         */
+        private static String size(long n) {
+            if (n < 1024 * 1024) {
+                return String.format("%.2f KiB", n / 1024.0);
+            }
+            return String.format("%.2f MiB", n / (1024.0 * 1024.0));
+        }
+
+        /** Number of commits. */
+        private final int commits;
+        /** Number of blobs. */
+        private final int blobs;
+        /** Total size of the objects' files, metadata included. */
+        private long bytes;
+        /** Time taken to read the pack. */
+        private long nanos;
+    }
+}
@@ -0,0 +1,150 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Blobs fetched on demand by a partial clone, which holds every commit
+ * but only the blobs of the commit checked out when it was cloned. The
+ * name of the remote holding the rest is kept in .gitlet/partial. A blob
+ * Repository.readFile finds missing is fetched from that remote alone, and
+ * commands about to read many blobs, such as checkout and merge, prefetch
+ * the missing ones in a single pack first.
+ * @author Megan Hu*/
+final class PartialClone {
+
+    /** File naming the remote missing blobs are fetched from, in .gitlet. */
+    static final String FILE = "partial";
+
+    /** Not instantiable. */
+    private PartialClone() {
+    }
+
+    /** Marks repo as a partial clone of remote.
+     *
+     * @param repo the repository
+     * @param remote the name of the remote holding the missing blobs
+     */
+    static void mark(Repository repo, String remote) {
+        Utils.writeContents(file(repo), remote, "\n");
+    }
+
+    /** Returns whether repo is a partial clone.
+     *
+     * @param repo the repository
+     * @return true if blobs may be missing
+     */
+    static boolean isPartial(Repository repo) {
+        return file(repo).isFile();
+    }
+
+    /** Fetches the blob with id id, if repo is a partial clone and does
+     * not have it.
+     * @param repo the repository
+     * @param id the blob id
+     * @return true if the blob was fetched
+     */
+    static boolean fetch(Repository repo, String id) {
+        return isPartial(repo) && prefetch(repo, List.of(id)) > 0;
+    }
+
+    /** Fetches, in one pack, the blobs with the given ids that repo lacks,
+     * if it is a partial clone. A blob another thread of this process is
+     * already fetching into repo is waited for rather than fetched again.
+     * No lock is held while the pack is transferred, so fetches into
+     * different repositories, and of different blobs into the same one,
+     * run at the same time.
+     * @param repo the repository
+     * @param ids the blob ids
+     * @return the number of the blobs missing that are now present
+     */
+    static int prefetch(Repository repo, Collection<String> ids) {
+        if (!isPartial(repo)) {
+            return 0;
+        }
+        ConcurrentHashMap<String, CompletableFuture<Void>> fetching =
+                FETCHING.computeIfAbsent(repo.root(),
+                    r -> new ConcurrentHashMap<>());
+        CompletableFuture<Void> mine = new CompletableFuture<>();
+        LinkedHashSet<String> missing = new LinkedHashSet<>();
+        LinkedHashMap<String, CompletableFuture<Void>> others =
+                new LinkedHashMap<>();
+        for (String id : ids) {
+            if (Remote.has(repo, ".blobs", id)) {
+                continue;
+            }
+            CompletableFuture<Void> other = fetching.putIfAbsent(id, mine);
+            if (other != null) {
+                others.put(id, other);
+            } else if (Remote.has(repo, ".blobs", id)) {
+                fetching.remove(id, mine);
+            } else {
+                missing.add(id);
+            }
+        }
+        int ret = 0;
+        try {
+            if (!missing.isEmpty()) {
+                ret = fetchPack(repo, missing);
+            }
+        } finally {
+            for (String id : missing) {
+                fetching.remove(id, mine);
+            }
+            mine.complete(null);
+        }
+        for (Map.Entry<String, CompletableFuture<Void>> e
+                : others.entrySet()) {
+            e.getValue().join();
+            if (Remote.has(repo, ".blobs", e.getKey())) {
+                ret += 1;
+            }
+        }
+        return ret;
+    }
+
+    /** Fetches, in one pack, the blobs with the given ids from the remote
+     * repo is a partial clone of.
+     * @param repo the repository
+     * @param missing ids of blobs repo lacks
+     * @return the number of blobs fetched
+     */
+    private static int fetchPack(Repository repo, Collection<String> missing) {
+        String name = Utils.readContentsAsString(file(repo)).trim();
+        Repository remote = Remote.open(repo, name);
+        if (remote == null) {
+            return 0;
+        }
+        boolean chained = isPartial(remote);
+        ArrayList<String> found = new ArrayList<>();
+        for (String id : missing) {
+            if (chained || Remote.has(remote, ".blobs", id)) {
+                found.add(id);
+            }
+        }
+        Pack.Transfer t = Remote.send(remote, repo, new ArrayList<>(),
+                found, false);
+        return t == null ? 0 : t.getBlobs();
+    }
+
+    /** Returns the file marking repo as a partial clone.
+     *
+     * @param repo the repository
+     * @return the file
+     */
+    private static File file(Repository repo) {
+        return Utils.join(repo.root(), ".gitlet", FILE);
+    }
+
+    /** Blobs being fetched, by the root of the repository fetching them
+     * and then by id, each completed once its pack has been read. */
+    private static final ConcurrentHashMap<String,
+            ConcurrentHashMap<String, CompletableFuture<Void>>> FETCHING =
+            new ConcurrentHashMap<>();
+}
@@ -0,0 +1,645 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/** An immutable map stored as a hash array mapped trie. plus and minus
+ * return new maps that share every node of this one except the O(log32 n)
+ * nodes on the path to the changed key, so deriving the files of a commit
+ * from its parent's costs time and space in the number of changes only.
+ * The mutators of Map throw UnsupportedOperationException, and keys and
+ * values may not be null. Iteration order depends only on the keys held,
+ * not on the order they were added in.
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @author Megan Hu*/
+class PersistentMap<K extends Comparable<? super K>, V>
+        extends AbstractMap<K, V> implements Serializable {
+
+    /** Serial version of maps, fixed so that the files of stored commits
+     * stay readable as the class changes. */
+    private static final long serialVersionUID = 7953884212371502190L;
+
+    /** Bits of the hash consumed by each level of the trie. */
+    private static final int BITS = 5;
+
+    /** The map with no entries. */
+    @SuppressWarnings("rawtypes")
+    private static final PersistentMap EMPTY = new PersistentMap<>(null, 0);
+
+    /** A map with the entries under root, of which there are size.
+     *
+     * @param root the root of the trie, or null if empty
+     * @param size the number of entries
+     */
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /** Returns the empty map.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return the map
+     */
+    @SuppressWarnings("unchecked")
+    static <K extends Comparable<? super K>, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /** Returns a map with the entries of map, which is returned itself if
+     * it is a PersistentMap.
+     * @param map the entries
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return the map
+     */
+    @SuppressWarnings("unchecked")
+    static <K extends Comparable<? super K>, V> PersistentMap<K, V> copyOf(
+            Map<K, V> map) {
+        if (map instanceof PersistentMap) {
+            return (PersistentMap<K, V>) map;
+        }
+        PersistentMap<K, V> ret = empty();
+        for (Map.Entry<K, V> e : map.entrySet()) {
+            ret = ret.plus(e.getKey(), e.getValue());
+        }
+        return ret;
+    }
+
+    /** Returns this map with key mapped to value, which is this map if it
+     * already maps key to an equal value.
+     * @param key the key
+     * @param value the value
+     * @return the new map
+     */
+    PersistentMap<K, V> plus(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("null key or value");
+        }
+        int hash = hash(key);
+        boolean[] added = new boolean[1];
+        Node node = root == null
+                ? new BitmapNode(0, new Object[0]).plus(hash, 0, key, value,
+                        added)
+                : root.plus(hash, 0, key, value, added);
+        if (node == root) {
+            return this;
+        }
+        return new PersistentMap<>(node, added[0] ? size + 1 : size);
+    }
+
+    /** Returns this map without key, which is this map if it has no entry
+     * for key.
+     * @param key the key
+     * @return the new map
+     */
+    PersistentMap<K, V> minus(Object key) {
+        if (root == null || key == null) {
+            return this;
+        }
+        Node node = root.minus(hash(key), 0, key);
+        if (node == root) {
+            return this;
+        }
+        return node == null ? empty() : new PersistentMap<>(node, size - 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (root == null || key == null) {
+            return null;
+        }
+        return (V) root.get(hash(key), 0, key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                Object v = PersistentMap.this.get(e.getKey());
+                return v != null && v.equals(e.getValue());
+            }
+        };
+    }
+
+    /** Returns the hash of key, with its high bits spread into the low
+     * ones that the top levels of the trie use.
+     * @param key the key
+     * @return the hash
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /** A node of the trie. */
+    private abstract static class Node implements Serializable {
+
+        /** Serial version of nodes. */
+        private static final long serialVersionUID = -705738433618626074L;
+
+        /** Returns the value of key, whose hash is hash, below this node at
+         * depth shift, or null.
+         * @param hash the hash of key
+         * @param shift the number of hash bits used above this node
+         * @param key the key
+         * @return the value, or null
+         */
+        abstract Object get(int hash, int shift, Object key);
+
+        /** Returns this node with key mapped to value, setting added[0] if
+         * key was absent, or this node itself if nothing changed.
+         * @param hash the hash of key
+         * @param shift the number of hash bits used above this node
+         * @param key the key
+         * @param value the value
+         * @param added set to true if the key is new
+         * @return the new node
+         */
+        abstract Node plus(int hash, int shift, Object key, Object value,
+                           boolean[] added);
+
+        /** Returns this node without key, null if that leaves it empty, or
+         * this node itself if key was absent.
+         * @param hash the hash of key
+         * @param shift the number of hash bits used above this node
+         * @param key the key
+         * @return the new node, or null
+         */
+        abstract Node minus(int hash, int shift, Object key);
+
+        /** Returns the keys, values and child nodes of this node as an
+         * array of pairs; a pair whose key is null holds a child node.
+         * @return the array
+         */
+        abstract Object[] pairs();
+    }
+
+    /** A node with up to 32 slots chosen by BITS bits of the hash. Slot i,
+     * present if bit i of bitmap is set, is a pair of array holding a key
+     * and its value, or null and a child node.
+     */
+    private static final class BitmapNode extends Node {
+
+        /** Serial version of bitmap nodes. */
+        private static final long serialVersionUID = -3190601159636825089L;
+
+        /** A node with the given slots.
+         *
+         * @param bitmap the slots present
+         * @param array the pairs of the slots present, in slot order
+         */
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        @Override
+        Object get(int hash, int shift, Object key) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            if (array[i] == null) {
+                return ((Node) array[i + 1]).get(hash, shift + BITS, key);
+            }
+            return key.equals(array[i]) ? array[i + 1] : null;
+        }
+
+        @Override
+        Node plus(int hash, int shift, Object key, Object value,
+                  boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                Object[] a = new Object[array.length + 2];
+                System.arraycopy(array, 0, a, 0, i);
+                a[i] = key;
+                a[i + 1] = value;
+                System.arraycopy(array, i, a, i + 2, array.length - i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, a);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            Node child;
+            if (k == null) {
+                child = ((Node) v).plus(hash, shift + BITS, key, value, added);
+                if (child == v) {
+                    return this;
+                }
+            } else if (key.equals(k)) {
+                if (value.equals(v)) {
+                    return this;
+                }
+                return with(i, key, value);
+            } else {
+                added[0] = true;
+                child = split(shift + BITS, k, v, hash, key, value);
+            }
+            return with(i, null, child);
+        }
+
+        @Override
+        Node minus(int hash, int shift, Object key) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object k = array[i];
+            if (k == null) {
+                Node child = ((Node) array[i + 1]).minus(hash, shift + BITS,
+                        key);
+                if (child == array[i + 1]) {
+                    return this;
+                }
+                if (child != null) {
+                    Object[] p = child.pairs();
+                    if (p.length == 2 && p[0] != null) {
+                        return with(i, p[0], p[1]);
+                    }
+                    return with(i, null, child);
+                }
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] a = new Object[array.length - 2];
+            System.arraycopy(array, 0, a, 0, i);
+            System.arraycopy(array, i + 2, a, i, array.length - i - 2);
+            return new BitmapNode(bitmap & ~bit, a);
+        }
+
+        @Override
+        Object[] pairs() {
+            return array;
+        }
+
+        /** Returns a copy of this node with pair i set to key and value.
+         *
+         * @param i the index of the pair's key in array
+         * @param key the key, or null
+         * @param value the value or child node
+         * @return the copy
+         */
+        private Node with(int i, Object key, Object value) {
+            Object[] a = array.clone();
+            a[i] = key;
+            a[i + 1] = value;
+            return new BitmapNode(bitmap, a);
+        }
+
+        /** Bits of the slots present. */
+        private final int bitmap;
+        /** Pairs of the slots present. */
+        private final Object[] array;
+    }
+
+    /** A node holding keys whose hashes are equal, sorted by key. */
+    private static final class CollisionNode extends Node {
+
+        /** Serial version of collision nodes. */
+        private static final long serialVersionUID = 6038014863030848443L;
+
+        /** A node of keys with hash hash and the given pairs.
+         *
+         * @param hash the hash of every key
+         * @param array the pairs, sorted by key
+         */
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        @Override
+        Object get(int h, int shift, Object key) {
+            int i = find(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node plus(int h, int shift, Object key, Object value,
+                  boolean[] added) {
+            if (h != hash) {
+                int bit = 1 << ((hash >>> shift) & 31);
+                return new BitmapNode(bit, new Object[] {null, this})
+                        .plus(h, shift, key, value, added);
+            }
+            int i = find(key);
+            if (i >= 0) {
+                if (value.equals(array[i + 1])) {
+                    return this;
+                }
+                Object[] a = array.clone();
+                a[i + 1] = value;
+                return new CollisionNode(hash, a);
+            }
+            i = 0;
+            while (i < array.length
+                    && ((Comparable<Object>) array[i]).compareTo(key) < 0) {
+                i += 2;
+            }
+            Object[] a = new Object[array.length + 2];
+            System.arraycopy(array, 0, a, 0, i);
+            a[i] = key;
+            a[i + 1] = value;
+            System.arraycopy(array, i, a, i + 2, array.length - i);
+            added[0] = true;
+            return new CollisionNode(hash, a);
+        }
+
+        @Override
+        Node minus(int h, int shift, Object key) {
+            int i = find(key);
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] a = new Object[array.length - 2];
+            System.arraycopy(array, 0, a, 0, i);
+            System.arraycopy(array, i + 2, a, i, array.length - i - 2);
+            return new CollisionNode(hash, a);
+        }
+
+        @Override
+        Object[] pairs() {
+            return array;
+        }
+
+        /** Returns the index of key in array, or -1.
+         *
+         * @param key the key
+         * @return the index
+         */
+        private int find(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /** The hash of every key. */
+        private final int hash;
+        /** The pairs, sorted by key. */
+        private final Object[] array;
+    }
+
+    /** Returns a node at depth shift holding key k1 with value v1 and key
+     * k2, whose hash is h2, with value v2.
+     * @param shift the number of hash bits used above the node
+     * @param k1 the first key
+     * @param v1 its value
+     * @param h2 the hash of the second key
+     * @param k2 the second key
+     * @param v2 its value
+     * @return the node
+     */
+    @SuppressWarnings("unchecked")
+    private static Node split(int shift, Object k1, Object v1, int h2,
+                              Object k2, Object v2) {
+        int h1 = hash(k1);
+        if (h1 == h2) {
+            boolean first = ((Comparable<Object>) k1).compareTo(k2) < 0;
+            return new CollisionNode(h1, first ? new Object[] {k1, v1, k2, v2}
+                    : new Object[] {k2, v2, k1, v1});
+        }
+        boolean[] added = new boolean[1];
+        return new BitmapNode(0, new Object[0])
+                .plus(h1, shift, k1, v1, added)
+                .plus(h2, shift, k2, v2, added);
+    }
+
+    /** An iterator over the entries of the trie, depth first. */
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+        /** An iterator starting at the first entry. */
+        EntryIterator() {
+            if (root != null) {
+                stack[0] = root.pairs();
+                depth = 1;
+                advance();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+            Object[] a = stack[depth - 1];
+            int i = index[depth - 1];
+            Map.Entry<K, V> ret = new AbstractMap.SimpleImmutableEntry<>(
+                    (K) a[i], (V) a[i + 1]);
+            index[depth - 1] += 2;
+            advance();
+            return ret;
+        }
+
+        /** Moves to the next entry, descending into child nodes and
+         * leaving exhausted ones, so that the top of the stack is at an
+         * entry unless the stack is empty.
+         */
+        private void advance() {
+            while (depth > 0) {
+                Object[] a = stack[depth - 1];
+                int i = index[depth - 1];
+                if (i >= a.length) {
+                    depth -= 1;
+                } else if (a[i] == null) {
+                    index[depth - 1] += 2;
+                    Object[] child = ((Node) a[i + 1]).pairs();
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                        index = Arrays.copyOf(index, depth * 2);
+                    }
+                    stack[depth] = child;
+                    index[depth] = 0;
+                    depth += 1;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        /** The pairs of the nodes on the path to the current entry. */
+        private Object[][] stack = new Object[8][];
+        /** The index of the current pair in each node on the path. */
+        private int[] index = new int[8];
+        /** The number of nodes on the path. */
+        private int depth;
+    }
+
+    /** Returns the form in which this map is serialized: its entries in
+     * one flat array rather than its nodes, which is smaller and faster to
+     * write and read.
+     * @return the serialized form
+     */
+    private Object writeReplace() {
+        Object[] pairs = new Object[2 * size];
+        int i = 0;
+        for (Map.Entry<K, V> e : entrySet()) {
+            pairs[i] = e.getKey();
+            pairs[i + 1] = e.getValue();
+            i += 2;
+        }
+        return new Flat(pairs);
+    }
+
+    /** Returns the key by which entries with hash h are ordered: its
+     * groups of BITS bits, least significant first, from most significant
+     * to least, which is the order of iteration.
+     * @param h the hash
+     * @return the key, compared as unsigned
+     */
+    private static long order(int h) {
+        long ret = 0;
+        for (int shift = 0; shift < 32; shift += BITS) {
+            ret = (ret << BITS) | ((h >>> shift) & 31);
+        }
+        return ret;
+    }
+
+    /** The serialized form of a map, its keys and values alternating. */
+    private static final class Flat implements Serializable {
+
+        /** Serial version of the serialized form. */
+        private static final long serialVersionUID = 5505925194465951237L;
+
+        /** The form of a map with the given pairs.
+         *
+         * @param pairs the keys and values, alternating
+         */
+        Flat(Object[] pairs) {
+            this.pairs = pairs;
+        }
+
+        /** Returns the map this is the form of, building its trie level by
+         * level from the entries sorted in iteration order.
+         * @return the map
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Object readResolve() {
+            int n = pairs.length / 2;
+            if (n == 0) {
+                return EMPTY;
+            }
+            Integer[] index = new Integer[n];
+            int[] hashes = new int[n];
+            for (int i = 0; i < n; i += 1) {
+                index[i] = i;
+                hashes[i] = hash(pairs[2 * i]);
+            }
+            Arrays.sort(index, (a, b) -> {
+                int c = Long.compareUnsigned(order(hashes[a]),
+                        order(hashes[b]));
+                return c != 0 ? c : ((Comparable) pairs[2 * a])
+                        .compareTo(pairs[2 * b]);
+            });
+            Object[] sorted = new Object[pairs.length];
+            int[] sortedHashes = new int[n];
+            for (int i = 0; i < n; i += 1) {
+                sorted[2 * i] = pairs[2 * index[i]];
+                sorted[2 * i + 1] = pairs[2 * index[i] + 1];
+                sortedHashes[i] = hashes[index[i]];
+            }
+            return new PersistentMap<>(build(sorted, sortedHashes, 0, n, 0),
+                    n);
+        }
+
+        /** Returns a node at depth shift holding entries from to to of
+         * pairs, whose hashes are in hashes and which are sorted in
+         * iteration order.
+         * @param pairs the keys and values, alternating
+         * @param hashes the hashes of the keys
+         * @param from the first entry
+         * @param to the entry after the last
+         * @param shift the number of hash bits used above the node
+         * @return the node
+         */
+        private static Node build(Object[] pairs, int[] hashes, int from,
+                                  int to, int shift) {
+            if (hashes[from] == hashes[to - 1] && to - from > 1) {
+                return new CollisionNode(hashes[from], Arrays.copyOfRange(
+                        pairs, 2 * from, 2 * to));
+            }
+            int bitmap = 0;
+            Object[] array = new Object[64];
+            int size = 0;
+            for (int i = from; i < to;) {
+                int digit = (hashes[i] >>> shift) & 31;
+                int j = i + 1;
+                while (j < to && ((hashes[j] >>> shift) & 31) == digit) {
+                    j += 1;
+                }
+                bitmap |= 1 << digit;
+                if (j - i == 1) {
+                    array[size] = pairs[2 * i];
+                    array[size + 1] = pairs[2 * i + 1];
+                } else {
+                    array[size + 1] = build(pairs, hashes, i, j,
+                            shift + BITS);
+                }
+                size += 2;
+                i = j;
+            }
+            return new BitmapNode(bitmap, Arrays.copyOf(array, size));
+        }
+
+        /** The keys and values, alternating. */
+        private final Object[] pairs;
+    }
+
+    /** The root of the trie, or null if the map is empty. */
+    private final Node root;
+    /** The number of entries. */
+    private final int size;
+}
@@ -0,0 +1,130 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the persistent maps holding the files of commits.
+ *  @author Megan Hu
+ */
+public class PersistentMapTest {
+
+    /** Random additions, changes and removals give the same entries as a
+     * HashMap receiving the same operations, and leave earlier versions
+     * unchanged. */
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(61);
+        HashMap<String, String> expected = new HashMap<>();
+        PersistentMap<String, String> map = PersistentMap.empty();
+        for (int i = 0; i < 20000; i += 1) {
+            String key = "file" + random.nextInt(3000);
+            PersistentMap<String, String> before = map;
+            HashMap<String, String> beforeExpected = new HashMap<>(expected);
+            if (random.nextInt(3) == 0) {
+                map = map.minus(key);
+                expected.remove(key);
+            } else {
+                String value = "blob" + random.nextInt(5);
+                map = map.plus(key, value);
+                expected.put(key, value);
+            }
+            if (i % 1000 == 0) {
+                assertEquals(expected, map);
+                assertEquals(beforeExpected, before);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+        assertEquals(new HashMap<>(map), expected);
+    }
+
+    /** Keys with equal hash codes are kept apart and removed one at a
+     * time. */
+    @Test
+    public void collidingKeys() {
+        PersistentMap<String, String> map = PersistentMap.empty();
+        map = map.plus("Aa", "1").plus("BB", "2").plus("C#", "3");
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertEquals(3, map.size());
+        assertEquals("2", map.get("BB"));
+        map = map.minus("Aa");
+        assertNull(map.get("Aa"));
+        assertEquals("2", map.get("BB"));
+        assertEquals(2, map.size());
+        assertEquals(0, map.minus("BB").minus("C#").size());
+    }
+
+    /** Maps with the same entries iterate in the same order, whatever the
+     * order the entries were added and removed in. */
+    @Test
+    public void orderIndependentOfHistory() {
+        ArrayList<String> keys = new ArrayList<>();
+        for (int i = 0; i < 500; i += 1) {
+            keys.add("dir" + (i % 7) + "/f" + i);
+        }
+        keys.add("Aa");
+        keys.add("BB");
+        PersistentMap<String, String> forward = PersistentMap.empty();
+        for (String key : keys) {
+            forward = forward.plus(key, key);
+        }
+        PersistentMap<String, String> backward = PersistentMap.empty();
+        for (int i = keys.size() - 1; i >= 0; i -= 1) {
+            backward = backward.plus("extra" + i, "x")
+                    .plus(keys.get(i), keys.get(i)).minus("extra" + i);
+        }
+        assertEquals(new ArrayList<>(forward.keySet()),
+                new ArrayList<>(backward.keySet()));
+    }
+
+    /** Adding an entry the map already holds returns the same map, and
+     * the map cannot be changed through the Map interface. */
+    @Test
+    public void unchangedAndImmutable() {
+        PersistentMap<String, String> map = PersistentMap.copyOf(
+                Map.of("a", "1", "b", "2"));
+        assertSame(map, map.plus("a", "1"));
+        assertSame(map, map.minus("c"));
+        assertNotSame(map, map.plus("a", "3"));
+        try {
+            map.put("c", "3");
+            fail("put succeeded");
+        } catch (UnsupportedOperationException e) {
+            assertEquals(2, map.size());
+        }
+    }
+
+    /** A map read back after serialization has the same entries in the
+     * same order and can be derived from. */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void serialization() throws IOException, ClassNotFoundException {
+        PersistentMap<String, String> map = PersistentMap.empty();
+        for (int i = 0; i < 3000; i += 1) {
+            map = map.plus("f" + i, "b" + (i % 10));
+        }
+        map = map.plus("Aa", "x").plus("BB", "y").minus("f7");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(map);
+        out.close();
+        PersistentMap<String, String> read = (PersistentMap<String, String>)
+                new ObjectInputStream(new ByteArrayInputStream(
+                        bytes.toByteArray())).readObject();
+        assertEquals(map, read);
+        assertEquals(new ArrayList<>(map.keySet()),
+                new ArrayList<>(read.keySet()));
+        assertEquals("y", read.get("BB"));
+        assertEquals(map.plus("new", "n").minus("f8"),
+                read.plus("new", "n").minus("f8"));
+    }
+}
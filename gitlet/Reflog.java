@@ -0,0 +1,175 @@
+package gitlet;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/** Class recording where refs pointed over time. Each ref has an
+ * append-only log .gitlet/logs/REFNAME of lines "OLD NEW TIME MESSAGE",
+ * oldest first, and HEAD has one in .gitlet/logs/HEAD. Logs are only
+ * ever appended to, and are read from the end backwards.
+ * @author Megan Hu*/
+class Reflog {
+
+    /** Name of the log of HEAD, which records branch checkouts as well. */
+    static final String HEAD = "HEAD";
+
+    /** Id written as the old value of a ref that did not exist. */
+    static final String NULL_ID = "0000000000000000000000000000000000000000";
+
+    /** Size of the chunks logs are read backwards in. */
+    private static final int CHUNK = 4096;
+
+    /** Appends an entry for ref moving from oldId to newId to its log with
+     * a single write.
+     * @param repo the repository
+     * @param ref full name of the ref, or HEAD
+     * @param oldId id ref pointed to before, or null if it did not exist
+     * @param newId id ref points to now
+     * @param message description of the update
+     */
+    static void append(Repository repo, String ref, String oldId,
+                       String newId, String message) {
+        String line = (oldId == null ? NULL_ID : oldId) + " " + newId + " "
+                + System.currentTimeMillis() + " "
+                + message.replace('\n', ' ') + "\n";
+        File log = logFile(repo, ref);
+        log.getParentFile().mkdirs();
+        try {
+            Files.write(log.toPath(), line.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            repo.out().println("IOException: " + e.getMessage());
+        }
+    }
+
+    /** Deletes the log of ref.
+     *
+     * @param repo the repository
+     * @param ref full name of the ref
+     */
+    static void delete(Repository repo, String ref) {
+        logFile(repo, ref).delete();
+    }
+
+    /** Returns the id ref pointed to n updates ago, or null if its log
+     * has fewer entries.
+     * @param repo the repository
+     * @param ref full name of the ref, or HEAD
+     * @param n number of updates to go back
+     * @return the id, or null
+     */
+    static String nth(Repository repo, String ref, int n) {
+        String[] ret = new String[1];
+        int[] count = new int[1];
+        forEachReverse(repo, ref, line -> {
+            if (count[0] == n) {
+                ret[0] = line.split(" ", 4)[1];
+                return false;
+            }
+            count[0] += 1;
+            return true;
+        });
+        return ret[0];
+    }
+
+    /** Prints the log of ref, newest entry first, as lines
+     * "ID NAME@{N}: MESSAGE".
+     * @param repo the repository
+     * @param ref full name of the ref, or HEAD
+     * @param name name of the ref shown in each line
+     */
+    static void print(Repository repo, String ref, String name) {
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(repo.out())));
+        int[] count = new int[1];
+        forEachReverse(repo, ref, line -> {
+            String[] fields = line.split(" ", 4);
+            out.println(fields[1].substring(0, 7) + " " + name + "@{"
+                    + count[0] + "}: " + (fields.length > 3 ? fields[3] : ""));
+            count[0] += 1;
+            return true;
+        });
+        out.flush();
+    }
+
+    /** Calls visitor on the lines of the log of ref from newest to oldest
+     * until it returns false, holding only one chunk of the log and the
+     * line being assembled in memory.
+     * @param repo the repository
+     * @param ref full name of the ref, or HEAD
+     * @param visitor called with each line
+     */
+    static void forEachReverse(Repository repo, String ref,
+                               Predicate<String> visitor) {
+        File log = logFile(repo, ref);
+        if (!log.isFile()) {
+            return;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(log, "r")) {
+            long pos = in.length();
+            byte[] chunk = new byte[CHUNK];
+            byte[] carry = new byte[0];
+            while (pos > 0) {
+                int len = (int) Math.min(CHUNK, pos);
+                pos -= len;
+                in.seek(pos);
+                in.readFully(chunk, 0, len);
+                int end = len;
+                for (int i = len - 1; i >= 0; i -= 1) {
+                    if (chunk[i] == '\n') {
+                        if (!visitLine(chunk, i + 1, end, carry, visitor)) {
+                            return;
+                        }
+                        carry = new byte[0];
+                        end = i;
+                    }
+                }
+                byte[] joined = Arrays.copyOf(chunk, end + carry.length);
+                System.arraycopy(carry, 0, joined, end, carry.length);
+                carry = joined;
+            }
+            visitLine(chunk, 0, 0, carry, visitor);
+        } catch (IOException e) {
+            repo.out().println("IOException: " + e.getMessage());
+        }
+    }
+
+    /** Calls visitor on the line made of chunk[start..end) followed by
+     * carry, unless it is empty.
+     * @param chunk the current chunk
+     * @param start start of the line in chunk
+     * @param end end of the line in chunk
+     * @param carry rest of the line, read from the following chunk
+     * @param visitor the visitor
+     * @return false if visitor asked to stop
+     */
+    private static boolean visitLine(byte[] chunk, int start, int end,
+                                     byte[] carry,
+                                     Predicate<String> visitor) {
+        if (end - start + carry.length == 0) {
+            return true;
+        }
+        byte[] line = Arrays.copyOfRange(chunk, start, end + carry.length);
+        System.arraycopy(carry, 0, line, end - start, carry.length);
+        return visitor.test(new String(line, StandardCharsets.UTF_8));
+    }
+
+    /** Returns the log file of ref.
+     *
+     * @param repo the repository
+     * @param ref full name of the ref, or HEAD
+     * @return the file
+     */
+    private static File logFile(Repository repo, String ref) {
+        return Utils.join(repo.root(), ".gitlet", "logs", ref);
+    }
+}
@@ -0,0 +1,298 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/** Class storing references (branch heads) outside of the serialized tree.
+ * Each ref is either a loose file .gitlet/refs/heads/NAME holding a commit
+ * id, or a line "ID REFNAME" in .gitlet/packed-refs, which is kept sorted
+ * by ref name so single refs can be found by binary search. Loose refs
+ * take precedence over packed ones.
+ * @author Megan Hu*/
+class Refs {
+
+    /** Prefix of the full ref name of every branch. */
+    static final String HEADS = "refs/heads/";
+
+    /** Returns the full ref name of the branch named branchName.
+     *
+     * @param branchName name of the branch
+     * @return the full ref name
+     */
+    static String head(String branchName) {
+        return HEADS + branchName;
+    }
+
+    /** Returns the commit id ref points to, or null if ref does not exist.
+     *
+     * @param repo the repository
+     * @param ref full name of the ref
+     * @return the id of the commit, or null
+     */
+    static String resolve(Repository repo, String ref) {
+        File loose = looseFile(repo, ref);
+        if (loose.isFile()) {
+            return Utils.readContentsAsString(loose).trim();
+        }
+        return lookupPacked(repo, ref);
+    }
+
+    /** Returns whether ref exists, loose or packed.
+     *
+     * @param repo the repository
+     * @param ref full name of the ref
+     * @return true if ref exists
+     */
+    static boolean exists(Repository repo, String ref) {
+        return resolve(repo, ref) != null;
+    }
+
+    /** Points ref at commit id, writing only the loose file for ref.
+     *
+     * @param repo the repository
+     * @param ref full name of the ref
+     * @param id id of the commit
+     */
+    static void update(Repository repo, String ref, String id) {
+        File loose = looseFile(repo, ref);
+        loose.getParentFile().mkdirs();
+        File lock = new File(loose.getPath() + ".lock");
+        Utils.writeContents(lock, id, "\n");
+        try {
+            Files.move(lock.toPath(), loose.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            repo.out().println("IOException: " + e.getMessage());
+        }
+    }
+
+    /** Deletes ref. If ref is packed, packed-refs is rewritten without it.
+     *
+     * @param repo the repository
+     * @param ref full name of the ref
+     */
+    static void delete(Repository repo, String ref) {
+        try {
+            Files.deleteIfExists(looseFile(repo, ref).toPath());
+            if (lookupPacked(repo, ref) == null) {
+                return;
+            }
+            ArrayList<String> lines = new ArrayList<>();
+            try (BufferedReader in = Files.newBufferedReader(
+                    packedFile(repo).toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (!nameOf(line).equals(ref)) {
+                        lines.add(line);
+                    }
+                }
+            }
+            writePacked(repo, lines);
+        } catch (IOException e) {
+            repo.out().println("IOException: " + e.getMessage());
+        }
+    }
+
+    /** Moves every loose ref into packed-refs, keeping it sorted, and
+     * deletes the loose files.
+     * @param repo the repository
+     */
+    static void pack(Repository repo) {
+        ArrayList<String> lines = new ArrayList<>();
+        forEach(repo, "", (name, id) -> lines.add(id + " " + name));
+        ArrayList<String> loose = looseNames(repo, "");
+        writePacked(repo, lines);
+        for (String name : loose) {
+            looseFile(repo, name).delete();
+        }
+    }
+
+    /** Calls visitor on every ref whose name starts with prefix, in sorted
+     * order of name, streaming packed-refs rather than loading it.
+     * @param repo the repository
+     * @param prefix the prefix of the ref names to visit
+     * @param visitor called with the full name and id of each ref
+     */
+    static void forEach(Repository repo, String prefix,
+                        BiConsumer<String, String> visitor) {
+        ArrayList<String> loose = looseNames(repo, prefix);
+        int i = 0;
+        File packed = packedFile(repo);
+        if (packed.isFile()) {
+            try (BufferedReader in = Files.newBufferedReader(
+                    packed.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String name = nameOf(line);
+                    if (!name.startsWith(prefix)) {
+                        continue;
+                    }
+                    while (i < loose.size()
+                            && loose.get(i).compareTo(name) < 0) {
+                        visitLoose(repo, loose.get(i), visitor);
+                        i += 1;
+                    }
+                    if (i < loose.size() && loose.get(i).equals(name)) {
+                        continue;
+                    }
+                    visitor.accept(name, line.substring(0, line.indexOf(' ')));
+                }
+            } catch (IOException e) {
+                repo.out().println("IOException: " + e.getMessage());
+            }
+        }
+        for (; i < loose.size(); i += 1) {
+            visitLoose(repo, loose.get(i), visitor);
+        }
+    }
+
+    /** Calls visitor on the loose ref named name.
+     *
+     * @param repo the repository
+     * @param name full name of the ref
+     * @param visitor the visitor
+     */
+    private static void visitLoose(Repository repo, String name,
+                                   BiConsumer<String, String> visitor) {
+        visitor.accept(name,
+                Utils.readContentsAsString(looseFile(repo, name)).trim());
+    }
+
+    /** Returns the sorted full names of the loose refs starting with prefix.
+     *
+     * @param repo the repository
+     * @param prefix the prefix of the ref names
+     * @return sorted list of ref names
+     */
+    private static ArrayList<String> looseNames(Repository repo,
+                                                String prefix) {
+        ArrayList<String> ret = new ArrayList<>();
+        Path root = Utils.join(repo.root(), ".gitlet").toPath();
+        Path refs = root.resolve("refs");
+        if (!Files.isDirectory(refs)) {
+            return ret;
+        }
+        try (Stream<Path> paths = Files.walk(refs)) {
+            paths.filter(Files::isRegularFile)
+                    .map(p -> root.relativize(p).toString()
+                            .replace(File.separatorChar, '/'))
+                    .filter(n -> n.startsWith(prefix) && !n.endsWith(".lock"))
+                    .forEach(ret::add);
+        } catch (IOException e) {
+            repo.out().println("IOException: " + e.getMessage());
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    /** Binary searches packed-refs for ref.
+     *
+     * @param repo the repository
+     * @param ref full name of the ref
+     * @return the id ref points to in packed-refs, or null
+     */
+    private static String lookupPacked(Repository repo, String ref) {
+        File packed = packedFile(repo);
+        if (!packed.isFile()) {
+            return null;
+        }
+        try (FileChannel ch = FileChannel.open(packed.toPath(),
+                StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY,
+                    0, ch.size());
+            int lo = 0;
+            int hi = buf.limit();
+            while (lo < hi) {
+                int start = (lo + hi) >>> 1;
+                while (start > lo && buf.get(start - 1) != '\n') {
+                    start -= 1;
+                }
+                int end = start;
+                while (end < buf.limit() && buf.get(end) != '\n') {
+                    end += 1;
+                }
+                byte[] bytes = new byte[end - start];
+                buf.position(start);
+                buf.get(bytes);
+                String line = new String(bytes, StandardCharsets.UTF_8);
+                int cmp = nameOf(line).compareTo(ref);
+                if (cmp == 0) {
+                    return line.substring(0, line.indexOf(' '));
+                } else if (cmp < 0) {
+                    lo = end + 1;
+                } else {
+                    hi = start;
+                }
+            }
+        } catch (IOException e) {
+            repo.out().println("IOException: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /** Replaces packed-refs with lines, which must already be sorted by
+     * ref name.
+     * @param repo the repository
+     * @param lines the lines of the new packed-refs
+     */
+    private static void writePacked(Repository repo, ArrayList<String> lines) {
+        File packed = packedFile(repo);
+        File lock = new File(packed.getPath() + ".lock");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(lock.toPath(),
+                    StandardCharsets.UTF_8)) {
+                for (String line : lines) {
+                    out.write(line);
+                    out.write('\n');
+                }
+            }
+            Files.move(lock.toPath(), packed.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            repo.out().println("IOException: " + e.getMessage());
+        }
+    }
+
+    /** Returns the ref name part of a packed-refs line.
+     *
+     * @param line the line
+     * @return the ref name
+     */
+    private static String nameOf(String line) {
+        return line.substring(line.indexOf(' ') + 1);
+    }
+
+    /** Returns the loose file of ref.
+     *
+     * @param repo the repository
+     * @param ref full name of the ref
+     * @return the file
+     */
+    private static File looseFile(Repository repo, String ref) {
+        return Utils.join(repo.root(), ".gitlet", ref);
+    }
+
+    /** Returns the packed-refs file.
+     *
+     * @param repo the repository
+     * @return the file
+     */
+    private static File packedFile(Repository repo) {
+        return Utils.join(repo.root(), ".gitlet", "packed-refs");
+    }
+}
@@ -0,0 +1,325 @@
+package gitlet;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeMap;
+
+/** Remotes: other gitlet repositories on the local filesystem, named in
+ * .gitlet/remotes.bin by the path of their .gitlet directory. Fetching and
+ * pushing copy the objects one repository lacks from the other. The
+ * sending side walks parents from the head being sent, stopping at
+ * commits the receiving side already has, since a repository holding a
+ * commit holds its whole history; the commits found and the blobs they
+ * use that the receiver lacks are then streamed as one Pack from a thread
+ * reading the sender to the calling thread, which writes the receiver.
+ * @author Megan Hu*/
+final class Remote {
+
+    /** File of the remotes, in .gitlet. */
+    static final String FILE = "remotes.bin";
+
+    /** Not instantiable. */
+    private Remote() {
+    }
+
+    /** Adds a remote named name whose .gitlet directory is path, with /
+     * as the separator, relative to the working directory if not absolute.
+     * @param repo the repository
+     * @param name the name of the remote
+     * @param path the path of its .gitlet directory
+     */
+    static void add(Repository repo, String name, String path) {
+        TreeMap<String, String> remotes = remotes(repo);
+        if (remotes.containsKey(name)) {
+            repo.out().println("A remote with that name already exists.");
+            return;
+        }
+        remotes.put(name, path.replace('/', File.separatorChar));
+        repo.writeFile("", FILE, remotes);
+    }
+
+    /** Removes the remote named name.
+     *
+     * @param repo the repository
+     * @param name the name of the remote
+     */
+    static void remove(Repository repo, String name) {
+        TreeMap<String, String> remotes = remotes(repo);
+        if (remotes.remove(name) == null) {
+            repo.out().println("A remote with that name does not exist.");
+            return;
+        }
+        repo.writeFile("", FILE, remotes);
+    }
+
+    /** Copies the commits of branch branch of remote name, and the objects
+     * they need, into this repository, and points the branch NAME/BRANCH
+     * at its head.
+     * @param repo the repository
+     * @param name the name of the remote
+     * @param branch the name of the branch in the remote
+     * @param progress whether to report progress on System.err
+     * @return false if nothing could be fetched
+     */
+    static boolean fetch(Repository repo, String name, String branch,
+                         boolean progress) {
+        Repository remote = open(repo, name);
+        if (remote == null) {
+            return false;
+        }
+        String id = Refs.resolve(remote, Refs.head(branch));
+        if (id == null) {
+            repo.out().println("That remote does not have that branch.");
+            return false;
+        }
+        if (copy(remote, repo, id, progress) == null) {
+            return false;
+        }
+        String ref = Refs.head(name + "/" + branch);
+        String oldId = Refs.resolve(repo, ref);
+        if (!id.equals(oldId)) {
+            Refs.update(repo, ref, id);
+            Reflog.append(repo, ref, oldId, id,
+                    "fetch: " + name + " " + branch);
+        }
+        return true;
+    }
+
+    /** Copies the commits of the current branch, and the objects they need,
+     * into remote name and points its branch branch at the current head,
+     * provided that branch's head is in the current branch's history.
+     * @param repo the repository
+     * @param name the name of the remote
+     * @param branch the name of the branch in the remote
+     * @param progress whether to report progress on System.err
+     */
+    static void push(Repository repo, String name, String branch,
+                     boolean progress) {
+        Repository remote = open(repo, name);
+        if (remote == null) {
+            return;
+        }
+        String head = repo.tree().getCurrBranchCommit().getId();
+        String ref = Refs.head(branch);
+        String oldId = Refs.resolve(remote, ref);
+        if (oldId != null && (!has(repo, ".commits", oldId)
+                || !BitmapIndex.isAncestor(repo, oldId, head))) {
+            repo.out().println("Please pull down remote changes before "
+                    + "pushing.");
+            return;
+        }
+        if (head.equals(oldId)
+                || copy(repo, remote, head, progress) == null) {
+            return;
+        }
+        Refs.update(remote, ref, head);
+        Reflog.append(remote, ref, oldId, head, "push: from " + repo.root());
+    }
+
+    /** Fetches branch branch of remote name and merges NAME/BRANCH into the
+     * current branch.
+     * @param repo the repository
+     * @param name the name of the remote
+     * @param branch the name of the branch in the remote
+     * @param progress whether to report progress on System.err
+     */
+    static void pull(Repository repo, String name, String branch,
+                     boolean progress) {
+        if (fetch(repo, name, branch, progress)) {
+            repo.tree().merge(name + "/" + branch, repo.stage());
+        }
+    }
+
+    /** Copies the commit tip of from, and all of its history and blobs that
+     * to lacks, into to in one pack. A partial clone receives only the
+     * blobs of tip.
+     * @param from the repository sending
+     * @param to the repository receiving
+     * @param tip id of the commit to send
+     * @param progress whether to report progress on System.err
+     * @return what was received, or null if the transfer failed
+     */
+    static Pack.Transfer copy(Repository from, Repository to, String tip,
+                              boolean progress) {
+        List<List<String>> missing = missing(from, to, tip);
+        List<String> blobs = missing.get(1);
+        if (PartialClone.isPartial(to)) {
+            Commit c = (Commit) from.readFile(".commits", tip);
+            blobs = new ArrayList<>(blobs);
+            blobs.retainAll(c.getBlobs().values());
+        }
+        return send(from, to, missing.get(0), blobs, progress);
+    }
+
+    /** Sends the given commits and blobs from from to to in one pack,
+     * fetching first any of the blobs that from, a partial clone, lacks.
+     * @param from the repository sending
+     * @param to the repository receiving
+     * @param commits ids of the commits, each after its parents
+     * @param blobs ids of the blobs
+     * @param progress whether to report progress on System.err
+     * @return what was received, or null if the transfer failed
+     */
+    static Pack.Transfer send(Repository from, Repository to,
+                              List<String> commits, List<String> blobs,
+                              boolean progress) {
+        PartialClone.prefetch(from, blobs);
+        IOException[] failure = new IOException[2];
+        Events.Transfer event = new Events.Transfer();
+        event.begin();
+        try {
+            PipedInputStream in = new PipedInputStream(1 << 16);
+            PipedOutputStream out = new PipedOutputStream(in);
+            Thread sender = new Thread(() -> {
+                try {
+                    Pack.write(from, out, commits, blobs);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }, "gitlet-pack-sender");
+            sender.start();
+            Pack.Transfer ret;
+            try {
+                ret = Pack.read(to, in, progress);
+            } catch (IOException e) {
+                failure[1] = e;
+                ret = null;
+            } finally {
+                in.close();
+                sender.join();
+            }
+            if (failure[1] != null && !(failure[1] instanceof EOFException)
+                    || failure[0] == null && failure[1] != null) {
+                throw failure[1];
+            } else if (failure[0] != null) {
+                throw failure[0];
+            }
+            if (event.shouldCommit()) {
+                event.from = from.root();
+                event.to = to.root();
+                event.commits = ret.getCommits();
+                event.blobs = ret.getBlobs();
+                event.size = ret.getBytes();
+                event.commit();
+            }
+            return ret;
+        } catch (IOException e) {
+            to.out().println("IOException: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /** Returns the commits reachable from tip that to lacks, each after its
+     * parents, and the blobs of those commits that to lacks, walking
+     * parents from tip in from only as far as the first commits to has.
+     * @param from the repository sending
+     * @param to the repository receiving
+     * @param tip id of the commit to send
+     * @return the ids of the commits and the ids of the blobs
+     */
+    private static List<List<String>> missing(Repository from, Repository to,
+                                              String tip) {
+        ArrayList<String> commits = new ArrayList<>();
+        LinkedHashSet<String> blobs = new LinkedHashSet<>();
+        HashSet<String> seen = new HashSet<>();
+        ArrayDeque<Commit> stack = new ArrayDeque<>();
+        if (!has(to, ".commits", tip)) {
+            stack.push((Commit) from.readFile(".commits", tip));
+            seen.add(tip);
+        }
+        while (!stack.isEmpty()) {
+            Commit c = stack.peek();
+            String parent = nextParent(c, to, seen);
+            if (parent != null) {
+                stack.push((Commit) from.readFile(".commits", parent));
+                continue;
+            }
+            stack.pop();
+            commits.add(c.getId());
+            for (String blob : c.getBlobs().values()) {
+                if (!blobs.contains(blob) && !has(to, ".blobs", blob)) {
+                    blobs.add(blob);
+                }
+            }
+        }
+        return List.of(commits, new ArrayList<>(blobs));
+    }
+
+    /** Returns a parent of c not yet seen that to lacks, marking it seen,
+     * or null once there is none, so that c is listed after its parents.
+     * @param c the commit
+     * @param to the repository receiving
+     * @param seen ids of the commits already visited
+     * @return the id of the parent, or null
+     */
+    private static String nextParent(Commit c, Repository to,
+                                     HashSet<String> seen) {
+        for (String p : new String[] {c.getParent(), c.getParent2()}) {
+            if (p != null && !p.equals("") && seen.add(p)
+                    && !has(to, ".commits", p)) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /** Returns whether repo has the object id in dir.
+     *
+     * @param repo the repository
+     * @param dir the directory of the object in .gitlet
+     * @param id the id of the object
+     * @return true if it has
+     */
+    static boolean has(Repository repo, String dir, String id) {
+        return Utils.join(repo.root(), ".gitlet", dir, id).isFile();
+    }
+
+    /** Returns the repository of the remote named name of repo, printing
+     * to the stream of repo, or null after printing why there is none.
+     * @param repo the repository
+     * @param name the name of the remote
+     * @return the repository, or null
+     */
+    static Repository open(Repository repo, String name) {
+        String path = remotes(repo).get(name);
+        if (path == null) {
+            repo.out().println("A remote with that name does not exist.");
+            return null;
+        }
+        File dir = new File(path);
+        if (!dir.isAbsolute()) {
+            dir = new File(repo.root(), path);
+        }
+        if (!dir.getName().equals(".gitlet")) {
+            dir = new File(dir, ".gitlet");
+        }
+        if (!new File(dir, "tree.bin").isFile()) {
+            repo.out().println("Remote directory not found.");
+            return null;
+        }
+        return new Repository(dir.getAbsoluteFile().getParentFile(),
+                repo.out());
+    }
+
+    /** Returns the remotes of repository repo and their paths.
+     *
+     * @return the paths by remote name
+     */
+    @SuppressWarnings("unchecked")
+    private static TreeMap<String, String> remotes(Repository repo) {
+        if (!Utils.join(repo.root(), ".gitlet", FILE).isFile()) {
+            return new TreeMap<>();
+        }
+        return (TreeMap<String, String>) repo.readFile("", FILE);
+    }
+}
@@ -0,0 +1,255 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of fetching from and pushing to remotes on the local filesystem.
+ *  @author Megan Hu
+ */
+public class RemoteTest {
+
+    /** Fetching copies only the objects missing locally, pulling merges
+     * them, and pushing is refused until the remote's changes are pulled. */
+    @Test
+    public void fetchPullPush() throws IOException {
+        File root = Files.createTempDirectory("gitlet-remote").toFile();
+        try {
+            File dirA = new File(root, "a");
+            File dirB = new File(root, "b");
+            dirA.mkdir();
+            dirB.mkdir();
+            Repository a = new Repository(dirA);
+            Repository b = new Repository(dirB);
+            a.init();
+            b.init();
+            write(dirA, "f.txt", "one\n");
+            a.add("f.txt");
+            a.commit("One");
+            write(dirA, "g.txt", "two\n");
+            a.add("g.txt");
+            a.commit("Two");
+
+            assertEquals("", b.addRemote("origin", "../a/.gitlet")
+                    .getOutput());
+            assertEquals("That remote does not have that branch.\n",
+                    b.fetch("origin", "nope").getOutput());
+            assertEquals("", b.fetch("origin", "master").getOutput());
+            assertEquals(a.resolve("master"), b.resolve("origin/master"));
+            assertEquals("two\n", b.contents("origin/master", "g.txt"));
+            Pack.Transfer again = Remote.copy(a, b, a.resolve("master"),
+                    false);
+            assertEquals(0, again.getCommits());
+            assertEquals(0, again.getBlobs());
+
+            write(dirA, "f.txt", "one more\n");
+            a.add("f.txt");
+            a.commit("Three");
+            Pack.Transfer t = Remote.copy(a, b, a.resolve("master"), false);
+            assertEquals(1, t.getCommits());
+            assertEquals(1, t.getBlobs());
+            assertEquals("Current branch fast-forwarded.\n",
+                    b.pull("origin", "master").getOutput());
+            assertEquals("one more\n", Utils.readContentsAsString(
+                    new File(dirB, "f.txt")));
+
+            write(dirB, "h.txt", "from b\n");
+            b.add("h.txt");
+            b.commit("Four");
+            assertEquals("", b.push("origin", "master").getOutput());
+            assertEquals(b.resolve("master"), a.resolve("master"));
+            assertEquals("from b\n", a.contents("master", "h.txt"));
+
+            write(dirA, "i.txt", "from a\n");
+            a.add("i.txt");
+            a.commit("Five");
+            write(dirB, "j.txt", "from b\n");
+            b.add("j.txt");
+            b.commit("Six");
+            String head = a.resolve("master");
+            assertEquals("Please pull down remote changes before pushing.\n",
+                    b.push("origin", "master").getOutput());
+            assertEquals(head, a.resolve("master"));
+            b.pull("origin", "master");
+            assertEquals("Merged origin/master into master.",
+                    b.log().get(0).getMessage());
+            assertEquals("", b.push("origin", "master").getOutput());
+            assertEquals(b.resolve("master"), a.resolve("master"));
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** A clone shares the source's objects through links, checks out its
+     * current branch, and can push back to it through the origin remote. */
+    @Test
+    public void cloneSharesObjects() throws IOException {
+        File root = Files.createTempDirectory("gitlet-clone").toFile();
+        try {
+            File dirA = new File(root, "a");
+            dirA.mkdir();
+            Repository a = new Repository(dirA);
+            a.init();
+            write(dirA, "f.txt", "one\n");
+            a.add("f.txt");
+            a.commit("One");
+            a.branch("other");
+
+            File dirB = new File(root, "b");
+            Repository b = new Repository(dirB);
+            assertEquals("", b.cloneFrom("../a", null).getOutput());
+            assertEquals("master", b.currentBranch());
+            assertEquals("one\n", Utils.readContentsAsString(
+                    new File(dirB, "f.txt")));
+            assertEquals(a.resolve("other"), b.resolve("origin/other"));
+            String head = a.resolve("master");
+            assertTrue(Files.isSameFile(
+                    Utils.join(dirA, ".gitlet", ".commits", head).toPath(),
+                    Utils.join(dirB, ".gitlet", ".commits", head).toPath()));
+            assertTrue(b.status().getModified().isEmpty());
+            assertTrue(b.status().getUntracked().isEmpty());
+            assertEquals("Destination directory is not empty.\n",
+                    b.cloneFrom("../a", null).getOutput());
+
+            write(dirB, "f.txt", "two\n");
+            b.add("f.txt");
+            b.commit("Two");
+            assertEquals("", b.push("origin", "master").getOutput());
+            assertEquals("two\n", a.contents("master", "f.txt"));
+            assertEquals("one\n", a.contents("other", "f.txt"));
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** A partial clone holds only the blobs of its head and fetches others
+     * from origin when a command reads them. */
+    @Test
+    public void partialCloneFetchesBlobsLazily() throws IOException {
+        File root = Files.createTempDirectory("gitlet-partial").toFile();
+        try {
+            File dirA = new File(root, "a");
+            dirA.mkdir();
+            Repository a = new Repository(dirA);
+            a.init();
+            write(dirA, "f.txt", "one\n");
+            write(dirA, "g.txt", "same\n");
+            a.add("f.txt");
+            a.add("g.txt");
+            a.commit("One");
+            String first = a.resolve("master");
+            a.branch("other");
+            write(dirA, "f.txt", "two\n");
+            a.add("f.txt");
+            a.commit("Two");
+            a.checkout("other");
+            write(dirA, "h.txt", "other\n");
+            a.add("h.txt");
+            a.commit("Other");
+            a.checkout("master");
+
+            File dirB = new File(root, "b");
+            Repository b = new Repository(dirB);
+            b.cloneFrom(dirA.getPath(), null, true);
+            File blobs = Utils.join(dirB, ".gitlet", ".blobs");
+            assertEquals(2, blobs.list().length);
+            assertEquals("one\n", b.contents(first, "f.txt"));
+            assertEquals(3, blobs.list().length);
+            assertEquals("", b.merge("origin/other").getOutput());
+            assertEquals("other\n", Utils.readContentsAsString(
+                    new File(dirB, "h.txt")));
+            assertEquals(4, blobs.list().length);
+            b.reset(first);
+            assertEquals("one\n", Utils.readContentsAsString(
+                    new File(dirB, "f.txt")));
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Threads prefetching the same missing blobs into a partial clone at
+     * once each find them all present when their prefetch returns, while
+     * another partial clone of the same source fetches in parallel. */
+    @Test
+    public void concurrentPrefetches() throws Exception {
+        File root = Files.createTempDirectory("gitlet-partial").toFile();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            File dirA = new File(root, "a");
+            dirA.mkdir();
+            Repository a = new Repository(dirA);
+            a.init();
+            for (int i = 0; i < 20; i += 1) {
+                write(dirA, i + ".txt", "old " + i + "\n");
+                a.add(i + ".txt");
+            }
+            a.commit("Old");
+            String old = a.resolve("master");
+            for (int i = 0; i < 20; i += 1) {
+                write(dirA, i + ".txt", "new " + i + "\n");
+                a.add(i + ".txt");
+            }
+            a.commit("New");
+            Collection<String> ids = ((Commit) a.readFile(".commits", old))
+                    .getBlobs().values();
+
+            ArrayList<Repository> clones = new ArrayList<>();
+            for (String name : List.of("b", "c")) {
+                Repository clone = new Repository(new File(root, name));
+                clone.cloneFrom(dirA.getPath(), null, true);
+                clones.add(clone);
+            }
+            ArrayList<Future<Boolean>> fetched = new ArrayList<>();
+            for (int i = 0; i < 8; i += 1) {
+                Repository clone = clones.get(i % 2);
+                fetched.add(pool.submit(() -> {
+                    PartialClone.prefetch(clone, ids);
+                    return ids.stream().allMatch(id ->
+                            Remote.has(clone, ".blobs", id));
+                }));
+            }
+            for (Future<Boolean> f : fetched) {
+                assertTrue(f.get());
+            }
+            for (Repository clone : clones) {
+                assertEquals("old 7\n", clone.contents(old, "7.txt"));
+                assertEquals(0, PartialClone.prefetch(clone, ids));
+            }
+        } finally {
+            pool.shutdown();
+            delete(root);
+        }
+    }
+
+    /** Writes contents to the file name in dir.
+     *
+     * @param dir the directory
+     * @param name the file name
+     * @param contents the contents
+     */
+    private static void write(File dir, String name, String contents) {
+        Utils.writeContents(new File(dir, name), contents);
+    }
+
+    /** Deletes f and everything under it.
+     *
+     * @param f a file or directory
+     */
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+}
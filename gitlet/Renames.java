@@ -0,0 +1,366 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/** Detection of renamed and copied files by the similarity of their
+ * contents. Each file is summarized by a MinHash signature of the set of
+ * its lines: the minimum, under each of HASHES hash functions, of the
+ * hashes of its lines. The fraction of positions at which two signatures
+ * agree estimates the Jaccard similarity of the files' line sets.
+ * Candidate pairs are found by locality-sensitive hashing, splitting
+ * signatures into BANDS bands and pairing only files that agree on a
+ * whole band, so matching n added with m deleted files costs about
+ * n + m signature lookups rather than n * m comparisons. Signatures of
+ * blobs are cached in .gitlet/.signatures under the blob id.
+ * @author Megan Hu*/
+final class Renames {
+
+    /** Directory of cached signatures, in .gitlet. */
+    static final String DIR = ".signatures";
+
+    /** Minimum similarity, in percent, of a rename or copy. */
+    static final int THRESHOLD = 50;
+
+    /** Number of hash functions of a signature. */
+    private static final int HASHES = 64;
+
+    /** Number of bands signatures are split into for candidate search.
+     * Two files of similarity s share some band with probability
+     * 1 - (1 - s^ROWS)^BANDS: with 32 bands of 2 rows that is over 99.9%
+     * at THRESHOLD, where 16 bands of 4 rows gave only 64%. */
+    private static final int BANDS = 32;
+
+    /** Number of signature positions in a band. */
+    private static final int ROWS = HASHES / BANDS;
+
+    /** Seeds of the hash functions. */
+    private static final long[] SEEDS = new long[HASHES];
+
+    static {
+        long x = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < HASHES; i += 1) {
+            x = mix(x + i);
+            SEEDS[i] = x;
+        }
+    }
+
+    /** Not instantiable. */
+    private Renames() {
+    }
+
+    /** Returns the signature of content.
+     *
+     * @param content the contents of a file
+     * @return its signature
+     */
+    static Signature signature(String content) {
+        int[] mins = new int[HASHES];
+        Arrays.fill(mins, Integer.MAX_VALUE);
+        HashMap<String, Integer> seen = new HashMap<>();
+        int start = 0;
+        while (start < content.length()) {
+            int end = content.indexOf('\n', start);
+            end = end < 0 ? content.length() : end + 1;
+            String line = content.substring(start, end);
+            start = end;
+            int occurrence = seen.merge(line, 1, Integer::sum);
+            long h = mix(line.hashCode() * 0x9E3779B97F4A7C15L + occurrence);
+            for (int i = 0; i < HASHES; i += 1) {
+                int v = (int) (mix(h ^ SEEDS[i]) >>> 33);
+                if (v < mins[i]) {
+                    mins[i] = v;
+                }
+            }
+        }
+        return new Signature(Utils.sha1(content), mins);
+    }
+
+    /** Returns the signature of the blob with id id, computing and caching
+     * it if it has not been.
+     * @param repo the repository
+     * @param id the blob id
+     * @return its signature
+     */
+    static Signature signatureOf(Repository repo, String id) {
+        File f = Utils.join(repo.root(), ".gitlet", DIR, id);
+        if (f.isFile()) {
+            return (Signature) repo.readFile(DIR, id);
+        }
+        Signature ret = signature(
+                ((Blob) repo.readFile(".blobs", id)).getContent());
+        repo.writeFile(DIR, id, ret);
+        return ret;
+    }
+
+    /** Returns the signatures of the blobs of files.
+     *
+     * @param repo the repository
+     * @param files blob ids by file name
+     * @return signatures by file name
+     */
+    static Map<String, Signature> signaturesOf(Repository repo,
+                                               Map<String, String> files) {
+        HashMap<String, Signature> ret = new HashMap<>();
+        for (Map.Entry<String, String> e : files.entrySet()) {
+            ret.put(e.getKey(), signatureOf(repo, e.getValue()));
+        }
+        return ret;
+    }
+
+    /** Returns the renames between deleted and added files and the copies
+     * of sources among the added files that are not renames. Each deleted
+     * file is the source of at most one rename, chosen so that the most
+     * similar pairs are matched first; each source may be copied any
+     * number of times.
+     * @param deleted signatures of the files removed, by name
+     * @param added signatures of the files added, by name
+     * @param sources signatures of files kept that may have been copied
+     * @return the renames and copies, sorted by destination
+     */
+    static List<Rename> detect(Map<String, Signature> deleted,
+                               Map<String, Signature> added,
+                               Map<String, Signature> sources) {
+        ArrayList<Rename> ret = new ArrayList<>();
+        if (added.isEmpty() || deleted.isEmpty() && sources.isEmpty()) {
+            return ret;
+        }
+        HashSet<String> usedFrom = new HashSet<>();
+        HashSet<String> usedTo = new HashSet<>();
+        for (Rename r : candidates(deleted, added, false)) {
+            if (!usedFrom.contains(r.getFrom())
+                    && !usedTo.contains(r.getTo())) {
+                usedFrom.add(r.getFrom());
+                usedTo.add(r.getTo());
+                ret.add(r);
+            }
+        }
+        HashMap<String, Signature> rest = new HashMap<>(added);
+        rest.keySet().removeAll(usedTo);
+        for (Rename r : candidates(sources, rest, true)) {
+            if (!usedTo.contains(r.getTo())) {
+                usedTo.add(r.getTo());
+                ret.add(r);
+            }
+        }
+        ret.sort((a, b) -> a.getTo().compareTo(b.getTo()));
+        return ret;
+    }
+
+    /** Returns the pairs of a file in from and a file in to at least
+     * THRESHOLD percent similar, most similar first.
+     * @param from signatures of the possible sources
+     * @param to signatures of the possible destinations
+     * @param copy whether the pairs are copies rather than renames
+     * @return the pairs
+     */
+    private static List<Rename> candidates(Map<String, Signature> from,
+                                           Map<String, Signature> to,
+                                           boolean copy) {
+        ArrayList<Rename> ret = new ArrayList<>();
+        if (from.isEmpty() || to.isEmpty()) {
+            return ret;
+        }
+        HashMap<String, List<String>> exact = new HashMap<>();
+        HashMap<Long, List<String>> buckets = new HashMap<>();
+        for (Map.Entry<String, Signature> e : from.entrySet()) {
+            Signature s = e.getValue();
+            exact.computeIfAbsent(s.contentHash, k -> new ArrayList<>())
+                    .add(e.getKey());
+            if (!s.isEmpty()) {
+                for (int b = 0; b < BANDS; b += 1) {
+                    buckets.computeIfAbsent(s.band(b),
+                        k -> new ArrayList<>()).add(e.getKey());
+                }
+            }
+        }
+        for (Map.Entry<String, Signature> e : to.entrySet()) {
+            Signature s = e.getValue();
+            HashSet<String> seen = new HashSet<>();
+            for (String name : exact.getOrDefault(s.contentHash,
+                    Collections.emptyList())) {
+                seen.add(name);
+                ret.add(new Rename(name, e.getKey(), 100, copy));
+            }
+            if (s.isEmpty()) {
+                continue;
+            }
+            for (int b = 0; b < BANDS; b += 1) {
+                for (String name : buckets.getOrDefault(s.band(b),
+                        Collections.emptyList())) {
+                    if (seen.add(name)) {
+                        int score = s.similarity(from.get(name));
+                        if (score >= THRESHOLD) {
+                            ret.add(new Rename(name, e.getKey(), score,
+                                    copy));
+                        }
+                    }
+                }
+            }
+        }
+        ret.sort((a, b) -> a.getScore() != b.getScore()
+                ? b.getScore() - a.getScore()
+                : (a.getTo() + "\0" + a.getFrom()).compareTo(
+                        b.getTo() + "\0" + b.getFrom()));
+        return ret;
+    }
+
+    /** Returns a well-mixed 64-bit hash of x (the finalizer of
+     * SplitMix64).
+     * @param x the value
+     * @return its hash
+     */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    /** The MinHash signature of a file's contents, with the SHA-1 hash of
+     * the contents for recognizing identical files. */
+    static final class Signature implements Serializable {
+
+        /** Serial version of signatures, fixed so that cached signatures
+         * stay readable as the class changes. */
+        private static final long serialVersionUID = -3113570258759089829L;
+
+        /** A signature.
+         *
+         * @param contentHash SHA-1 hash of the contents
+         * @param mins the minimum line hash under each hash function
+         */
+        Signature(String contentHash, int[] mins) {
+            this.contentHash = contentHash;
+            this.mins = mins;
+        }
+
+        /** Returns the estimated similarity of this file and other.
+         *
+         * @param other the other signature
+         * @return 100 for identical contents, otherwise the percentage of
+         *         hash functions under which the two agree
+         */
+        int similarity(Signature other) {
+            if (contentHash.equals(other.contentHash)) {
+                return 100;
+            }
+            if (isEmpty() || other.isEmpty()) {
+                return 0;
+            }
+            int same = 0;
+            for (int i = 0; i < HASHES; i += 1) {
+                if (mins[i] == other.mins[i]) {
+                    same += 1;
+                }
+            }
+            return Math.min(99, same * 100 / HASHES);
+        }
+
+        /** Returns whether the contents are the same as those of other.
+         *
+         * @param other the other signature
+         * @return true if their contents are equal
+         */
+        boolean sameContents(Signature other) {
+            return contentHash.equals(other.contentHash);
+        }
+
+        /** Returns whether the file is empty.
+         *
+         * @return true if it has no lines
+         */
+        boolean isEmpty() {
+            return mins[0] == Integer.MAX_VALUE;
+        }
+
+        /** Returns a hash of band b of this signature.
+         *
+         * @param b the band
+         * @return the hash, different for each band
+         */
+        private long band(int b) {
+            long h = b;
+            for (int i = b * ROWS; i < (b + 1) * ROWS; i += 1) {
+                h = mix(h * 31 + mins[i]);
+            }
+            return h;
+        }
+
+        /** SHA-1 hash of the contents. */
+        private final String contentHash;
+        /** Minimum line hash under each hash function. */
+        private final int[] mins;
+    }
+
+    /** A file added as a rename or copy of another. */
+    static final class Rename {
+
+        /** A rename or copy.
+         *
+         * @param from the source file
+         * @param to the added file
+         * @param score their similarity, in percent
+         * @param copy whether the source was kept
+         */
+        Rename(String from, String to, int score, boolean copy) {
+            this.from = from;
+            this.to = to;
+            this.score = score;
+            this.copy = copy;
+        }
+
+        /** Getter method for from.
+         *
+         * @return the source file
+         */
+        String getFrom() {
+            return from;
+        }
+
+        /** Getter method for to.
+         *
+         * @return the added file
+         */
+        String getTo() {
+            return to;
+        }
+
+        /** Getter method for score.
+         *
+         * @return the similarity, in percent
+         */
+        int getScore() {
+            return score;
+        }
+
+        /** Returns whether the source was kept.
+         *
+         * @return true for a copy, false for a rename
+         */
+        boolean isCopy() {
+            return copy;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s%03d %s -> %s", copy ? "C" : "R", score,
+                    from, to);
+        }
+
+        /** The source file. */
+        private final String from;
+        /** The added file. */
+        private final String to;
+        /** Their similarity, in percent. */
+        private final int score;
+        /** Whether the source was kept. */
+        private final boolean copy;
+    }
+}
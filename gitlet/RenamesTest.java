@@ -0,0 +1,135 @@
+package gitlet;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of rename and copy detection.
+ *  @author Megan Hu
+ */
+public class RenamesTest {
+
+    /** Returns n lines of random words from random.
+     *
+     * @param random the source of words
+     * @param n the number of lines
+     * @return the lines
+     */
+    private static String lines(Random random, int n) {
+        StringBuilder ret = new StringBuilder();
+        for (int i = 0; i < n; i += 1) {
+            ret.append("line ").append(random.nextLong()).append('\n');
+        }
+        return ret.toString();
+    }
+
+    /** Similarity estimates the fraction of lines two files share, is 100
+     * only for identical contents, and 0 against an empty file. */
+    @Test
+    public void similarity() {
+        Random random = new Random(42);
+        String text = lines(random, 100);
+        Renames.Signature s = Renames.signature(text);
+        assertEquals(100, s.similarity(Renames.signature(text)));
+        String edited = text.substring(0, text.length() / 10 * 9)
+                + lines(random, 10);
+        int score = s.similarity(Renames.signature(edited));
+        assertTrue("score " + score, score >= 65 && score < 100);
+        assertTrue(s.similarity(Renames.signature(lines(random, 100))) < 20);
+        assertEquals(0, s.similarity(Renames.signature("")));
+        assertEquals(100, Renames.signature("").similarity(
+                Renames.signature("")));
+    }
+
+    /** Among thousands of added and deleted files, each edited file is
+     * matched with its original, identical files score 100, and unrelated
+     * files are left alone. */
+    @Test
+    public void manyRenames() {
+        Random random = new Random(7);
+        HashMap<String, Renames.Signature> deleted = new HashMap<>();
+        HashMap<String, Renames.Signature> added = new HashMap<>();
+        for (int i = 0; i < 3000; i += 1) {
+            String text = lines(random, 30);
+            deleted.put("old" + i, Renames.signature(text));
+            if (i % 3 == 0) {
+                added.put("new" + i, Renames.signature(text));
+            } else if (i % 3 == 1) {
+                added.put("new" + i, Renames.signature(text
+                        + lines(random, 3)));
+            } else {
+                added.put("new" + i, Renames.signature(lines(random, 30)));
+            }
+        }
+        List<Renames.Rename> found = Renames.detect(deleted, added,
+                Collections.emptyMap());
+        int exact = 0;
+        for (Renames.Rename r : found) {
+            assertEquals(r.getFrom().substring(3), r.getTo().substring(3));
+            assertFalse(r.isCopy());
+            if (r.getScore() == 100) {
+                exact += 1;
+            }
+        }
+        assertEquals(1000, exact);
+        assertTrue("found " + found.size(), found.size() >= 1990);
+        assertTrue(found.size() <= 2000);
+    }
+
+    /** Files sharing 71 of the 129 distinct lines of the two versions, a
+     * similarity of 55%, are matched whenever their signatures score at
+     * least THRESHOLD, so the bands miss no pair the score would accept. */
+    @Test
+    public void renamesNearThreshold() {
+        Random random = new Random(11);
+        HashMap<String, Renames.Signature> deleted = new HashMap<>();
+        HashMap<String, Renames.Signature> added = new HashMap<>();
+        HashMap<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 200; i += 1) {
+            String kept = lines(random, 71);
+            Renames.Signature from = Renames.signature(kept
+                    + lines(random, 29));
+            Renames.Signature to = Renames.signature(kept
+                    + lines(random, 29));
+            deleted.put("old" + i, from);
+            added.put("new" + i, to);
+            if (from.similarity(to) >= Renames.THRESHOLD) {
+                expected.put("new" + i, "old" + i);
+            }
+        }
+        HashMap<String, String> found = new HashMap<>();
+        for (Renames.Rename r : Renames.detect(deleted, added,
+                Collections.emptyMap())) {
+            found.put(r.getTo(), r.getFrom());
+        }
+        assertTrue("expected " + expected.size(), expected.size() >= 120);
+        assertEquals(expected.size(), found.size());
+        assertEquals(expected, found);
+    }
+
+    /** A file added as an edited copy of a kept file is a copy, and a
+     * deleted file is the source of only one rename. */
+    @Test
+    public void copiesAndSingleRename() {
+        Random random = new Random(3);
+        String kept = lines(random, 20);
+        String gone = lines(random, 20);
+        Map<String, Renames.Signature> deleted =
+                Map.of("gone", Renames.signature(gone));
+        Map<String, Renames.Signature> added = Map.of(
+                "a", Renames.signature(gone),
+                "b", Renames.signature(gone + "more\n"),
+                "c", Renames.signature(kept + "more\n"));
+        List<Renames.Rename> found = Renames.detect(deleted, added,
+                Map.of("kept", Renames.signature(kept)));
+        assertEquals(2, found.size());
+        assertEquals("R100 gone -> a", found.get(0).toString());
+        assertEquals("kept", found.get(1).getFrom());
+        assertEquals("c", found.get(1).getTo());
+        assertTrue(found.get(1).isCopy());
+    }
+}
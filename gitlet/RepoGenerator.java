@@ -0,0 +1,291 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/** A tool building synthetic repositories for load testing, invoked as
+ *      java gitlet.RepoGenerator DIR [--OPTION=VALUE]...
+ *  It creates a gitlet repository in DIR whose shape is given by the
+ *  options below, writing blobs, commits and refs directly rather than
+ *  through the working directory, and finally checks out master. The same
+ *  options and seed always produce the same objects.
+ *
+ *      --seed=N          seed of the random choices (default 1)
+ *      --commits=N       number of commits after the initial one (1000)
+ *      --files=N         number of files in the first commit (1000)
+ *      --file-size=N     approximate size of each file in bytes (1024)
+ *      --churn=N         files added, changed or deleted per commit (5)
+ *      --branch-every=N  start a new branch every N commits (50, 0: never)
+ *      --merge-every=N   merge a branch every N commits (75, 0: never)
+ *      --max-branches=N  merge a branch whenever more are live (8)
+ *
+ *  @author Megan Hu
+ */
+public class RepoGenerator {
+
+    /** Time of the first generated commit; each later one is a minute on. */
+    private static final long START = 1600000000000L;
+
+    /** Words file contents are made of. */
+    private static final String[] WORDS = {
+        "gitlet", "commit", "branch", "merge", "blob", "tree", "stage",
+        "file", "line", "version", "control", "system", "hash", "value",
+    };
+
+    /** Creates a generator of repo with the given options.
+     *
+     * @param repo the repository generated
+     * @param options option values by name
+     */
+    RepoGenerator(Repository repo, Map<String, Long> options) {
+        this.repo = repo;
+        random = new Random(options.get("seed"));
+        commits = options.get("commits").intValue();
+        files = options.get("files").intValue();
+        fileSize = options.get("file-size").intValue();
+        churn = options.get("churn").intValue();
+        branchEvery = options.get("branch-every").intValue();
+        mergeEvery = options.get("merge-every").intValue();
+        maxBranches = options.get("max-branches").intValue();
+    }
+
+    /** Usage: java gitlet.RepoGenerator DIR [--OPTION=VALUE]...
+     *
+     * @param args the directory and options
+     */
+    public static void main(String... args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java gitlet.RepoGenerator DIR "
+                    + "[--OPTION=VALUE]...");
+            return;
+        }
+        LinkedHashMap<String, Long> options = new LinkedHashMap<>();
+        options.put("seed", 1L);
+        options.put("commits", 1000L);
+        options.put("files", 1000L);
+        options.put("file-size", 1024L);
+        options.put("churn", 5L);
+        options.put("branch-every", 50L);
+        options.put("merge-every", 75L);
+        options.put("max-branches", 8L);
+        for (int i = 1; i < args.length; i += 1) {
+            String[] opt = args[i].replaceFirst("^--", "").split("=", 2);
+            if (!options.containsKey(opt[0]) || opt.length < 2) {
+                System.out.println("Unknown option: " + args[i]);
+                return;
+            }
+            options.put(opt[0], Long.parseLong(opt[1]));
+        }
+        File dir = new File(args[0]).getAbsoluteFile();
+        if (Utils.join(dir, ".gitlet").exists()) {
+            System.out.println("A gitlet version-control system already "
+                    + "exists in " + dir + ".");
+            return;
+        }
+        dir.mkdirs();
+        new RepoGenerator(new Repository(dir, System.out), options)
+                .generate();
+    }
+
+    /** Generates the repository.
+     */
+    void generate() {
+        long start = System.nanoTime();
+        repo.makeInit();
+        Tree tree = new Tree(repo);
+        Commit initial = tree.getCurrBranchCommit();
+
+        HashMap<String, String> added = new HashMap<>();
+        ArrayList<Blob> newBlobs = new ArrayList<>();
+        for (int i = 0; i < files; i += 1) {
+            added.put(fileName(i), newBlob(fileName(i), newBlobs));
+        }
+        nextFile = files;
+        heads.put("master", commit(initial, "", "Add " + files + " files",
+                added, new HashMap<>(), newBlobs));
+        live.add("master");
+
+        for (int n = 1; n < commits; n += 1) {
+            if (branchEvery > 0 && n % branchEvery == 0) {
+                String from = live.get(random.nextInt(live.size()));
+                String name = "branch-" + n;
+                heads.put(name, heads.get(from));
+                live.add(name);
+            }
+            if (live.size() > 1 && ((mergeEvery > 0 && n % mergeEvery == 0)
+                    || live.size() > maxBranches)) {
+                merge();
+            } else {
+                change(live.get(random.nextInt(live.size())));
+            }
+        }
+        for (Map.Entry<String, Commit> head : heads.entrySet()) {
+            Refs.update(repo, Refs.head(head.getKey()),
+                    head.getValue().getId());
+        }
+        MessageIndex.addAll(repo, ids, messages);
+
+        Commit master = heads.get("master");
+        master.getBlobs().entrySet().parallelStream().forEach(e ->
+                repo.writeToCWD("", e.getKey(), ((Blob) repo.readFile(
+                        ".blobs", e.getValue())).getContent()));
+        Stage stage = new Stage(repo);
+        stage.setCurrentBlobs(master);
+        repo.writeFile("", "tree.bin", tree);
+        repo.writeFile("", "stage.bin", stage);
+
+        long ms = (System.nanoTime() - start) / 1000000;
+        System.out.println("Generated " + (ids.size() + 1) + " commits ("
+                + merges + " merges), " + blobCount + " blobs and "
+                + heads.size() + " branches in " + ms + " ms ("
+                + (ids.size() * 1000L / Math.max(ms, 1)) + " commits/s).");
+    }
+
+    /** Commits churn random changes to the branch named branch: mostly
+     * new versions of existing files, some new files and some deletions.
+     * @param branch name of the branch
+     */
+    private void change(String branch) {
+        Commit head = heads.get(branch);
+        Map<String, String> blobs = head.getBlobs();
+        HashMap<String, String> added = new HashMap<>();
+        HashMap<String, String> removed = new HashMap<>();
+        ArrayList<Blob> newBlobs = new ArrayList<>();
+        for (int c = 0; c < churn; c += 1) {
+            double kind = random.nextDouble();
+            String name = fileName(random.nextInt(nextFile));
+            if (kind < 0.1 || blobs.size() <= removed.size() + 1) {
+                name = fileName(nextFile);
+                nextFile += 1;
+                added.put(name, newBlob(name, newBlobs));
+            } else if (!blobs.containsKey(name)) {
+                c -= 1;
+            } else if (kind < 0.15) {
+                added.remove(name);
+                removed.put(name, blobs.get(name));
+            } else if (!removed.containsKey(name)) {
+                added.put(name, newBlob(name, newBlobs));
+            }
+        }
+        heads.put(branch, commit(head, "", "Change " + added.size()
+                + " files and remove " + removed.size() + " on " + branch,
+                added, removed, newBlobs));
+    }
+
+    /** Merges a random live branch other than master into another live
+     * branch, taking the merged branch's version of every file that
+     * differs, and stops changing the merged branch.
+     */
+    private void merge() {
+        String source = live.get(1 + random.nextInt(live.size() - 1));
+        String target;
+        do {
+            target = live.get(random.nextInt(live.size()));
+        } while (target.equals(source));
+        Commit from = heads.get(source);
+        Commit into = heads.get(target);
+        HashMap<String, String> added = new HashMap<>();
+        for (Map.Entry<String, String> e : from.getBlobs().entrySet()) {
+            if (!e.getValue().equals(into.getBlobs().get(e.getKey()))) {
+                added.put(e.getKey(), e.getValue());
+            }
+        }
+        heads.put(target, commit(into, from.getId(), "Merged " + source
+                + " into " + target + ".", added, new HashMap<>(),
+                new ArrayList<>()));
+        live.remove(source);
+        merges += 1;
+    }
+
+    /** Writes newBlobs in parallel and then a commit of the given changes,
+     * returning it.
+     * @param parent the first parent
+     * @param parent2 id of the second parent, or ""
+     * @param message the message
+     * @param added files to be added
+     * @param removed files to be removed
+     * @param newBlobs blobs created for the commit
+     * @return the commit
+     */
+    private Commit commit(Commit parent, String parent2, String message,
+                          HashMap<String, String> added,
+                          HashMap<String, String> removed,
+                          ArrayList<Blob> newBlobs) {
+        newBlobs.parallelStream().forEach(b ->
+                repo.writeFile(".blobs", b.getHashValue(), b));
+        blobCount += newBlobs.size();
+        Commit c = new Commit(parent, parent2, message, added, removed,
+                new Date(START + ids.size() * 60000L));
+        repo.writeFile(".commits", c.getId(), c);
+        CommitMeta.write(repo, c);
+        ids.add(c.getId());
+        messages.add(message);
+        return c;
+    }
+
+    /** Returns the id of a new blob of random contents named name, adding
+     * it to newBlobs.
+     * @param name the file name
+     * @param newBlobs blobs created so far for the current commit
+     * @return the id of the blob
+     */
+    private String newBlob(String name, ArrayList<Blob> newBlobs) {
+        StringBuilder content = new StringBuilder();
+        while (content.length() < fileSize) {
+            for (int w = 0; w < 8; w += 1) {
+                content.append(WORDS[random.nextInt(WORDS.length)])
+                        .append(w == 7 ? '\n' : ' ');
+            }
+        }
+        Blob b = new Blob(name, content.toString());
+        newBlobs.add(b);
+        return b.getHashValue();
+    }
+
+    /** Returns the name of file number i, spreading files over
+     * directories of at most 100 files each in name only.
+     * @param i the number of the file
+     * @return the name
+     */
+    private static String fileName(int i) {
+        return "d" + (i / 100) + "-f" + (i % 100) + ".txt";
+    }
+
+    /** The repository generated. */
+    private final Repository repo;
+    /** Source of all random choices. */
+    private final Random random;
+    /** Number of commits to make. */
+    private final int commits;
+    /** Number of files in the first commit. */
+    private final int files;
+    /** Approximate size of a file. */
+    private final int fileSize;
+    /** Files changed per commit. */
+    private final int churn;
+    /** Commits between new branches. */
+    private final int branchEvery;
+    /** Commits between merges. */
+    private final int mergeEvery;
+    /** Most branches that may be live. */
+    private final int maxBranches;
+    /** Number of the next new file. */
+    private int nextFile;
+    /** Number of merge commits made. */
+    private int merges;
+    /** Number of blobs written. */
+    private long blobCount;
+    /** Head commit of every branch, by name. */
+    private final LinkedHashMap<String, Commit> heads = new LinkedHashMap<>();
+    /** Branches still being changed; master is always first. */
+    private final ArrayList<String> live = new ArrayList<>();
+    /** Ids of the commits made, in order. */
+    private final ArrayList<String> ids = new ArrayList<>();
+    /** Messages of the commits made, in order. */
+    private final ArrayList<String> messages = new ArrayList<>();
+}
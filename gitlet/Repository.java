@@ -0,0 +1,936 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/** A gitlet repository, which can be driven from Java code as well as
+ * from the command line. A repository owns its root directory, tree,
+ * stage and object store, and the stream its commands print to; the code
+ * running a command is handed the repository it works on rather than
+ * finding it in static state, so one JVM can work on several repositories
+ * at once from different threads. Operations on the same repository,
+ * through any Repository object, are serialized by a lock shared by all
+ * objects with the same root.
+ *
+ * The methods that run commands return what the command printed, written
+ * to a buffer of their own rather than to System.out; the query methods
+ * return commits, maps and Status objects.
+ * @author Megan Hu*/
+public class Repository {
+
+    /** A repository whose working directory is root. It need not have
+     * been initialized yet.
+     * @param root the root of the working directory
+     */
+    public Repository(File root) {
+        this(root, new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    /** A repository whose working directory is root, whose commands print
+     * to out when not run through run, as when gitlet runs from the
+     * command line or works on a remote on behalf of another repository.
+     * @param root the root of the working directory
+     * @param out the stream messages are printed to
+     */
+    Repository(File root, PrintStream out) {
+        this.root = root.getAbsolutePath();
+        this.lock = LOCKS.computeIfAbsent(this.root,
+            r -> new ReentrantLock());
+        this.out = out;
+    }
+
+    /** Reads the tree and stage of this repository from .gitlet, if it has
+     * been initialized.
+     */
+    void load() {
+        if (new File(Utils.join(root, ".gitlet"), "tree.bin").isFile()) {
+            tree = (Tree) readFile("", "tree.bin");
+            stage = (Stage) readFile("", "stage.bin");
+            tree.setRepository(this);
+            stage.setRepository(this);
+        } else {
+            tree = null;
+            stage = null;
+        }
+    }
+
+    /** Writes the tree and stage of this repository to .gitlet.
+     */
+    void save() {
+        if (tree != null) {
+            writeFile("", "tree.bin", tree);
+            writeFile("", "stage.bin", stage);
+        }
+    }
+
+    /** Runs the gitlet command args, as given on the command line, on this
+     * repository.
+     * @param args the command and its operands
+     * @return the result
+     */
+    public Result run(String... args) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        String head = locked(() -> {
+            PrintStream previous = out;
+            out = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+            try {
+                return execute(args);
+            } finally {
+                out.flush();
+                out = previous;
+            }
+        });
+        return new Result(buffer.toByteArray(), head);
+    }
+
+    /** Runs the gitlet command args on this repository, printing to its
+     * stream, and returns the head of the current branch afterwards.
+     * @param args the command and its operands
+     * @return id of the head commit, or null if the repository is not
+     *         initialized
+     */
+    String execute(String... args) {
+        load();
+        Main.runCommands(this, args);
+        save();
+        if (tree == null) {
+            return null;
+        }
+        return Refs.resolve(this, Refs.head(tree.getCurrBranch()));
+    }
+
+    /** Runs init.
+     *
+     * @return the result
+     */
+    public Result init() {
+        return run("init");
+    }
+
+    /** Runs add.
+     *
+     * @param fileName name of the file to stage
+     * @return the result
+     */
+    public Result add(String fileName) {
+        return run("add", fileName);
+    }
+
+    /** Runs rm.
+     *
+     * @param fileName name of the file to remove
+     * @return the result
+     */
+    public Result rm(String fileName) {
+        return run("rm", fileName);
+    }
+
+    /** Runs commit.
+     *
+     * @param message the message of the commit
+     * @return the result, whose head is the new commit
+     */
+    public Result commit(String message) {
+        return run("commit", message);
+    }
+
+    /** Runs branch.
+     *
+     * @param branchName name of the new branch
+     * @return the result
+     */
+    public Result branch(String branchName) {
+        return run("branch", branchName);
+    }
+
+    /** Runs rm-branch.
+     *
+     * @param branchName name of the branch to remove
+     * @return the result
+     */
+    public Result removeBranch(String branchName) {
+        return run("rm-branch", branchName);
+    }
+
+    /** Runs checkout of a branch.
+     *
+     * @param branchName name of the branch
+     * @return the result
+     */
+    public Result checkout(String branchName) {
+        return run("checkout", branchName);
+    }
+
+    /** Runs checkout of a file as of a commit.
+     *
+     * @param revision id of the commit, or REF@{N}
+     * @param fileName name of the file
+     * @return the result
+     */
+    public Result checkout(String revision, String fileName) {
+        return run("checkout", revision, "--", fileName);
+    }
+
+    /** Runs reset.
+     *
+     * @param revision id of the commit, or REF@{N}
+     * @return the result
+     */
+    public Result reset(String revision) {
+        return run("reset", revision);
+    }
+
+    /** Runs merge.
+     *
+     * @param branchName name of the branch to merge into the current one
+     * @return the result
+     */
+    public Result merge(String branchName) {
+        return run("merge", branchName);
+    }
+
+    /** Runs cherry-pick.
+     *
+     * @param revision the commit whose changes to apply
+     * @return the result
+     */
+    public Result cherryPick(String revision) {
+        return run("cherry-pick", revision);
+    }
+
+    /** Runs rebase.
+     *
+     * @param branchName name of the branch to replay the current one on
+     * @return the result
+     */
+    public Result rebase(String branchName) {
+        return run("rebase", branchName);
+    }
+
+    /** Runs stash, saving the changes of the working directory.
+     *
+     * @return the result
+     */
+    public Result stash() {
+        return run("stash");
+    }
+
+    /** Runs stash pop, restoring the newest saved changes.
+     *
+     * @return the result
+     */
+    public Result stashPop() {
+        return run("stash", "pop");
+    }
+
+    /** Runs clone of source into the root of this repository, which must
+     * be empty or not exist.
+     * @param source path of the repository to clone
+     * @param branchName the branch to check out, or null for the current
+     *                   branch of source
+     * @return the result
+     */
+    public Result cloneFrom(String source, String branchName) {
+        return cloneFrom(source, branchName, false);
+    }
+
+    /** Runs clone of source into the root of this repository, which must
+     * be empty or not exist, leaving out the blobs of other commits than
+     * the one checked out if partial.
+     * @param source path of the repository to clone
+     * @param branchName the branch to check out, or null for the current
+     *                   branch of source
+     * @param partial whether to make a partial clone
+     * @return the result
+     */
+    public Result cloneFrom(String source, String branchName,
+                            boolean partial) {
+        ArrayList<String> args = new ArrayList<>(List.of("clone"));
+        if (partial) {
+            args.add("--partial");
+        }
+        args.add(source);
+        args.add(root);
+        if (branchName != null) {
+            args.add(branchName);
+        }
+        return run(args.toArray(new String[0]));
+    }
+
+    /** Runs add-remote.
+     *
+     * @param name name of the remote
+     * @param path path of its .gitlet directory, with / as the separator
+     * @return the result
+     */
+    public Result addRemote(String name, String path) {
+        return run("add-remote", name, path);
+    }
+
+    /** Runs fetch.
+     *
+     * @param remote name of the remote
+     * @param branchName name of the branch in the remote
+     * @return the result
+     */
+    public Result fetch(String remote, String branchName) {
+        return run("fetch", remote, branchName);
+    }
+
+    /** Runs push.
+     *
+     * @param remote name of the remote
+     * @param branchName name of the branch in the remote
+     * @return the result
+     */
+    public Result push(String remote, String branchName) {
+        return run("push", remote, branchName);
+    }
+
+    /** Runs pull.
+     *
+     * @param remote name of the remote
+     * @param branchName name of the branch in the remote
+     * @return the result
+     */
+    public Result pull(String remote, String branchName) {
+        return run("pull", remote, branchName);
+    }
+
+    /** Returns the commits of the current branch, following first parents
+     * from its head.
+     * @return the commits, newest first
+     */
+    public List<Commit> log() {
+        return query(() -> {
+            ArrayList<Commit> ret = new ArrayList<>();
+            Commit c = tree.getCurrBranchCommit();
+            ret.add(c);
+            while (!c.getParent().equals("")) {
+                c = (Commit) readFile(".commits", c.getParent());
+                ret.add(c);
+            }
+            return ret;
+        });
+    }
+
+    /** Returns the branches and the ids of their heads.
+     *
+     * @return the heads by branch name, sorted by name
+     */
+    public Map<String, String> branches() {
+        return query(() -> {
+            LinkedHashMap<String, String> ret = new LinkedHashMap<>();
+            Refs.forEach(this, Refs.HEADS, (ref, id) ->
+                    ret.put(ref.substring(Refs.HEADS.length()), id));
+            return ret;
+        });
+    }
+
+    /** Returns the name of the current branch.
+     *
+     * @return the branch name
+     */
+    public String currentBranch() {
+        return query(() -> tree.getCurrBranch());
+    }
+
+    /** Returns the id of the commit named by revision, a full or abbreviated
+     * id, a branch, or REF@{N}.
+     * @param revision the revision
+     * @return the commit id, or null if there is none
+     */
+    public String resolve(String revision) {
+        return query(() -> {
+            String id = Refs.resolve(this, Refs.head(revision));
+            return id != null ? id : tree.resolveRevision(revision);
+        });
+    }
+
+    /** Returns the files of the commit named by revision and the ids of
+     * their blobs.
+     * @param revision the revision, as for resolve
+     * @return the blob ids by file name, or null if there is no such commit
+     */
+    public Map<String, String> files(String revision) {
+        String id = resolve(revision);
+        if (id == null) {
+            return null;
+        }
+        return query(() -> ((Commit) readFile(".commits", id))
+                .getBlobs());
+    }
+
+    /** Returns the contents of the file named fileName in the commit named
+     * by revision.
+     * @param revision the revision, as for resolve
+     * @param fileName name of the file
+     * @return the contents, or null if there is no such commit or file
+     */
+    public String contents(String revision, String fileName) {
+        Map<String, String> files = files(revision);
+        if (files == null || !files.containsKey(fileName)) {
+            return null;
+        }
+        return query(() -> ((Blob) readFile(".blobs",
+                files.get(fileName))).getContent());
+    }
+
+    /** Returns the state of the stage and working directory.
+     *
+     * @return the status
+     */
+    public Status status() {
+        return locked(() -> {
+            load();
+            if (tree == null) {
+                return null;
+            }
+            stage.check();
+            save();
+            return new Status(tree.getCurrBranch(), stage);
+        });
+    }
+
+    /** Returns the root of the working directory.
+     *
+     * @return the absolute path of the root
+     */
+    public String root() {
+        return root;
+    }
+
+    /** Returns the stream the command running on this repository prints
+     * its messages to.
+     * @return the stream
+     */
+    PrintStream out() {
+        return out;
+    }
+
+    /** Deletes file with the path root/.gitlet/dir/filename.
+     *
+     * @param dir directory of the file
+     * @param fileName name of the file
+     */
+    void deleteFile(String dir, String fileName) {
+        if (dir != null && fileName != null) {
+            Path path = Paths.get(root, ".gitlet", dir).resolve(fileName);
+            if (ObjectCache.caches(dir)) {
+                ObjectCache.remove(path.toString());
+            }
+            try {
+                Files.deleteIfExists(path);
+            } catch (NoSuchFileException e) {
+                out.println("NoSuchFileException: " + e.getMessage());
+            } catch (IOException e) {
+                out.println("IOException: " + e.getMessage());
+            }
+        } else if (dir.equals(null)) {
+            out.println("Null directory.");
+        } else {
+            out.println("Null filename.");
+        }
+    }
+
+    /** Returns ArrayList of Objects of files in the
+     * given directory, root/.gitlet/dir.
+     * @param dir the given directory
+     * @return arraylist of files in dir
+     */
+    ArrayList<Object> readFiles(String dir) {
+        ArrayList<Object> objs = new ArrayList<>();
+        if (dir == null) {
+            out.println("Null directory.");
+            return objs;
+        }
+        Path path = Paths.get(root, ".gitlet", dir);
+
+        File[] files = new File(path.toString()).listFiles();
+        ArrayList<String> fileNames = new ArrayList<>();
+        for (File file : files) {
+            if (file.isFile()) {
+                fileNames.add(file.getName());
+            }
+        }
+        for (String fileName : fileNames) {
+            objs.add(readFile(dir, fileName));
+        }
+        return objs;
+    }
+
+    /** Reads file named fileName in dir, returning the object serialized
+     * in the file. A blob missing from a partial clone is fetched first.
+     * @param dir given dir
+     * @param fileName given file name
+     * @return deserialized object serialized in root/.gitlet/dir/fileName
+     */
+    Object readFile(String dir, String fileName) {
+        Object obj = null;
+        if (dir != null && fileName != null) {
+            long start = Stats.start();
+            Events.ObjectRead event = new Events.ObjectRead();
+            event.begin();
+            try {
+                File f = Utils.join(root, ".gitlet", dir, fileName);
+                boolean cached = ObjectCache.caches(dir);
+                if (cached) {
+                    obj = ObjectCache.get(f.getPath());
+                    if (obj != null) {
+                        if (event.shouldCommit()) {
+                            event.type = dir;
+                            event.id = fileName;
+                            event.cacheHit = true;
+                            event.commit();
+                        }
+                        return obj;
+                    }
+                }
+                ObjectInputStream in = new ObjectInputStream(
+                        new BufferedInputStream(new FileInputStream(f)));
+                while (true) {
+                    obj = in.readObject();
+                    in.close();
+                    break;
+                }
+                if (Stats.enabled()) {
+                    Stats.record(Stats.Phase.OBJECT_READ, f.length(), start);
+                }
+                if (cached) {
+                    ObjectCache.put(f.getPath(), obj, f.length());
+                }
+                if (event.shouldCommit()) {
+                    event.type = dir;
+                    event.id = fileName;
+                    event.size = f.length();
+                    event.commit();
+                }
+            } catch (FileNotFoundException e) {
+                if (dir.equals(".blobs")
+                        && PartialClone.fetch(this, fileName)) {
+                    return readFile(dir, fileName);
+                }
+                out.println("File does not exist.");
+            } catch (IOException e) {
+                out.println("IOException: " + e.getMessage());
+            } catch (ClassNotFoundException e) {
+                out.println("ClassNotFoundException: " + e.getMessage());
+            }
+
+        }
+        return obj;
+    }
+
+    /** Writes obj to fileName in file. The object is written to a
+     * temporary file that then replaces fileName, so readers never see it
+     * half written and a file hard-linked from another repository by
+     * clone is replaced rather than changed.
+     * @param dir given dir
+     * @param fileName given filename
+     * @param obj object to be written to root/.gitlet/dir/filename
+     */
+    void writeFile(String dir, String fileName, Object obj) {
+        if (dir != null && fileName != null) {
+            Path path = Paths.get(root, ".gitlet", dir);
+
+            if (!Files.exists(path)) {
+                File f = Utils.join(root, ".gitlet", dir);
+                f.mkdirs();
+            }
+            path = path.resolve(fileName);
+            long start = Stats.start();
+            Events.ObjectWrite event = new Events.ObjectWrite();
+            event.begin();
+            Path tmp = null;
+            try {
+                tmp = path.resolveSibling(fileName + "." + PID + "."
+                        + Thread.currentThread().getId() + ".tmp");
+                ObjectOutputStream objOut = new ObjectOutputStream(
+                        new BufferedOutputStream(
+                                new FileOutputStream(tmp.toString())));
+                objOut.writeObject(obj);
+                objOut.close();
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                tmp = null;
+                if (Stats.enabled()) {
+                    Stats.record(Stats.Phase.OBJECT_WRITE,
+                            path.toFile().length(), start);
+                }
+                if (event.shouldCommit()) {
+                    event.type = dir;
+                    event.id = fileName;
+                    event.size = path.toFile().length();
+                    event.commit();
+                }
+            } catch (IOException e) {
+                out.println("IOException: " + e.getMessage());
+            } finally {
+                if (tmp != null) {
+                    tmp.toFile().delete();
+                }
+            }
+        } else if (fileName == null) {
+            out.println("Null filename.");
+        } else {
+            out.println("Null directory.");
+        }
+    }
+
+    /** Reads file in the working directory to a string.
+     * @param dir given dir
+     * @param fileName given fileName
+     * @return contents of root/dir/fileName as a string
+     */
+    String readCWDFileToString(String dir, String fileName) {
+        if (dir != null && fileName != null) {
+            File f = Utils.join(root, dir, fileName);
+            long start = Stats.start();
+            try {
+                String ret = Utils.readContentsAsString(f);
+                Stats.record(Stats.Phase.FILE_READ, f.length(), start);
+                return ret;
+            } catch (IllegalArgumentException e) {
+                out.println("File does not exist.");
+            }
+        }
+        return "";
+    }
+
+    /** Writes string content to fileName in dir in the working
+     * directory.
+     * @param dir given dir
+     * @param fileName given fileName
+     * @param content content to be written, in the form of a string
+     */
+    void writeToCWD(String dir, String fileName, String content) {
+        if (dir != null && fileName != null) {
+            Path path = Paths.get(root, dir);
+            if (!Files.exists(path)) {
+                new File(path.toString()).mkdirs();
+            }
+            path = path.resolve(fileName);
+            File f = new File(path.toString());
+            long start = Stats.start();
+            byte[] bytes = content.getBytes();
+            Utils.writeContents(f, bytes);
+            Stats.record(Stats.Phase.FILE_WRITE, bytes.length, start);
+        } else if (dir == null) {
+            out.println("Null directory.");
+        } else if (fileName.isEmpty()) {
+            out.println("Null filename");
+        }
+
+    }
+
+    /** Initializes .gitlet and .commits, .blobs, .stagedblobs and .index
+     * directories. */
+    void makeInit() {
+        Path mainPath = Paths.get(root, ".gitlet");
+        Path commitsPath = Paths.get(root, ".gitlet", ".commits");
+        Path blobsPath = Paths.get(root, ".gitlet", ".blobs");
+        Path tempBlobsPath = Paths.get(root,
+                ".gitlet", ".stagedblobs");
+        Path indexPath = Paths.get(root, ".gitlet", MessageIndex.DIR);
+        if (!Files.exists(mainPath)) {
+            new File(mainPath.toString()).mkdirs();
+            new File(commitsPath.toString()).mkdirs();
+            new File(blobsPath.toString()).mkdirs();
+            new File(tempBlobsPath.toString()).mkdirs();
+            new File(indexPath.toString()).mkdirs();
+        } else {
+            out.println("A gitlet version-control system already "
+                    + "exists in the current directory.");
+        }
+    }
+
+    /** Deletes file named fileName in dir in the working directory.
+     *
+     * @param dir name of the directory
+     * @param fileName name of the file
+     */
+    void deleteCWDFile(String dir, String fileName) {
+        Path path = Paths.get(root, dir);
+        path = path.resolve(fileName);
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            out.println("IOException: " + e.getMessage());
+        }
+    }
+
+    /** Returns a list of the plain files inside directory dir in the
+     * working directory.
+     * @param dir name of the directory
+     */
+    ArrayList<String> listDirFiles(String dir) {
+        ArrayList<String> ret = new ArrayList<>();
+        Path path = Paths.get(root, dir);
+        File[] files = new File(path.toString()).listFiles();
+        for (File f: files) {
+            if (f.isFile()) {
+                ret.add(f.getName());
+            }
+        }
+        return ret;
+    }
+
+    /** Getter method for tree.
+     *
+     * @return the tree, or null if not loaded or initialized
+     */
+    Tree tree() {
+        return tree;
+    }
+
+    /** Setter method for tree.
+     *
+     * @param t the tree
+     */
+    void setTree(Tree t) {
+        tree = t;
+    }
+
+    /** Getter method for stage.
+     *
+     * @return the stage, or null if not loaded or initialized
+     */
+    Stage stage() {
+        return stage;
+    }
+
+    /** Setter method for stage.
+     *
+     * @param s the stage
+     */
+    void setStage(Stage s) {
+        stage = s;
+    }
+
+    /** Returns the result of action run while holding the lock of this
+     * repository.
+     * @param action the action
+     * @param <T> the type of the result
+     * @return what action returned
+     */
+    private <T> T locked(Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the result of action, run on the freshly loaded tree and
+     * stage of this repository while it is locked. Returns null if the
+     * repository has not been initialized.
+     * @param action the action
+     * @param <T> the type of the result
+     * @return what action returned, or null
+     */
+    private <T> T query(Supplier<T> action) {
+        return locked(() -> {
+            load();
+            return tree == null ? null : action.get();
+        });
+    }
+
+    /** What a command printed, and the head of the current branch after
+     * it ran. */
+    public static final class Result {
+
+        /** A result.
+         *
+         * @param bytes the bytes the command printed
+         * @param head id of the head commit, or null
+         */
+        Result(byte[] bytes, String head) {
+            this.bytes = bytes;
+            this.output = new String(bytes, StandardCharsets.UTF_8);
+            this.head = head;
+        }
+
+        /** Getter method for output.
+         *
+         * @return what the command printed, empty if nothing
+         */
+        public String getOutput() {
+            return output;
+        }
+
+        /** Returns the bytes the command printed, unchanged by decoding, as
+         * for an archive written to standard output.
+         *
+         * @return a copy of the bytes printed
+         */
+        public byte[] getBytes() {
+            return bytes.clone();
+        }
+
+        /** Returns the lines the command printed.
+         *
+         * @return the lines
+         */
+        public List<String> getLines() {
+            if (output.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return List.of(output.split("\r?\n"));
+        }
+
+        /** Getter method for head.
+         *
+         * @return id of the head of the current branch, or null if the
+         *         repository is not initialized
+         */
+        public String getHead() {
+            return head;
+        }
+
+        @Override
+        public String toString() {
+            return output;
+        }
+
+        /** The bytes the command printed. */
+        private final byte[] bytes;
+        /** What the command printed, decoded as UTF-8. */
+        private final String output;
+        /** The head of the current branch afterwards. */
+        private final String head;
+    }
+
+    /** The state of a repository's stage and working directory, as shown
+     * by the status command. */
+    public static final class Status {
+
+        /** The status of stage, whose current branch is branch.
+         *
+         * @param branch the current branch
+         * @param stage the stage, after a check of the working directory
+         */
+        Status(String branch, Stage stage) {
+            this.branch = branch;
+            staged = sorted(stage.getStagedAdded().keySet());
+            removed = sorted(stage.getStagedRemoved().keySet());
+            modified = sorted(stage.getTrackedModified().keySet());
+            deleted = sorted(stage.getTrackedDeleted().keySet());
+            untracked = sorted(stage.getUntracked().keySet());
+        }
+
+        /** Getter method for branch.
+         *
+         * @return the current branch
+         */
+        public String getBranch() {
+            return branch;
+        }
+
+        /** Getter method for staged.
+         *
+         * @return files staged for addition
+         */
+        public List<String> getStaged() {
+            return staged;
+        }
+
+        /** Getter method for removed.
+         *
+         * @return files staged for removal
+         */
+        public List<String> getRemoved() {
+            return removed;
+        }
+
+        /** Getter method for modified.
+         *
+         * @return tracked files modified but not staged
+         */
+        public List<String> getModified() {
+            return modified;
+        }
+
+        /** Getter method for deleted.
+         *
+         * @return tracked files deleted but not staged for removal
+         */
+        public List<String> getDeleted() {
+            return deleted;
+        }
+
+        /** Getter method for untracked.
+         *
+         * @return untracked files
+         */
+        public List<String> getUntracked() {
+            return untracked;
+        }
+
+        /** Returns names, sorted, as an unmodifiable list.
+         *
+         * @param names the names
+         * @return the list
+         */
+        private static List<String> sorted(Collection<String> names) {
+            ArrayList<String> ret = new ArrayList<>(names);
+            Collections.sort(ret);
+            return Collections.unmodifiableList(ret);
+        }
+
+        /** The current branch. */
+        private final String branch;
+        /** Files staged for addition. */
+        private final List<String> staged;
+        /** Files staged for removal. */
+        private final List<String> removed;
+        /** Tracked files modified but not staged. */
+        private final List<String> modified;
+        /** Tracked files deleted but not staged for removal. */
+        private final List<String> deleted;
+        /** Untracked files. */
+        private final List<String> untracked;
+    }
+
+    /** Locks of repositories, by root. */
+    private static final ConcurrentHashMap<String, ReentrantLock> LOCKS =
+            new ConcurrentHashMap<>();
+    /** Id of this process, naming the temporary files of writeFile. */
+    private static final long PID = ProcessHandle.current().pid();
+
+    /** The root of the working directory. */
+    private final String root;
+    /** The lock shared by all repositories with this root. */
+    private final ReentrantLock lock;
+    /** The commit tree, while loaded. */
+    private Tree tree;
+    /** The stage, while loaded. */
+    private Stage stage;
+    /** The stream the command running prints to. */
+    private PrintStream out;
+}
@@ -0,0 +1,423 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of repositories driven through the Repository API.
+ *  @author Megan Hu
+ */
+public class RepositoryTest {
+
+    /** Commands run through the API return what they printed, and the
+     * query methods see the commits and files they made. */
+    @Test
+    public void commandsAndQueries() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-repo").toFile();
+        try {
+            Repository repo = new Repository(dir);
+            assertEquals("", repo.init().getOutput());
+            assertEquals("master", repo.currentBranch());
+            Utils.writeContents(new File(dir, "a.txt"), "one\n");
+            repo.add("a.txt");
+            assertEquals(List.of("a.txt"), repo.status().getStaged());
+            Repository.Result r = repo.commit("Add a");
+            assertEquals(r.getHead(), repo.resolve("master"));
+            assertEquals("one\n", repo.contents("master", "a.txt"));
+            assertEquals("No changes added to the commit.",
+                    repo.commit("Nothing").getOutput().trim());
+            repo.branch("other");
+            assertEquals(List.of("master", "other"),
+                    new ArrayList<>(repo.branches().keySet()));
+            assertEquals(2, repo.log().size());
+            assertEquals("Add a", repo.log().get(0).getMessage());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Two repositories worked on from different threads at once keep
+     * their own histories and files. */
+    @Test
+    public void concurrentRepositories() throws Exception {
+        File first = Files.createTempDirectory("gitlet-repo").toFile();
+        File second = Files.createTempDirectory("gitlet-repo").toFile();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> a = pool.submit(() -> fill(first, "first", 15));
+            Future<?> b = pool.submit(() -> fill(second, "second", 25));
+            a.get();
+            b.get();
+            Repository one = new Repository(first);
+            Repository two = new Repository(second);
+            assertEquals(16, one.log().size());
+            assertEquals(26, two.log().size());
+            assertEquals("first 14\n", one.contents("master", "f.txt"));
+            assertEquals("second 24\n", two.contents("master", "f.txt"));
+            assertNull(one.files("master").get("second.txt"));
+            assertTrue(one.status().getModified().isEmpty());
+        } finally {
+            pool.shutdown();
+            delete(first);
+            delete(second);
+        }
+    }
+
+    /** With a sparse checkout, checkout and merge write only the files
+     * matching its patterns, and the files left out are neither deleted
+     * nor removed by the next commit. */
+    @Test
+    public void sparseCheckout() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-sparse").toFile();
+        try {
+            Repository repo = new Repository(dir);
+            repo.init();
+            for (String f : List.of("a.txt", "b.txt", "c.md")) {
+                Utils.writeContents(new File(dir, f), f + "\n");
+                repo.add(f);
+            }
+            repo.commit("Base");
+            repo.branch("other");
+            assertEquals("", repo.run("sparse-checkout", "set", "*.txt")
+                    .getOutput());
+            assertFalse(new File(dir, "c.md").exists());
+            assertTrue(repo.status().getRemoved().isEmpty());
+
+            repo.checkout("other");
+            Utils.writeContents(new File(dir, "a.txt"), "a other\n");
+            repo.add("a.txt");
+            repo.commit("Other");
+            repo.checkout("master");
+            assertFalse(new File(dir, "c.md").exists());
+            Utils.writeContents(new File(dir, "b.txt"), "b master\n");
+            repo.add("b.txt");
+            repo.commit("Master");
+            assertEquals("c.md\n", repo.contents("master", "c.md"));
+            repo.merge("other");
+            assertEquals("a other\n", Utils.readContentsAsString(
+                    new File(dir, "a.txt")));
+            assertFalse(new File(dir, "c.md").exists());
+            assertEquals("c.md\n", repo.contents("master", "c.md"));
+
+            repo.run("sparse-checkout", "disable");
+            assertEquals("c.md\n", Utils.readContentsAsString(
+                    new File(dir, "c.md")));
+            assertTrue(repo.status().getRemoved().isEmpty());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Stashing writes blobs only for the files that changed, clears the
+     * way for a checkout, and popping brings the changes back on top of
+     * the branch checked out. */
+    @Test
+    public void stashAndPop() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-stash").toFile();
+        try {
+            Repository repo = new Repository(dir);
+            repo.init();
+            for (String f : List.of("a.txt", "b.txt")) {
+                Utils.writeContents(new File(dir, f), f + "\n");
+                repo.add(f);
+            }
+            repo.commit("Base");
+            repo.branch("other");
+            repo.checkout("other");
+            Utils.writeContents(new File(dir, "b.txt"), "b other\n");
+            repo.add("b.txt");
+            repo.commit("Other");
+            repo.checkout("master");
+            assertEquals("No local changes to save.\n",
+                    repo.stash().getOutput());
+
+            Utils.writeContents(new File(dir, "a.txt"), "a edited\n");
+            Utils.writeContents(new File(dir, "b.txt"), "b other\n");
+            File blobs = Utils.join(dir, ".gitlet", ".blobs");
+            int before = blobs.list().length;
+            assertEquals("", repo.stash().getOutput());
+            assertEquals(before + 1, blobs.list().length);
+            assertEquals("a.txt\n", Utils.readContentsAsString(
+                    new File(dir, "a.txt")));
+            assertTrue(repo.status().getModified().isEmpty());
+            assertTrue(repo.run("stash", "list").getOutput()
+                    .startsWith("stash@{0}: WIP on master: "));
+
+            assertEquals("", repo.checkout("other").getOutput());
+            assertEquals("", repo.stashPop().getOutput());
+            assertEquals("a edited\n", Utils.readContentsAsString(
+                    new File(dir, "a.txt")));
+            assertEquals("b other\n", Utils.readContentsAsString(
+                    new File(dir, "b.txt")));
+            assertEquals(List.of("a.txt"), repo.status().getModified());
+            assertEquals("No stash entries found.\n",
+                    repo.stashPop().getOutput());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Stash entries stay out of global-log and find, and gc keeps the
+     * blobs they need until they are popped. */
+    @Test
+    public void stashOutOfHistory() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-stash").toFile();
+        try {
+            Repository repo = new Repository(dir);
+            repo.init();
+            Utils.writeContents(new File(dir, "a.txt"), "a\n");
+            repo.add("a.txt");
+            repo.commit("Base");
+            String globalLog = repo.run("global-log").getOutput();
+
+            Utils.writeContents(new File(dir, "a.txt"), "a stashed\n");
+            Utils.writeContents(new File(dir, "new.txt"), "new\n");
+            assertEquals("", repo.stash().getOutput());
+            assertEquals(globalLog, repo.run("global-log").getOutput());
+            String message = repo.run("stash", "list").getOutput().trim()
+                    .substring("stash@{0}: ".length());
+            assertEquals("Found no commit with that message.\n",
+                    repo.run("find", message).getOutput());
+
+            repo.run("gc", "--grace=0");
+            assertEquals("", repo.stashPop().getOutput());
+            assertEquals("a stashed\n", Utils.readContentsAsString(
+                    new File(dir, "a.txt")));
+            assertEquals("new\n", Utils.readContentsAsString(
+                    new File(dir, "new.txt")));
+            assertEquals(globalLog, repo.run("global-log").getOutput());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Archives hold the files of the commit named, in order of name, and
+     * archiving the same commit twice gives the same bytes. */
+    @Test
+    public void archive() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-archive").toFile();
+        try {
+            Repository repo = new Repository(dir);
+            repo.init();
+            for (String f : List.of("b.txt", "a.txt", "c.txt")) {
+                Utils.writeContents(new File(dir, f), f + "\n");
+                repo.add(f);
+            }
+            repo.commit("Base");
+            String base = repo.resolve("master");
+            Utils.writeContents(new File(dir, "a.txt"), "changed\n");
+            repo.add("a.txt");
+            repo.commit("Change");
+
+            assertEquals("", repo.run("archive", base.substring(0, 8),
+                    "--format=zip", "--output=out.zip").getOutput());
+            ArrayList<String> names = new ArrayList<>();
+            try (ZipInputStream in = new ZipInputStream(
+                    new FileInputStream(new File(dir, "out.zip")))) {
+                for (ZipEntry e = in.getNextEntry(); e != null;
+                     e = in.getNextEntry()) {
+                    names.add(e.getName());
+                    if (e.getName().equals("a.txt")) {
+                        assertEquals("a.txt\n",
+                                new String(in.readAllBytes()));
+                    }
+                }
+            }
+            assertEquals(List.of("a.txt", "b.txt", "c.txt"), names);
+
+            repo.run("archive", "master", "--output=one.tar");
+            repo.run("archive", "master", "--format=tar", "--output=two.tar");
+            byte[] tar = Utils.readContents(new File(dir, "one.tar"));
+            assertTrue(Arrays.equals(tar, Utils.readContents(new File(dir,
+                    "two.tar"))));
+            assertEquals(0, tar.length % (20 * 512));
+            assertEquals("a.txt", new String(tar, 0, 5));
+            assertEquals("changed\n", new String(tar, 512, 8));
+            assertEquals("Incorrect operands.\n", repo.run("archive",
+                    "master", "--format=rar").getOutput());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** An archive written to standard output reaches Result.getBytes
+     * unchanged, non-ASCII file contents and compressed zip data
+     * included. */
+    @Test
+    public void archiveToOutput() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-archive").toFile();
+        try {
+            Repository repo = new Repository(dir);
+            repo.init();
+            String text = "caf\u00e9 \u2603 \ud83d\ude00\n";
+            Utils.writeContents(new File(dir, "a.txt"), text);
+            repo.add("a.txt");
+            repo.commit("Unicode");
+
+            repo.run("archive", "master", "--output=out.tar");
+            assertArrayEquals(Utils.readContents(new File(dir, "out.tar")),
+                    repo.run("archive", "master").getBytes());
+            byte[] zip = repo.run("archive", "master", "--format=zip")
+                    .getBytes();
+            try (ZipInputStream in = new ZipInputStream(
+                    new ByteArrayInputStream(zip))) {
+                assertEquals("a.txt", in.getNextEntry().getName());
+                assertEquals(text, new String(in.readAllBytes(),
+                        StandardCharsets.UTF_8));
+                assertNull(in.getNextEntry());
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Grep prints the matching lines of each commit named, in order of
+     * commit and file name, and of the current head when none is named. */
+    @Test
+    public void grep() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-grep").toFile();
+        try {
+            Repository repo = new Repository(dir);
+            repo.init();
+            Utils.writeContents(new File(dir, "b.txt"), "one\ntwo\nthree\n");
+            Utils.writeContents(new File(dir, "a.txt"), "zero\n");
+            repo.add("a.txt");
+            repo.add("b.txt");
+            repo.commit("Base");
+            String base = repo.resolve("master");
+            Utils.writeContents(new File(dir, "a.txt"), "zero\ntwenty\n");
+            repo.add("a.txt");
+            repo.commit("Change");
+
+            assertEquals(List.of("a.txt:2:twenty", "b.txt:2:two",
+                    "b.txt:3:three"), repo.run("grep", "t[wh]").getLines());
+            repo.branch("old");
+            repo.reset(base);
+            assertEquals(List.of(base.substring(0, 6) + ":b.txt:2:two",
+                    "old:a.txt:2:twenty", "old:b.txt:2:two"),
+                    repo.run("grep", "^tw", base.substring(0, 6), "old")
+                            .getLines());
+            assertEquals("Invalid pattern.\n",
+                    repo.run("grep", "(").getOutput());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** log -S lists the commits that changed how many times the string
+     * occurs in some file, not those that only moved it or changed other
+     * text. */
+    @Test
+    public void pickaxe() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-pickaxe").toFile();
+        try {
+            Repository repo = new Repository(dir);
+            repo.init();
+            String[][] steps = {
+                {"a.txt", "nothing\n", "None"},
+                {"a.txt", "needle\n", "Add"},
+                {"a.txt", "x\nneedle\n", "Move"},
+                {"b.txt", "needle needle\n", "Add twice"},
+                {"b.txt", "other\n", "Remove twice"},
+            };
+            for (String[] step : steps) {
+                Utils.writeContents(new File(dir, step[0]), step[1]);
+                repo.add(step[0]);
+                repo.commit(step[2]);
+            }
+            repo.rm("a.txt");
+            repo.commit("Delete");
+            ArrayList<String> messages = new ArrayList<>();
+            for (String line : repo.run("log", "-S", "needle").getLines()) {
+                if (!line.isEmpty() && !line.startsWith("===")
+                        && !line.startsWith("commit ")
+                        && !line.startsWith("Date: ")) {
+                    messages.add(line);
+                }
+            }
+            assertEquals(List.of("Delete", "Remove twice", "Add twice", "Add"),
+                    messages);
+            assertEquals("", repo.run("log", "-S", "absent").getOutput()
+                    .trim());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** find answers for commits still pending in the message index as
+     * well as for those folded into its shards, before and after gc folds
+     * the rest. */
+    @Test
+    public void findPendingCommits() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-find").toFile();
+        try {
+            int count = MessageIndex.FOLD + 6;
+            fill(dir, "step", count);
+            Repository repo = new Repository(dir);
+            List<Commit> log = repo.log();
+            String folded = log.get(count - 3).getId();
+            String pending = log.get(0).getId();
+            File pendingLog = Utils.join(dir, ".gitlet", MessageIndex.DIR,
+                    "pending");
+            for (int i = 0; i < 2; i += 1) {
+                assertEquals(folded + "\n",
+                        repo.run("find", "step 2").getOutput());
+                assertEquals(pending + "\n",
+                        repo.run("find", "step " + (count - 1)).getOutput());
+                assertEquals(pending + "\n", repo.run("find", "--grep",
+                        "STEP " + (count - 1)).getOutput());
+                assertEquals("Found no commit with that message.\n",
+                        repo.run("find", "step").getOutput());
+                assertEquals(i == 0, pendingLog.isFile());
+                repo.run("gc");
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Initializes a repository in dir and makes count commits, each
+     * changing f.txt.
+     * @param dir the root of the repository
+     * @param name text written to the files
+     * @param count the number of commits
+     */
+    private static void fill(File dir, String name, int count) {
+        Repository repo = new Repository(dir);
+        repo.init();
+        Utils.writeContents(new File(dir, name + ".txt"), name);
+        repo.add(name + ".txt");
+        for (int i = 0; i < count; i += 1) {
+            Utils.writeContents(new File(dir, "f.txt"), name + " " + i + "\n");
+            repo.add("f.txt");
+            repo.commit(name + " " + i);
+        }
+    }
+
+    /** Deletes f and everything under it.
+     *
+     * @param f a file or directory
+     */
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+}
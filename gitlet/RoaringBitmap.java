@@ -0,0 +1,373 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/** A compressed set of non-negative ints in the style of a Roaring bitmap.
+ * Values are grouped by their high 16 bits; each group is stored in a
+ * container that is either a sorted array of the low 16 bits, while it
+ * holds at most ARRAY_MAX values, or a plain 65536-bit bitset.
+ * @author Megan Hu*/
+class RoaringBitmap implements Serializable {
+
+    /** Serial version of bitmaps, fixed so that a stored index stays
+     * readable as the class changes. */
+    private static final long serialVersionUID = 7604470858684646452L;
+
+    /** Largest number of values an array container holds. */
+    static final int ARRAY_MAX = 4096;
+
+    /** An empty bitmap. */
+    RoaringBitmap() {
+        keys = new char[0];
+        containers = new Container[0];
+    }
+
+    /** Adds value to this bitmap.
+     *
+     * @param value a non-negative int
+     */
+    void add(int value) {
+        char key = (char) (value >>> 16);
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, key, new ArrayContainer());
+        }
+        containers[i] = containers[i].add((char) value);
+    }
+
+    /** Returns whether value is in this bitmap.
+     *
+     * @param value a non-negative int
+     * @return true if value was added
+     */
+    boolean contains(int value) {
+        int i = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    /** Adds every value of other to this bitmap.
+     *
+     * @param other the other bitmap
+     */
+    void or(RoaringBitmap other) {
+        for (int j = 0; j < other.size; j += 1) {
+            int i = Arrays.binarySearch(keys, 0, size, other.keys[j]);
+            if (i < 0) {
+                insert(-i - 1, other.keys[j], other.containers[j].copy());
+            } else {
+                containers[i] = containers[i].or(other.containers[j]);
+            }
+        }
+    }
+
+    /** Returns the number of values in this bitmap.
+     *
+     * @return the cardinality
+     */
+    long cardinality() {
+        long ret = 0;
+        for (int i = 0; i < size; i += 1) {
+            ret += containers[i].cardinality();
+        }
+        return ret;
+    }
+
+    /** Returns the number of values in both this bitmap and other.
+     *
+     * @param other the other bitmap
+     * @return the cardinality of the intersection
+     */
+    long andCardinality(RoaringBitmap other) {
+        long ret = 0;
+        for (int i = 0; i < size; i += 1) {
+            int j = Arrays.binarySearch(other.keys, 0, other.size, keys[i]);
+            if (j >= 0) {
+                ret += containers[i].andCardinality(other.containers[j]);
+            }
+        }
+        return ret;
+    }
+
+    /** Calls action on every value in this bitmap in increasing order.
+     *
+     * @param action the action
+     */
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i += 1) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /** Inserts container c with high bits key at position i.
+     *
+     * @param i the position
+     * @param key the high 16 bits of the container's values
+     * @param c the container
+     */
+    private void insert(int i, char key, Container c) {
+        if (size == keys.length) {
+            int n = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, n);
+            containers = Arrays.copyOf(containers, n);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = c;
+        size += 1;
+    }
+
+    /** The low 16 bits of the values sharing one value of the high bits. */
+    private abstract static class Container implements Serializable {
+
+        /** Serial version of containers. */
+        private static final long serialVersionUID = -7351187848591643348L;
+
+        /** Returns this container with value added, which may be a
+         * different container.
+         * @param value the low bits
+         * @return the container holding the result
+         */
+        abstract Container add(char value);
+
+        /** Returns whether value is in this container.
+         *
+         * @param value the low bits
+         * @return true if present
+         */
+        abstract boolean contains(char value);
+
+        /** Returns the union of this container and other, which may be
+         * this container modified or a new one.
+         * @param other the other container
+         * @return the container holding the result
+         */
+        abstract Container or(Container other);
+
+        /** Returns the number of values in this container.
+         *
+         * @return the cardinality
+         */
+        abstract int cardinality();
+
+        /** Returns the number of values in this container and other.
+         *
+         * @param other the other container
+         * @return the cardinality of the intersection
+         */
+        abstract int andCardinality(Container other);
+
+        /** Calls action on high | v for each value v in increasing order.
+         *
+         * @param high the high bits, already shifted
+         * @param action the action
+         */
+        abstract void forEach(int high, IntConsumer action);
+
+        /** Returns a copy of this container.
+         *
+         * @return the copy
+         */
+        abstract Container copy();
+    }
+
+    /** A container holding its values in a sorted array. */
+    private static class ArrayContainer extends Container {
+
+        /** Serial version of array containers. */
+        private static final long serialVersionUID = -4393171243214289034L;
+
+        /** An empty container. */
+        ArrayContainer() {
+            values = new char[4];
+        }
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, card, value);
+            if (i >= 0) {
+                return this;
+            }
+            if (card == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            i = -i - 1;
+            if (card == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, card * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, card - i);
+            values[i] = value;
+            card += 1;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, card, value) >= 0;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.copy().or(this);
+            }
+            ArrayContainer o = (ArrayContainer) other;
+            char[] merged = new char[card + o.card];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < card || j < o.card) {
+                if (j == o.card || (i < card && values[i] < o.values[j])) {
+                    merged[n++] = values[i++];
+                } else if (i == card || o.values[j] < values[i]) {
+                    merged[n++] = o.values[j++];
+                } else {
+                    merged[n++] = values[i++];
+                    j += 1;
+                }
+            }
+            ArrayContainer ret = new ArrayContainer();
+            ret.values = merged;
+            ret.card = n;
+            return n > ARRAY_MAX ? ret.toBitmap() : ret;
+        }
+
+        @Override
+        int cardinality() {
+            return card;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int ret = 0;
+            for (int i = 0; i < card; i += 1) {
+                if (other.contains(values[i])) {
+                    ret += 1;
+                }
+            }
+            return ret;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < card; i += 1) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            ArrayContainer ret = new ArrayContainer();
+            ret.values = Arrays.copyOf(values, Math.max(card, 1));
+            ret.card = card;
+            return ret;
+        }
+
+        /** Returns a bitset container with the values of this one.
+         *
+         * @return the bitset container
+         */
+        private BitmapContainer toBitmap() {
+            BitmapContainer ret = new BitmapContainer();
+            for (int i = 0; i < card; i += 1) {
+                ret.add(values[i]);
+            }
+            return ret;
+        }
+
+        /** The values, sorted, in positions [0, card). */
+        private char[] values;
+        /** The number of values. */
+        private int card;
+    }
+
+    /** A container holding its values as a 65536-bit bitset. */
+    private static class BitmapContainer extends Container {
+
+        /** Serial version of bitmap containers. */
+        private static final long serialVersionUID = 8772807333359664584L;
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << (value & 63);
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                card += 1;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << (value & 63))) != 0;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                long[] o = ((BitmapContainer) other).words;
+                card = 0;
+                for (int i = 0; i < words.length; i += 1) {
+                    words[i] |= o[i];
+                    card += Long.bitCount(words[i]);
+                }
+            } else {
+                other.forEach(0, v -> add((char) v));
+            }
+            return this;
+        }
+
+        @Override
+        int cardinality() {
+            return card;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (!(other instanceof BitmapContainer)) {
+                return other.andCardinality(this);
+            }
+            long[] o = ((BitmapContainer) other).words;
+            int ret = 0;
+            for (int i = 0; i < words.length; i += 1) {
+                ret += Long.bitCount(words[i] & o[i]);
+            }
+            return ret;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < words.length; i += 1) {
+                long w = words[i];
+                while (w != 0) {
+                    action.accept(high | (i << 6)
+                            | Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            BitmapContainer ret = new BitmapContainer();
+            ret.words = words.clone();
+            ret.card = card;
+            return ret;
+        }
+
+        /** The bits of the values. */
+        private long[] words = new long[1024];
+        /** The number of values. */
+        private int card;
+    }
+
+    /** High 16 bits of the values of each container, sorted. */
+    private char[] keys;
+    /** The containers, in the order of keys. */
+    private Container[] containers;
+    /** The number of containers. */
+    private int size;
+}
@@ -0,0 +1,234 @@
+package gitlet;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/** A server running gitlet commands over HTTP on many repositories from
+ * one JVM, invoked as
+ *      java gitlet.Server ROOT [--port=N] [--cache-mb=N]
+ *  Each directory ROOT/NAME is a repository. A POST to /NAME whose body
+ *  holds a command and its operands, one per line, runs the command on
+ *  that repository and answers with what it printed, and with the id of
+ *  the head commit afterwards in the Gitlet-Head header; "init" creates
+ *  the directory first. A GET of / reports the object cache.
+ *
+ *  Commits and blobs read by any repository share one ObjectCache of
+ *  --cache-mb megabytes (default 256). Commands on the same repository run
+ *  one at a time under its Repository lock; commands on different
+ *  repositories run at once. Each request runs on a virtual thread of its
+ *  own when the JVM has them, and on a pooled thread otherwise.
+ *
+ *      --port=N      port to listen on (default 6161, 0: any free port)
+ *      --cache-mb=N  megabytes of object files cached (default 256)
+ *
+ *  @author Megan Hu
+ */
+public class Server {
+
+    /** Repository names: no separators, and not starting with a dot. */
+    private static final Pattern NAME =
+        Pattern.compile("[A-Za-z0-9_][A-Za-z0-9._-]*");
+
+    /** A server for the repositories in root, listening on port.
+     *
+     * @param root the directory holding the repositories
+     * @param port the port, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    Server(File root, int port) throws IOException {
+        this.root = root.getAbsoluteFile();
+        executor = requestExecutor();
+        http = HttpServer.create(new InetSocketAddress(port), 0);
+        http.setExecutor(executor);
+        http.createContext("/", this::handle);
+    }
+
+    /** Usage: java gitlet.Server ROOT [--port=N] [--cache-mb=N]
+     *
+     * @param args the root directory and options
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String... args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java gitlet.Server ROOT "
+                    + "[--port=N] [--cache-mb=N]");
+            return;
+        }
+        int port = 6161;
+        long cacheMb = 256;
+        for (int i = 1; i < args.length; i += 1) {
+            String[] opt = args[i].split("=", 2);
+            if (opt.length == 2 && opt[0].equals("--port")) {
+                port = Integer.parseInt(opt[1]);
+            } else if (opt.length == 2 && opt[0].equals("--cache-mb")) {
+                cacheMb = Long.parseLong(opt[1]);
+            } else {
+                System.out.println("Unknown option: " + args[i]);
+                return;
+            }
+        }
+        ObjectCache.setCapacity(cacheMb << 20);
+        Server server = new Server(new File(args[0]), port);
+        server.start();
+        System.out.println("Serving " + server.root + " on port "
+                + server.port() + " (" + server.threading() + ").");
+    }
+
+    /** Starts answering requests. */
+    void start() {
+        http.start();
+    }
+
+    /** Stops answering requests, waiting for those in progress. */
+    void stop() {
+        http.stop(0);
+        executor.shutdown();
+    }
+
+    /** Returns the port the server listens on.
+     *
+     * @return the port
+     */
+    int port() {
+        return http.getAddress().getPort();
+    }
+
+    /** Returns how requests are run.
+     *
+     * @return "virtual threads" or "thread pool"
+     */
+    String threading() {
+        return virtual ? "virtual threads" : "thread pool";
+    }
+
+    /** Returns the repository named name, or null if name is not a valid
+     * repository name.
+     * @param name the name
+     * @return the repository
+     */
+    Repository repository(String name) {
+        if (!NAME.matcher(name).matches()) {
+            return null;
+        }
+        return repos.computeIfAbsent(name,
+            n -> new Repository(new File(root, n)));
+    }
+
+    /** Answers the request exchange.
+     *
+     * @param exchange the request and its response
+     * @throws IOException if the connection fails
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/")) {
+                long[] counts = ObjectCache.counts();
+                respond(exchange, 200, "Cache: " + ObjectCache.used()
+                        + " bytes, " + counts[0] + " hits, " + counts[1]
+                        + " misses\n");
+                return;
+            }
+            Repository repo = repository(path.substring(1));
+            if (repo == null) {
+                respond(exchange, 404, "No such repository.\n");
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "Commands must be POSTed.\n");
+                return;
+            }
+            String body = new String(exchange.getRequestBody().readAllBytes(),
+                    StandardCharsets.UTF_8);
+            ArrayList<String> args = new ArrayList<>();
+            for (String line : body.split("\n")) {
+                if (!line.isEmpty()) {
+                    args.add(line);
+                }
+            }
+            if (args.isEmpty()) {
+                respond(exchange, 400, "Please enter a command.\n");
+                return;
+            }
+            if (args.get(0).equals("init")) {
+                new File(repo.root()).mkdirs();
+            } else if (!new File(repo.root()).isDirectory()) {
+                respond(exchange, 404, "No such repository.\n");
+                return;
+            }
+            Repository.Result result = repo.run(args.toArray(new String[0]));
+            if (result.getHead() != null) {
+                exchange.getResponseHeaders().set("Gitlet-Head",
+                        result.getHead());
+            }
+            respond(exchange, 200, result.getOutput());
+        } catch (RuntimeException e) {
+            respond(exchange, 500, e + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /** Sends text as the response to exchange, with status code status.
+     *
+     * @param exchange the request and its response
+     * @param status the HTTP status code
+     * @param text the body of the response
+     * @throws IOException if the connection fails
+     */
+    private static void respond(HttpExchange exchange, int status,
+                                String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                "text/plain; charset=utf-8");
+        if (bytes.length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /** Returns an executor starting a virtual thread for each request if
+     * the JVM has virtual threads (Java 21 on), and a pool of platform
+     * threads otherwise. Reflection keeps gitlet compiling on older JDKs.
+     * @return the executor
+     */
+    private ExecutorService requestExecutor() {
+        try {
+            Method m = Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor");
+            virtual = true;
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            virtual = false;
+            return Executors.newFixedThreadPool(
+                    4 * Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /** The directory holding the repositories. */
+    private final File root;
+    /** The repositories served so far, by name. */
+    private final ConcurrentHashMap<String, Repository> repos =
+        new ConcurrentHashMap<>();
+    /** The HTTP server. */
+    private final HttpServer http;
+    /** Runs each request. */
+    private final ExecutorService executor;
+    /** Whether requests run on virtual threads. */
+    private boolean virtual;
+}
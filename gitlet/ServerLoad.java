@@ -0,0 +1,160 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A load test of Server, invoked as
+ *      java gitlet.ServerLoad [--OPTION=VALUE]...
+ *  It generates repositories with RepoGenerator in a temporary directory,
+ *  serves them from this JVM, and has client threads send commands to
+ *  random repositories: log (60%), status (30%) and branch (10%). It
+ *  prints the throughput, latencies and object cache counts, and deletes
+ *  the repositories.
+ *
+ *      --repos=N     number of repositories (default 50)
+ *      --commits=N   commits in each repository (100)
+ *      --files=N     files in each repository (50)
+ *      --clients=N   concurrent client threads (16)
+ *      --requests=N  requests sent by each client (200)
+ *      --cache-mb=N  megabytes of object files cached (256, 0: none)
+ *
+ *  @author Megan Hu
+ */
+public class ServerLoad {
+
+    /** Usage: java gitlet.ServerLoad [--OPTION=VALUE]...
+     *
+     * @param args the options
+     * @throws Exception if the server or a client fails
+     */
+    public static void main(String... args) throws Exception {
+        LinkedHashMap<String, Long> options = new LinkedHashMap<>();
+        options.put("repos", 50L);
+        options.put("commits", 100L);
+        options.put("files", 50L);
+        options.put("clients", 16L);
+        options.put("requests", 200L);
+        options.put("cache-mb", 256L);
+        for (String arg : args) {
+            String[] opt = arg.replaceFirst("^--", "").split("=", 2);
+            if (!options.containsKey(opt[0]) || opt.length < 2) {
+                System.out.println("Unknown option: " + arg);
+                return;
+            }
+            options.put(opt[0], Long.parseLong(opt[1]));
+        }
+        int repos = options.get("repos").intValue();
+        File root = Files.createTempDirectory("gitlet-load").toFile();
+        try {
+            for (int i = 0; i < repos; i += 1) {
+                RepoGenerator.main(new File(root, "repo" + i).getPath(),
+                        "--seed=" + (i + 1),
+                        "--commits=" + options.get("commits"),
+                        "--files=" + options.get("files"),
+                        "--branch-every=0", "--merge-every=0");
+            }
+            ObjectCache.setCapacity(options.get("cache-mb") << 20);
+            ObjectCache.clear();
+            Server server = new Server(root, 0);
+            server.start();
+            try {
+                run(server, repos, options.get("clients").intValue(),
+                        options.get("requests").intValue());
+            } finally {
+                server.stop();
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Sends the requests of clients clients to server, which serves repos
+     * repositories, and prints the results.
+     * @param server the server
+     * @param repos the number of repositories
+     * @param clients the number of client threads
+     * @param requests the number of requests each client sends
+     * @throws InterruptedException if interrupted
+     */
+    private static void run(Server server, int repos, int clients,
+                            int requests) throws InterruptedException {
+        HttpClient http = HttpClient.newHttpClient();
+        String base = "http://localhost:" + server.port() + "/repo";
+        long[] latencies = new long[clients * requests];
+        AtomicInteger failures = new AtomicInteger();
+        AtomicInteger branches = new AtomicInteger();
+        Thread[] threads = new Thread[clients];
+        long start = System.nanoTime();
+        for (int t = 0; t < clients; t += 1) {
+            int client = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(client);
+                for (int i = 0; i < requests; i += 1) {
+                    int kind = random.nextInt(10);
+                    String command = kind < 6 ? "log" : kind < 9 ? "status"
+                            : "branch\nload-" + branches.incrementAndGet();
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(
+                            base + random.nextInt(repos)))
+                            .POST(HttpRequest.BodyPublishers.ofString(command))
+                            .build();
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = http.send(request,
+                                HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[client * requests + i] =
+                            System.nanoTime() - sent;
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        long[] counts = ObjectCache.counts();
+        Runtime rt = Runtime.getRuntime();
+        System.out.printf("%d requests from %d clients to %d repositories "
+                + "(%s) in %.2f s: %.0f requests/s, %d failed.%n",
+                latencies.length, clients, repos, server.threading(),
+                elapsed / 1e9, latencies.length / (elapsed / 1e9),
+                failures.get());
+        System.out.printf("Latency: median %.1f ms, 99th percentile %.1f ms,"
+                + " max %.1f ms.%n", latencies[latencies.length / 2] / 1e6,
+                latencies[latencies.length * 99 / 100] / 1e6,
+                latencies[latencies.length - 1] / 1e6);
+        System.out.printf("Object cache: %d hits, %d misses, %d KB held;"
+                + " heap %d MB used.%n", counts[0], counts[1],
+                ObjectCache.used() >> 10,
+                (rt.totalMemory() - rt.freeMemory()) >> 20);
+    }
+
+    /** Deletes f and everything under it.
+     *
+     * @param f a file or directory
+     */
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+}
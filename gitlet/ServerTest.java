@@ -0,0 +1,106 @@
+package gitlet;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the server and the object cache it shares between
+ * repositories.
+ *  @author Megan Hu
+ */
+public class ServerTest {
+
+    /** The cache evicts the least recently used objects once the sizes
+     * charged exceed its capacity, and holds nothing when it is off. */
+    @Test
+    public void cacheEvictsLeastRecentlyUsed() {
+        try {
+            ObjectCache.setCapacity(100);
+            ObjectCache.clear();
+            assertTrue(ObjectCache.caches(".blobs"));
+            assertFalse(ObjectCache.caches(".refs"));
+            ObjectCache.put("/a", "A", 40);
+            ObjectCache.put("/b", "B", 40);
+            assertEquals("A", ObjectCache.get("/a"));
+            ObjectCache.put("/c", "C", 40);
+            assertNull(ObjectCache.get("/b"));
+            assertEquals("A", ObjectCache.get("/a"));
+            assertEquals("C", ObjectCache.get("/c"));
+            assertEquals(80, ObjectCache.used());
+            ObjectCache.put("/big", "D", 101);
+            assertNull(ObjectCache.get("/big"));
+            ObjectCache.remove("/a");
+            assertEquals(40, ObjectCache.used());
+            assertArrayEquals(new long[] {3, 2}, ObjectCache.counts());
+            ObjectCache.setCapacity(0);
+            assertEquals(0, ObjectCache.used());
+            assertFalse(ObjectCache.caches(".blobs"));
+        } finally {
+            ObjectCache.setCapacity(0);
+            ObjectCache.clear();
+        }
+    }
+
+    /** Commands posted to the server run on the repository named in the
+     * path and answer with their output and head. */
+    @Test
+    public void runsCommands() throws Exception {
+        File root = Files.createTempDirectory("gitlet-server").toFile();
+        Server server = new Server(root, 0);
+        server.start();
+        try {
+            HttpClient http = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.port() + "/";
+            HttpResponse<String> r = post(http, base + "one", "init");
+            assertEquals(200, r.statusCode());
+            assertTrue(new File(root, "one/.gitlet").isDirectory());
+            String head = r.headers().firstValue("Gitlet-Head").orElse(null);
+            assertNotNull(head);
+            r = post(http, base + "one", "branch\nother");
+            assertEquals(200, r.statusCode());
+            r = post(http, base + "one", "status");
+            assertTrue(r.body().startsWith("=== Branches ===\n*master\nother"));
+            r = post(http, base + "one", "log");
+            assertTrue(r.body().contains("commit " + head));
+            assertEquals(404, post(http, base + "two", "log").statusCode());
+            assertEquals(404, post(http, base + "..", "init").statusCode());
+        } finally {
+            server.stop();
+            delete(root);
+        }
+    }
+
+    /** Returns the response to posting body to url.
+     *
+     * @param http the client
+     * @param url the URL
+     * @param body the command and its operands, one per line
+     * @return the response
+     * @throws Exception if the request fails
+     */
+    private static HttpResponse<String> post(HttpClient http, String url,
+                                             String body) throws Exception {
+        return http.send(HttpRequest.newBuilder(URI.create(url))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    /** Deletes f and everything under it.
+     *
+     * @param f a file or directory
+     */
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,179 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/** Sparse checkout: glob patterns, one per line in .gitlet/sparse-checkout,
+ * naming the tracked files that are kept in the working directory.
+ * Checkout, reset, merge and rebase write only the files that match, and
+ * Stage.check takes tracked files that do not match and are missing to
+ * be intentionally absent rather than deleted, so the files read and
+ * written scale with the sparse set rather than the whole commit.
+ * @author Megan Hu*/
+final class Sparse {
+
+    /** File of the patterns, in .gitlet. */
+    static final String FILE = "sparse-checkout";
+
+    /** A sparse set of the files matching any of patterns, or of all
+     * files if patterns is null.
+     * @param patterns the glob patterns, or null
+     */
+    private Sparse(List<String> patterns) {
+        if (patterns != null) {
+            matchers = new ArrayList<>();
+            for (String p : patterns) {
+                matchers.add(FileSystems.getDefault()
+                        .getPathMatcher("glob:" + p));
+            }
+        }
+    }
+
+    /** Returns the sparse set of repository repo, which includes all
+     * files if it has no patterns.
+     * @param repo the repository
+     * @return the sparse set
+     */
+    static Sparse load(Repository repo) {
+        File f = file(repo);
+        if (!f.isFile()) {
+            return new Sparse(null);
+        }
+        return new Sparse(patterns(Utils.readContentsAsString(f)));
+    }
+
+    /** Returns whether the file named fileName belongs in the working
+     * directory.
+     * @param fileName name of the file
+     * @return true if it matches a pattern or there are none
+     */
+    boolean includes(String fileName) {
+        if (matchers == null) {
+            return true;
+        }
+        for (PathMatcher m : matchers) {
+            if (m.matches(Paths.get(fileName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the entries of files whose names this set includes.
+     *
+     * @param files blob ids by file name
+     * @return the entries included, all of files if there are no patterns
+     */
+    Map<String, String> filter(Map<String, String> files) {
+        if (matchers == null) {
+            return files;
+        }
+        HashMap<String, String> ret = new HashMap<>();
+        for (Map.Entry<String, String> e : files.entrySet()) {
+            if (includes(e.getKey())) {
+                ret.put(e.getKey(), e.getValue());
+            }
+        }
+        return ret;
+    }
+
+    /** Helper method for the sparse-checkout command: set PATTERN...
+     * replaces the patterns, list prints them, and disable removes them.
+     * The working directory is then updated to the files of head that
+     * match: those missing are written, and those that no longer match are
+     * deleted unless they have been modified.
+     * @param repo the repository
+     * @param args the subcommand and its patterns
+     * @param head the current commit
+     */
+    static void command(Repository repo, String[] args, Commit head) {
+        File f = file(repo);
+        if (args.length == 2 && args[1].equals("list")) {
+            if (f.isFile()) {
+                repo.out().print(Utils.readContentsAsString(f));
+            }
+            return;
+        } else if (args.length == 2 && args[1].equals("disable")) {
+            f.delete();
+        } else if (args.length > 2 && args[1].equals("set")) {
+            StringBuilder contents = new StringBuilder();
+            for (int i = 2; i < args.length; i += 1) {
+                contents.append(args[i]).append('\n');
+            }
+            Utils.writeContents(f, contents.toString());
+        } else {
+            repo.out().println("Incorrect operands.");
+            return;
+        }
+        apply(repo, load(repo), head.getBlobs());
+    }
+
+    /** Updates the working directory to the files of tracked that sparse
+     * includes, leaving modified files that it excludes in place.
+     * @param repo the repository
+     * @param sparse the sparse set
+     * @param tracked blob ids of the tracked files by name
+     */
+    private static void apply(Repository repo, Sparse sparse,
+                              Map<String, String> tracked) {
+        HashSet<String> present = new HashSet<>(repo.listDirFiles(""));
+        ArrayList<String> wanted = new ArrayList<>();
+        for (Map.Entry<String, String> e : tracked.entrySet()) {
+            if (sparse.includes(e.getKey())
+                    && !present.contains(e.getKey())) {
+                wanted.add(e.getValue());
+            }
+        }
+        PartialClone.prefetch(repo, wanted);
+        for (Map.Entry<String, String> e : tracked.entrySet()) {
+            String name = e.getKey();
+            if (sparse.includes(name)) {
+                if (!present.contains(name)) {
+                    Blob b = (Blob) repo.readFile(".blobs", e.getValue());
+                    repo.writeToCWD("", name, b.getContent());
+                }
+            } else if (present.contains(name)) {
+                String content = repo.readCWDFileToString("", name);
+                Blob b = (Blob) repo.readFile(".blobs", e.getValue());
+                if (content.equals(b.getContent())) {
+                    repo.deleteCWDFile("", name);
+                }
+            }
+        }
+    }
+
+    /** Returns the patterns listed in contents, one per line, skipping
+     * blank lines and lines starting with #.
+     * @param contents the contents of the pattern file
+     * @return the patterns
+     */
+    private static List<String> patterns(String contents) {
+        ArrayList<String> ret = new ArrayList<>();
+        for (String line : contents.split("\n")) {
+            String p = line.trim();
+            if (!p.isEmpty() && !p.startsWith("#")) {
+                ret.add(p);
+            }
+        }
+        return ret;
+    }
+
+    /** Returns the pattern file of repository repo.
+     *
+     * @param repo the repository
+     * @return the file
+     */
+    private static File file(Repository repo) {
+        return Utils.join(repo.root(), ".gitlet", FILE);
+    }
+
+    /** Matchers of the patterns, or null to include every file. */
+    private ArrayList<PathMatcher> matchers;
+}
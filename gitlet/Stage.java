@@ -4,15 +4,26 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /** Class representing the staging area.
  * @author Megan Hu*/
 public class Stage implements Serializable {
 
-    /** Constructor for a Stage object. Initializes stagedAdded, stagedRemoved,
-     * trackedModified, trackedDeleted, and untracked.
+    /** Serial version of stages, fixed so that a stored stage stays
+     * readable as the class changes. */
+    private static final long serialVersionUID = -2827852682456072322L;
+
+    /** Constructor for a Stage object of repository repo. Initializes
+     * stagedAdded, stagedRemoved, trackedModified, trackedDeleted, and
+     * untracked.
+     * @param repo the repository
      */
-    Stage() {
+    Stage(Repository repo) {
+        this.repo = repo;
         stagedAdded = new HashMap<>();
         stagedRemoved = new HashMap<>();
         trackedModified = new HashMap<>();
@@ -31,7 +42,7 @@ public class Stage implements Serializable {
         boolean changed = false;
 
         if (!stagedRemoved.containsKey(fileName)) {
-            String blobContent = Main.readCWDFileToString("", fileName);
+            String blobContent = repo.readCWDFileToString("", fileName);
             if (blobContent.equals("")) {
                 return;
             }
@@ -43,13 +54,13 @@ public class Stage implements Serializable {
             }
             if (changed || !currBlobs.containsKey(fileName)) {
                 Blob temp = new Blob(fileName, blobContent);
-                Main.writeFile(".stagedblobs", temp.getHashValue(), temp);
+                repo.writeFile(".stagedblobs", temp.getHashValue(), temp);
                 id = temp.getHashValue();
             } else {
                 id = currBlobs.get(fileName);
             }
         } else {
-            Main.writeToCWD("", fileName, getCurrBlob(fileName, true));
+            repo.writeToCWD("", fileName, getCurrBlob(fileName, true));
             id = currBlobs.get(fileName);
         }
         if (trackedDeleted.containsKey(fileName)) {
@@ -67,15 +78,18 @@ public class Stage implements Serializable {
     }
 
     /** Checks if modifications have occurred in the CWD, updating
-     * trackedModified, trackedDeleted, and untracked.
+     * trackedModified, trackedDeleted, and untracked. Tracked files that
+     * the sparse checkout excludes may be missing.
      */
     public void check() {
-        ArrayList<String> cwd = Main.listDirFiles("");
+        Events.WorkingTreeScan event = new Events.WorkingTreeScan();
+        event.begin();
+        ArrayList<String> cwd = repo.listDirFiles("");
         if (!currBlobs.isEmpty()) {
             String content;
 
             for (String fileName: cwd) {
-                content = Main.readCWDFileToString("", fileName);
+                content = repo.readCWDFileToString("", fileName);
                 if ((!currBlobs.containsKey(fileName)
                         && !stagedAdded.containsKey(fileName))
                         || (!currBlobs.containsKey(fileName)
@@ -88,16 +102,14 @@ public class Stage implements Serializable {
                     trackedModified.put(fileName, null);
                 }
             }
+            HashSet<String> present = new HashSet<>(cwd);
+            Sparse sparse = Sparse.load(repo);
             for (String key: currBlobs.keySet()) {
-                if (!cwd.contains(key)) {
+                if (!present.contains(key) && sparse.includes(key)) {
                     stagedRemoved.put(key, currBlobs.get(key));
                 }
             }
-            for (String fileName: untracked.keySet()) {
-                if (!cwd.contains(fileName)) {
-                    untracked.remove(fileName);
-                }
-            }
+            untracked.keySet().retainAll(present);
         } else {
             if (currBlobs.isEmpty() && !cwd.isEmpty()) {
                 for (String fileName: cwd) {
@@ -108,6 +120,13 @@ public class Stage implements Serializable {
                 }
             }
         }
+        if (event.shouldCommit()) {
+            event.files = cwd.size();
+            event.modified = trackedModified.size();
+            event.deleted = stagedRemoved.size();
+            event.untracked = untracked.size();
+            event.commit();
+        }
     }
 
     /** Unstage the file if currently staged for addition.
@@ -118,15 +137,15 @@ public class Stage implements Serializable {
     void rm(String fileName, Commit curr) {
         if (!stagedAdded.containsKey(fileName)
                 && !currBlobs.containsKey(fileName)) {
-            System.out.println("No reason to remove the file.");
+            repo.out().println("No reason to remove the file.");
         }
         if (stagedAdded.containsKey(fileName)) {
             stagedAdded.remove(fileName);
         }
         if (currBlobs.containsKey(fileName)) {
             stagedRemoved.put(fileName, currBlobs.get(fileName));
-            if (Main.listDirFiles("").contains(fileName)) {
-                Main.deleteCWDFile("", fileName);
+            if (repo.listDirFiles("").contains(fileName)) {
+                repo.deleteCWDFile("", fileName);
             }
         }
     }
@@ -152,9 +171,9 @@ public class Stage implements Serializable {
     private String getCurrBlob(String fileName, boolean tracked) {
         Object curr;
         if (tracked) {
-            curr = Main.readFile(".blobs", currBlobs.get(fileName));
+            curr = repo.readFile(".blobs", currBlobs.get(fileName));
         } else {
-            curr = Main.readFile(".stagedblobs", stagedAdded.get(fileName));
+            curr = repo.readFile(".stagedblobs", stagedAdded.get(fileName));
         }
         return ((Blob) curr).getContent();
     }
@@ -233,27 +252,55 @@ public class Stage implements Serializable {
         return ret;
     }
 
+    /** Returns the files staged for addition or untracked that are renames
+     * of files staged for removal or deleted, as of the last check.
+     * @return the renames
+     */
+    List<Renames.Rename> renames() {
+        HashMap<String, String> gone = new HashMap<>(stagedRemoved);
+        for (String f : trackedDeleted.keySet()) {
+            gone.put(f, currBlobs.get(f));
+        }
+        gone.values().removeIf(Objects::isNull);
+        HashMap<String, Renames.Signature> added = new HashMap<>();
+        for (String f : stagedAdded.keySet()) {
+            added.put(f, Renames.signature(getCurrBlob(f, false)));
+        }
+        for (String f : untracked.keySet()) {
+            added.put(f, Renames.signature(
+                    repo.readCWDFileToString("", f)));
+        }
+        return Renames.detect(Renames.signaturesOf(repo, gone), added,
+                Collections.emptyMap());
+    }
+
     /** Helper method for updating system state after merge.
      * @param newBlobs blobs that are new and need to be added
      * @param removedBlobs blobs to be removed
      * @param conflictFiles blobs in conflict
      */
-    public void postMerge(HashMap newBlobs, HashMap removedBlobs,
-                          HashMap conflictFiles) {
-        for (Object key: newBlobs.keySet()) {
-            String k = (String) key;
-            add(k, Main.mainTree().getCurrBranchCommit());
+    public void postMerge(HashMap<String, String> newBlobs,
+                          HashMap<String, String> removedBlobs,
+                          HashMap<String, String> conflictFiles) {
+        for (String k : newBlobs.keySet()) {
+            add(k, repo.tree().getCurrBranchCommit());
         }
-        for (Object key: removedBlobs.keySet()) {
-            String k = (String) key;
-            stagedRemoved.put(k, (String) (removedBlobs.get(k)));
+        for (String k : removedBlobs.keySet()) {
+            stagedRemoved.put(k, removedBlobs.get(k));
         }
-        for (Object key: conflictFiles.keySet()) {
-            String k = (String) key;
+        for (String k : conflictFiles.keySet()) {
             trackedModified.put(k, null);
         }
     }
 
+    /** Makes repo the repository of a stage read from its stage.bin.
+     *
+     * @param repo the repository
+     */
+    void setRepository(Repository repo) {
+        this.repo = repo;
+    }
+
     /** Getter method for untracked.
      *
      * @return untracked
@@ -276,6 +323,18 @@ public class Stage implements Serializable {
         return stagedRemoved;
     }
 
+    /** Getter method for trackedModified.
+     * @return trackedModified*/
+    public HashMap<String, String> getTrackedModified() {
+        return trackedModified;
+    }
+
+    /** Getter method for trackedDeleted.
+     * @return trackedDeleted*/
+    public HashMap<String, String> getTrackedDeleted() {
+        return trackedDeleted;
+    }
+
     /** HashMap hashing fileNames to blob strings
      * for files to be added. */
     private HashMap<String, String> stagedAdded;
@@ -291,7 +350,9 @@ public class Stage implements Serializable {
     /** HashMap hashing fileNames to blob strings
      *  for files that are untracked. */
     private HashMap<String, String> untracked;
-    /** HashMap hashing fileNames to blobs
+    /** Map of fileNames to blobs
      * associated with the current commit. */
-    private HashMap<String, String> currBlobs;
+    private Map<String, String> currBlobs;
+    /** The repository this stage belongs to. */
+    private transient Repository repo;
 }
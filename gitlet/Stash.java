@@ -0,0 +1,214 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/** Stashes: snapshots of the working directory saved as commits, so that
+ * local changes can be set aside while another branch is checked out. A
+ * stash entry is a commit whose parent is the head it was taken on and
+ * whose files are the working directory's; it is built from its parent's
+ * file map, so files left unchanged keep their blob ids and only edited
+ * and untracked files are written as new blobs. The entry commits are
+ * stored in .gitlet/.stash rather than .commits, so global-log, find and
+ * abbreviated ids never see them, and are named by refs refs/stash/N, the
+ * newest with the largest N; gc keeps their parents and blobs until they
+ * are popped.
+ * @author Megan Hu*/
+final class Stash {
+
+    /** Prefix of the ref of every stash entry. */
+    static final String PREFIX = "refs/stash/";
+
+    /** Directory of the entry commits, in .gitlet. */
+    static final String DIR = ".stash";
+
+    /** Not instantiable. */
+    private Stash() {
+    }
+
+    /** Helper method for the stash command: with no subcommand saves the
+     * working directory and resets it to the head of the current branch,
+     * pop restores the newest entry and drops it, and list prints the
+     * entries, newest first.
+     * @param repo the repository
+     * @param args the command and its subcommand
+     */
+    static void command(Repository repo, String[] args) {
+        if (args.length == 1) {
+            save(repo);
+        } else if (args.length == 2 && args[1].equals("pop")) {
+            pop(repo);
+        } else if (args.length == 2 && args[1].equals("list")) {
+            ArrayList<String> refs = entries(repo);
+            for (int i = 0; i < refs.size(); i += 1) {
+                Commit c = read(repo, Refs.resolve(repo, refs.get(i)));
+                repo.out().println("stash@{" + i + "}: " + c.getMessage());
+            }
+        } else {
+            repo.out().println("Incorrect operands.");
+        }
+    }
+
+    /** Saves the files of the working directory that differ from the head
+     * of the current branch as a new stash entry, then resets them to the
+     * head, deleting untracked files.
+     * @param repo the repository
+     */
+    private static void save(Repository repo) {
+        Tree tree = repo.tree();
+        Commit head = tree.getCurrBranchCommit();
+        Map<String, String> tracked = head.getBlobs();
+        HashMap<String, String> added = new HashMap<>();
+        HashMap<String, String> removed = new HashMap<>();
+        ArrayList<String> cwd = repo.listDirFiles("");
+        for (String name : cwd) {
+            Blob b = new Blob(name, repo.readCWDFileToString("", name));
+            if (!b.getHashValue().equals(tracked.get(name))) {
+                if (!Remote.has(repo, ".blobs", b.getHashValue())) {
+                    repo.writeFile(".blobs", b.getHashValue(), b);
+                }
+                added.put(name, b.getHashValue());
+            }
+        }
+        HashSet<String> present = new HashSet<>(cwd);
+        Sparse sparse = Sparse.load(repo);
+        for (Map.Entry<String, String> e : tracked.entrySet()) {
+            if (!present.contains(e.getKey()) && sparse.includes(e.getKey())) {
+                removed.put(e.getKey(), e.getValue());
+            }
+        }
+        if (added.isEmpty() && removed.isEmpty()) {
+            repo.out().println("No local changes to save.");
+            return;
+        }
+        String message = "WIP on " + tree.getCurrBranch() + ": "
+                + head.getId().substring(0, 7) + " " + head.getMessage();
+        Commit entry = new Commit(head, "", message, added, removed,
+                new Date());
+        repo.writeFile(DIR, entry.getId(), entry);
+        ArrayList<String> refs = entries(repo);
+        long n = refs.isEmpty() ? 0
+                : Long.parseLong(refs.get(0).substring(PREFIX.length())) + 1;
+        Refs.update(repo, PREFIX + String.format("%010d", n), entry.getId());
+
+        for (String name : added.keySet()) {
+            String id = tracked.get(name);
+            if (id == null) {
+                repo.deleteCWDFile("", name);
+            } else {
+                Blob b = (Blob) repo.readFile(".blobs", id);
+                repo.writeToCWD("", name, b.getContent());
+            }
+        }
+        for (Map.Entry<String, String> e : removed.entrySet()) {
+            Blob b = (Blob) repo.readFile(".blobs", e.getValue());
+            repo.writeToCWD("", e.getKey(), b.getContent());
+        }
+        repo.stage().clear();
+    }
+
+    /** Applies the changes of the newest stash entry to the working
+     * directory by merging it into the head of the current branch, with
+     * the commit it was taken on as the base, and drops it unless the
+     * merge conflicts. Nothing is staged or committed.
+     * @param repo the repository
+     */
+    private static void pop(Repository repo) {
+        Stage stage = repo.stage();
+        ArrayList<String> refs = entries(repo);
+        if (refs.isEmpty()) {
+            repo.out().println("No stash entries found.");
+            return;
+        }
+        if (!stage.getStagedAdded().isEmpty()
+                || !stage.getStagedRemoved().isEmpty()) {
+            repo.out().println("You have uncommitted changes.");
+            return;
+        }
+        Commit entry = read(repo, Refs.resolve(repo, refs.get(0)));
+        Commit base = (Commit) repo.readFile(".commits", entry.getParent());
+        Commit head = repo.tree().getCurrBranchCommit();
+        MergeEngine.Result result = MergeEngine.merge(repo, head, entry, base);
+        ArrayList<String> written = new ArrayList<>(result.changed().keySet());
+        written.addAll(result.removed().keySet());
+        written.addAll(result.conflicts().keySet());
+        Map<String, String> tracked = head.getBlobs();
+        for (String name : written) {
+            if (!Utils.join(repo.root(), name).isFile()) {
+                continue;
+            }
+            String content = repo.readCWDFileToString("", name);
+            String id = new Blob(name, content).getHashValue();
+            if (!tracked.containsKey(name)) {
+                repo.out().println("There is an untracked file in the way;"
+                        + " delete it, or add and commit it first.");
+                return;
+            } else if (!id.equals(tracked.get(name))) {
+                repo.out().println("You have uncommitted changes.");
+                return;
+            }
+        }
+        for (Blob b : result.newBlobs()) {
+            repo.writeFile(".blobs", b.getHashValue(), b);
+        }
+        for (Map.Entry<String, String> e : result.changed().entrySet()) {
+            Blob b = (Blob) repo.readFile(".blobs", e.getValue());
+            repo.writeToCWD("", e.getKey(), b.getContent());
+        }
+        for (String name : result.removed().keySet()) {
+            repo.deleteCWDFile("", name);
+        }
+        for (Map.Entry<String, String> e : result.conflicts().entrySet()) {
+            repo.writeToCWD("", e.getKey(), e.getValue());
+        }
+        stage.clear();
+        if (result.isClean()) {
+            Refs.delete(repo, refs.get(0));
+            repo.deleteFile(DIR, entry.getId());
+        } else {
+            repo.out().println("Encountered a merge conflict.");
+        }
+    }
+
+    /** Returns the commits of the stash entries of repository repo, newest
+     * first.
+     * @param repo the repository
+     * @return the entry commits
+     */
+    static ArrayList<Commit> all(Repository repo) {
+        ArrayList<Commit> ret = new ArrayList<>();
+        for (String ref : entries(repo)) {
+            ret.add(read(repo, Refs.resolve(repo, ref)));
+        }
+        return ret;
+    }
+
+    /** Returns the stash entry commit with id id, looking in .commits for
+     * entries saved before they had a directory of their own.
+     * @param repo the repository
+     * @param id id of the entry
+     * @return the entry commit
+     */
+    private static Commit read(Repository repo, String id) {
+        if (Utils.join(repo.root(), ".gitlet", DIR, id).isFile()) {
+            return (Commit) repo.readFile(DIR, id);
+        }
+        return (Commit) repo.readFile(".commits", id);
+    }
+
+    /** Returns the refs of the stash entries of repository repo, newest
+     * first.
+     * @param repo the repository
+     * @return the full ref names
+     */
+    private static ArrayList<String> entries(Repository repo) {
+        ArrayList<String> ret = new ArrayList<>();
+        Refs.forEach(repo, PREFIX, (ref, id) -> ret.add(ref));
+        Collections.reverse(ret);
+        return ret;
+    }
+}
@@ -0,0 +1,207 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Counters and timers of the work a command does, by phase: objects read
+ * and written in .gitlet, SHA-1 hashes, and files read and written in the
+ * working directory. Counting is off unless enabled, so that commands that
+ * do not ask for statistics only pay for one test of a static field.
+ * @author Megan Hu*/
+class Stats {
+
+    /** Environment variable naming a file to which a JSON line with the
+     * statistics of every command is appended. */
+    static final String ENV = "GITLET_STATS";
+
+    /** The kinds of work that are counted. */
+    enum Phase {
+        /** Objects deserialized by Repository.readFile. */
+        OBJECT_READ("object reads"),
+        /** Objects serialized by Repository.writeFile. */
+        OBJECT_WRITE("object writes"),
+        /** SHA-1 hashes computed by Utils.sha1. */
+        HASH("hashes"),
+        /** Working files read by Repository.readCWDFileToString. */
+        FILE_READ("file reads"),
+        /** Working files written by Repository.writeToCWD. */
+        FILE_WRITE("file writes");
+
+        /** A phase described as label in summaries.
+         *
+         * @param label the description
+         */
+        Phase(String label) {
+            this.label = label;
+        }
+
+        /** How summaries describe this phase. */
+        private final String label;
+    }
+
+    /** Turns counting on or off, clearing the counters.
+     *
+     * @param on whether to count
+     */
+    static void enable(boolean on) {
+        counters = new AtomicLongArray(Phase.values().length * 3);
+        enabled = on;
+    }
+
+    /** Returns whether counting is on.
+     *
+     * @return true if counting
+     */
+    static boolean enabled() {
+        return enabled;
+    }
+
+    /** Returns the time at which a counted operation starts, or 0 if
+     * counting is off.
+     * @return the value of System.nanoTime, or 0
+     */
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /** Counts one operation of phase on bytes bytes that started at start.
+     *
+     * @param phase the phase
+     * @param bytes the number of bytes read, written or hashed
+     * @param start the value returned by start()
+     */
+    static void record(Phase phase, long bytes, long start) {
+        if (!enabled) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        int i = phase.ordinal() * 3;
+        counters.incrementAndGet(i);
+        counters.addAndGet(i + 1, bytes);
+        counters.addAndGet(i + 2, nanos);
+    }
+
+    /** Returns the number of operations of phase counted.
+     *
+     * @param phase the phase
+     * @return the count
+     */
+    static long count(Phase phase) {
+        return counters.get(phase.ordinal() * 3);
+    }
+
+    /** Returns the number of bytes of phase counted.
+     *
+     * @param phase the phase
+     * @return the bytes
+     */
+    static long bytes(Phase phase) {
+        return counters.get(phase.ordinal() * 3 + 1);
+    }
+
+    /** Returns the time spent in phase, in nanoseconds.
+     *
+     * @param phase the phase
+     * @return the time
+     */
+    static long nanos(Phase phase) {
+        return counters.get(phase.ordinal() * 3 + 2);
+    }
+
+    /** Returns a summary of the counters of the command args, which took
+     * wallNanos, one line per phase.
+     * @param args the command and its operands
+     * @param wallNanos the wall time of the command in nanoseconds
+     * @return the summary
+     */
+    static String summary(String[] args, long wallNanos) {
+        StringBuilder ret = new StringBuilder();
+        ret.append(String.format("=== Stats: %s (%.3f ms) ===%n",
+                String.join(" ", args), wallNanos / 1e6));
+        for (Phase phase : Phase.values()) {
+            ret.append(String.format("%-14s %8d %12d bytes %10.3f ms%n",
+                    phase.label, count(phase), bytes(phase),
+                    nanos(phase) / 1e6));
+        }
+        return ret.toString();
+    }
+
+    /** Returns the counters of the command args, which took wallNanos and
+     * ended at time millis, as one line of JSON.
+     * @param args the command and its operands
+     * @param wallNanos the wall time of the command in nanoseconds
+     * @param millis the time the command ended, in milliseconds since 1970
+     * @return the JSON object, without a line terminator
+     */
+    static String json(String[] args, long wallNanos, long millis) {
+        StringBuilder ret = new StringBuilder("{\"command\":[");
+        for (int i = 0; i < args.length; i += 1) {
+            ret.append(i == 0 ? "" : ",");
+            quote(ret, args[i]);
+        }
+        ret.append("],\"time\":").append(millis)
+                .append(",\"wallNanos\":").append(wallNanos);
+        for (Phase phase : Phase.values()) {
+            ret.append(",\"").append(phase.name().toLowerCase())
+                    .append("\":{\"count\":").append(count(phase))
+                    .append(",\"bytes\":").append(bytes(phase))
+                    .append(",\"nanos\":").append(nanos(phase)).append('}');
+        }
+        return ret.append('}').toString();
+    }
+
+    /** Reports the counters of the command args, which took wallNanos:
+     * prints a summary to standard error if print, and appends a JSON line
+     * to the file named by GITLET_STATS if it is set.
+     * @param args the command and its operands
+     * @param wallNanos the wall time of the command in nanoseconds
+     * @param print whether to print a summary
+     */
+    static void report(String[] args, long wallNanos, boolean print) {
+        if (print) {
+            System.err.print(summary(args, wallNanos));
+        }
+        String log = System.getenv(ENV);
+        if (log != null && !log.isEmpty()) {
+            String line = json(args, wallNanos, System.currentTimeMillis())
+                    + System.lineSeparator();
+            try {
+                Files.write(new File(log).toPath(),
+                        line.getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.err.println("IOException: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Appends s to out as a JSON string.
+     *
+     * @param out the builder
+     * @param s the string
+     */
+    private static void quote(StringBuilder out, String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i += 1) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /** Whether counting is on. */
+    private static volatile boolean enabled;
+    /** Count, bytes and nanoseconds of each phase, in order. */
+    private static AtomicLongArray counters =
+            new AtomicLongArray(Phase.values().length * 3);
+}
@@ -1,28 +1,53 @@
 package gitlet;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.io.Serializable;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 /** Class representing the commit tree structure of gitlet.
  * @author Megan Hu*/
 public class Tree implements Serializable {
 
-    /** The current working directory. */
-    private static String sysDir = System.getProperty("user.dir");
-
-    /** Constructor for the Tree class, initializing branches and
-     * the initial commit. */
-    Tree() {
-        branches = new HashMap<>();
-        Commit newComm = new Commit("", "", "initial commit",
-                new HashMap<String, String>(), new HashMap<String, String>());
-        Main.writeFile(".commits", newComm.getId(), newComm);
-        branches.put("master", newComm.getId());
+    /** Serial version of trees written before refs moved out of tree.bin. */
+    private static final long serialVersionUID = 5502074127671108488L;
+
+    /** Constructor for the Tree class of repository repo, initializing
+     * branches and the initial commit.
+     * @param repo the repository
+     */
+    Tree(Repository repo) {
+        this.repo = repo;
+        Commit newComm = new Commit(null, "", "initial commit",
+                new HashMap<String, String>(), new HashMap<String, String>(),
+                new Date(0));
+        repo.writeFile(".commits", newComm.getId(), newComm);
+        CommitMeta.write(repo, newComm);
+        MessageIndex.add(repo, newComm);
         currBranch = "master";
+        moveBranch(currBranch, newComm.getId(), "commit (initial): "
+                + newComm.getMessage());
+    }
+
+    /** Constructor for the tree of a repository whose commits and refs
+     * already exist, such as a clone, with branchName checked out.
+     * @param repo the repository
+     * @param branchName name of the current branch
+     */
+    Tree(Repository repo, String branchName) {
+        this.repo = repo;
+        currBranch = branchName;
     }
 
     /** Adds commit to this tree.
@@ -34,41 +59,56 @@ public class Tree implements Serializable {
     public void addCommit(String parent2, String message,
                           HashMap<String, String> toAdd,
                           HashMap<String, String> toRemove) {
-        Commit newComm = new Commit(getCurrBranchCommit().getId(), parent2,
-                message, toAdd, toRemove);
-        Main.writeFile(".commits", newComm.getId(), newComm);
+        addCommit(parent2, message, toAdd, toRemove, (parent2.equals("")
+                ? "commit: " : "commit (merge): ") + message);
+    }
 
-        ArrayList<Object> files = Main.readFiles(".stagedblobs");
+    /** Adds commit to this tree, describing the move of the branch in the
+     * reflog as reflogMessage.
+     * @param parent2 second parent if this commit is a merge commit
+     * @param message message of the commit
+     * @param toAdd blobs that are to be added for the commit
+     * @param toRemove blobs that are to be removed for the commit
+     * @param reflogMessage description of the move for the reflog
+     */
+    private void addCommit(String parent2, String message,
+                           HashMap<String, String> toAdd,
+                           HashMap<String, String> toRemove,
+                           String reflogMessage) {
+        Commit newComm = new Commit(getCurrBranchCommit(), parent2,
+                message, toAdd, toRemove, new Date());
+        repo.writeFile(".commits", newComm.getId(), newComm);
+        CommitMeta.write(repo, newComm);
+        MessageIndex.add(repo, newComm);
+
+        ArrayList<Object> files = repo.readFiles(".stagedblobs");
         for (Object file: files) {
             Blob temp = (Blob) file;
-            Main.writeFile(".blobs", temp.getHashValue(), temp);
-            Main.deleteFile(".stagedblobs", temp.getHashValue());
+            repo.writeFile(".blobs", temp.getHashValue(), temp);
+            repo.deleteFile(".stagedblobs", temp.getHashValue());
         }
 
-        branches.put(currBranch, newComm.getId());
-        Main.mainStage().setCurrentBlobs(getCurrBranchCommit());
-        Main.mainStage().clear();
+        moveBranch(currBranch, newComm.getId(), reflogMessage);
+        repo.stage().setCurrentBlobs(getCurrBranchCommit());
+        repo.stage().clear();
     }
 
-    /** Helper method for getting and formatting values for the status command.
-     *
-     * @return String representing the status of the tree
+    /** Helper method for the status command, printing the branches of
+     * this tree in sorted order as they are read from the refs.
      */
-    public String status() {
-        ArrayList<String> b = new ArrayList<>();
-        for (String branch: branches.keySet()) {
-            b.add(branch);
-        }
-        Collections.sort(b);
-        String ret = "";
-        for (String branch: b) {
+    public void status() {
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(repo.out())));
+        Refs.forEach(repo, Refs.HEADS, (ref, id) -> {
+            String branch = ref.substring(Refs.HEADS.length());
             if (branch.equals(currBranch)) {
-                ret += "*" + branch + "\n";
+                out.println("*" + branch);
             } else {
-                ret += branch + "\n";
+                out.println(branch);
             }
-        }
-        return ret;
+        });
+        out.println();
+        out.flush();
     }
 
     /** Helper method for getting and formatting values for the log command.
@@ -76,40 +116,249 @@ public class Tree implements Serializable {
      * @return String representing the log of this tree
      */
     public String log() {
-        String ret = "";
-        Commit currentCommit = getCurrBranchCommit();
-
-        ret += "===\n";
-        ret += "commit " + currentCommit.getId() + "\n";
-        if (currentCommit.getParent2() != null) {
-            ret += "Merge: " + currentCommit.getParent().substring(0, 7) + " "
-                    + currentCommit.getParent2().substring(0, 7) + "\n";
-        }
-        ret += "Date: " + currentCommit.getTimestamp() + "\n";
-        ret += currentCommit.getMessage() + "\n";
-        ret += "\n";
-        Commit c = currentCommit;
+        StringBuilder ret = new StringBuilder();
+        Commit c = getCurrBranchCommit();
+        logEntry(ret, c);
         while (!(c.getParent().equals(""))) {
-            Commit curr = (Commit) Main.readFile(".commits", c.getParent());
-            ret += "===\n";
-            ret += "commit " + curr.getId() + "\n";
-            if (curr.getParent2() != null) {
-                ret += "Merge: " + curr.getParent().substring(0, 7) + " "
-                        + curr.getParent2().substring(0, 7) + "\n";
+            c = (Commit) repo.readFile(".commits", c.getParent());
+            logEntry(ret, c);
+        }
+        return ret.substring(0, ret.length() - 1);
+    }
+
+    /** Helper method for the log --stat command, returning the log of the
+     * current branch with the files each commit added (A), modified (M),
+     * deleted (D), renamed (R) or copied (C) from its first parent listed
+     * after its message. Renames and copies carry the similarity of the
+     * two files in percent.
+     * @return String representing the log
+     */
+    public String logStat() {
+        StringBuilder ret = new StringBuilder();
+        Commit c = getCurrBranchCommit();
+        while (true) {
+            Commit parent = c.getParent().equals("") ? null
+                    : (Commit) repo.readFile(".commits", c.getParent());
+            logEntry(ret, c);
+            ret.setLength(ret.length() - 1);
+            List<String> stat = stat(parent == null ? Map.of()
+                    : parent.getBlobs(), c.getBlobs());
+            for (String line : stat) {
+                ret.append(" ").append(line).append("\n");
             }
-            ret += "Date: " + curr.getTimestamp() + "\n";
-            ret += curr.getMessage() + "\n";
-            ret += "\n";
-            c = (Commit) Main.readFile(".commits", c.getParent());
+            if (!stat.isEmpty()) {
+                ret.append(" ").append(stat.size()).append(stat.size() == 1
+                        ? " file changed\n" : " files changed\n");
+            }
+            ret.append("\n");
+            if (parent == null) {
+                break;
+            }
+            c = parent;
         }
         return ret.substring(0, ret.length() - 1);
     }
 
+    /** Returns a line for each file changed between the files of a commit,
+     * before, and those of its child, after, sorted by file name.
+     * @param before blob ids of the parent
+     * @param after blob ids of the child
+     * @return the lines
+     */
+    private List<String> stat(Map<String, String> before,
+                              Map<String, String> after) {
+        HashMap<String, String> deleted = new HashMap<>();
+        HashMap<String, String> modified = new HashMap<>();
+        for (Map.Entry<String, String> e : before.entrySet()) {
+            String blob = after.get(e.getKey());
+            if (blob == null) {
+                deleted.put(e.getKey(), e.getValue());
+            } else if (!blob.equals(e.getValue())) {
+                modified.put(e.getKey(), e.getValue());
+            }
+        }
+        HashMap<String, String> added = new HashMap<>();
+        for (Map.Entry<String, String> e : after.entrySet()) {
+            if (!before.containsKey(e.getKey())) {
+                added.put(e.getKey(), e.getValue());
+            }
+        }
+        TreeMap<String, String> lines = new TreeMap<>();
+        for (Renames.Rename r : Renames.detect(
+                Renames.signaturesOf(repo, deleted),
+                Renames.signaturesOf(repo, added),
+                Renames.signaturesOf(repo, modified))) {
+            lines.put(r.getTo(), r.toString());
+            added.remove(r.getTo());
+            if (!r.isCopy()) {
+                deleted.remove(r.getFrom());
+            }
+        }
+        for (String f : added.keySet()) {
+            lines.put(f, "A " + f);
+        }
+        for (String f : modified.keySet()) {
+            lines.put(f, "M " + f);
+        }
+        for (String f : deleted.keySet()) {
+            lines.put(f, "D " + f);
+        }
+        return new ArrayList<>(lines.values());
+    }
+
+    /** Helper method for the log -- FILE command, returning the log of the
+     * commits of the current branch that changed the file named fileName.
+     * Commits whose changed-path filter rules the file out are skipped
+     * without reading them.
+     * @param fileName name of the file
+     * @return String representing the log, empty if no commit matched
+     */
+    public String log(String fileName) {
+        StringBuilder ret = new StringBuilder();
+        String id = Refs.resolve(repo, Refs.head(currBranch));
+        Commit next = null;
+        while (!id.equals("")) {
+            CommitMeta meta = CommitMeta.read(repo, id);
+            if (meta != null && !meta.mightChange(fileName)) {
+                id = meta.getParent();
+                continue;
+            }
+            Commit c = next != null && next.getId().equals(id) ? next
+                    : (Commit) repo.readFile(".commits", id);
+            String parentBlob = null;
+            if (!c.getParent().equals("")) {
+                next = (Commit) repo.readFile(".commits", c.getParent());
+                parentBlob = next.getBlobs().get(fileName);
+            }
+            String blob = c.getBlobs().get(fileName);
+            if (blob == null ? parentBlob != null : !blob.equals(parentBlob)) {
+                logEntry(ret, c);
+            }
+            id = c.getParent();
+        }
+        return ret.length() == 0 ? "" : ret.substring(0, ret.length() - 1);
+    }
+
+    /** Helper method for the log -S command, returning the log of the
+     * commits of the current branch that changed the number of occurrences
+     * of text in some file, compared with their first parent. Only files
+     * whose blob ids differ are counted, each blob once however many
+     * commits share it. Each parent id is only known once its child has
+     * been read, so the chain is walked on this thread, but each commit is
+     * compared with its parent by a task of the common fork-join pool as
+     * soon as the parent is read, while the walk goes on.
+     * @param text the string searched for
+     * @return String representing the log, empty if no commit matched
+     */
+    public String logPickaxe(String text) {
+        ArrayList<Commit> commits = new ArrayList<>();
+        ArrayList<CompletableFuture<Boolean>> matched = new ArrayList<>();
+        ConcurrentHashMap<String, Integer> counts = new ConcurrentHashMap<>();
+        Commit c = getCurrBranchCommit();
+        while (c != null) {
+            Commit child = c;
+            c = child.getParent().equals("") ? null
+                    : (Commit) repo.readFile(".commits", child.getParent());
+            Map<String, String> before = c == null ? Map.of() : c.getBlobs();
+            commits.add(child);
+            matched.add(CompletableFuture.supplyAsync(() ->
+                    changesCount(repo, text, before, child.getBlobs(),
+                            counts), ForkJoinPool.commonPool()));
+        }
+        StringBuilder ret = new StringBuilder();
+        for (int i = 0; i < commits.size(); i += 1) {
+            if (matched.get(i).join()) {
+                logEntry(ret, commits.get(i));
+            }
+        }
+        return ret.length() == 0 ? "" : ret.substring(0, ret.length() - 1);
+    }
+
+    /** Returns whether some file changed between the files of a commit,
+     * before, and those of its child, after, holds text a different number
+     * of times in each.
+     * @param repo the repository
+     * @param text the string searched for
+     * @param before blob ids of the parent
+     * @param after blob ids of the child
+     * @param counts occurrences of text by blob id, filled in as blobs are
+     *               read
+     * @return true if a count changed
+     */
+    private static boolean changesCount(Repository repo, String text,
+                                        Map<String, String> before,
+                                        Map<String, String> after,
+                                        ConcurrentHashMap<String, Integer>
+                                                counts) {
+        for (Map.Entry<String, String> e : after.entrySet()) {
+            String old = before.get(e.getKey());
+            if (!e.getValue().equals(old) && count(repo, text, old, counts)
+                    != count(repo, text, e.getValue(), counts)) {
+                return true;
+            }
+        }
+        for (Map.Entry<String, String> e : before.entrySet()) {
+            if (!after.containsKey(e.getKey())
+                    && count(repo, text, e.getValue(), counts) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the number of non-overlapping occurrences of text in the blob
+     * with id id, or 0 if id is null. The blob is read and counted outside
+     * the map, so that threads counting other blobs are never blocked on
+     * its read; two threads may count the same blob at once, and the first
+     * count stored is kept.
+     * @param repo the repository
+     * @param text the string searched for
+     * @param id the id of the blob, or null
+     * @param counts occurrences of text by blob id
+     * @return the number of occurrences
+     */
+    private static int count(Repository repo, String text, String id,
+                             ConcurrentHashMap<String, Integer> counts) {
+        if (id == null) {
+            return 0;
+        }
+        Integer known = counts.get(id);
+        if (known != null) {
+            return known;
+        }
+        String content = ((Blob) repo.readFile(".blobs", id)).getContent();
+        int n = 0;
+        for (int i = content.indexOf(text); i >= 0;
+             i = content.indexOf(text, i + text.length())) {
+            n += 1;
+        }
+        known = counts.putIfAbsent(id, n);
+        return known == null ? n : known;
+    }
+
+    /** Appends the log entry of commit c to ret.
+     *
+     * @param ret the log so far
+     * @param c the commit
+     */
+    private void logEntry(StringBuilder ret, Commit c) {
+        ret.append("===\n");
+        ret.append("commit ").append(c.getId()).append("\n");
+        if (c.getParent2() != null) {
+            ret.append("Merge: ").append(c.getParent().substring(0, 7))
+                    .append(" ").append(c.getParent2().substring(0, 7))
+                    .append("\n");
+        }
+        ret.append("Date: ").append(c.getTimestamp()).append("\n");
+        ret.append(c.getMessage()).append("\n");
+        ret.append("\n");
+    }
+
     /** Helper method for getting and formatting values for the
      * global-log command.
      * @return String representing the global log of this tree*/
     public String globalLog() {
-        ArrayList com = Main.readFiles(".commits");
+        ArrayList<Object> com = repo.readFiles(".commits");
         String ret = "";
         for (Object commit: com) {
             Commit curr = (Commit) commit;
@@ -132,19 +381,27 @@ public class Tree implements Serializable {
      * @return String representing the commit with message message
      */
     public String find(String message) {
-        ArrayList com = Main.readFiles(".commits");
-        String ret = "";
-        for (Object commit: com) {
-            Commit curr = (Commit) commit;
-            if (curr.getMessage().equals(message)) {
-                ret += curr.getId();
-                ret += "\n";
-            }
+        if (MessageIndex.exists(repo)) {
+            return String.join("\n", MessageIndex.find(repo, message));
         }
-        if (ret.equals("")) {
-            return ret;
+        return String.join("\n", MessageIndex.scan(repo,
+                c -> c.getMessage().equals(message)));
+    }
+
+    /** Helper method for getting the String representing the commits whose
+     * message contains every word of query, ignoring case.
+     * @param query the words of the message
+     * @return String representing the matching commits
+     */
+    public String grep(String query) {
+        if (MessageIndex.exists(repo)) {
+            return String.join("\n", MessageIndex.grep(repo, query));
         }
-        return ret.substring(0, ret.length() - 1);
+        List<String> words = MessageIndex.words(query);
+        return String.join("\n", MessageIndex.scan(repo,
+                c -> !words.isEmpty()
+                        && MessageIndex.words(c.getMessage())
+                                .containsAll(words)));
     }
 
     /** Returns the latest commit associated with the current branch.
@@ -152,8 +409,16 @@ public class Tree implements Serializable {
      * @return the latest commit of the current branch
      */
     public Commit getCurrBranchCommit() {
-        String currCommitId = branches.get(currBranch);
-        return (Commit) Main.readFile(".commits", currCommitId);
+        String currCommitId = Refs.resolve(repo, Refs.head(currBranch));
+        return (Commit) repo.readFile(".commits", currCommitId);
+    }
+
+    /** Getter method for currBranch.
+     *
+     * @return the name of the current branch
+     */
+    public String getCurrBranch() {
+        return currBranch;
     }
 
     /** Helper method for the first case of checkout command, writing the
@@ -161,13 +426,13 @@ public class Tree implements Serializable {
      * @param fileName name of the file
      */
     public void checkoutFile(String fileName) {
-        HashMap<String, String> currBlobs = getCurrBranchCommit().getBlobs();
+        Map<String, String> currBlobs = getCurrBranchCommit().getBlobs();
         if (currBlobs.containsKey(fileName)) {
-            Blob toAdd = (Blob) Main.readFile(".blobs",
+            Blob toAdd = (Blob) repo.readFile(".blobs",
                     currBlobs.get(fileName));
-            Main.writeToCWD("", fileName, toAdd.getContent());
+            repo.writeToCWD("", fileName, toAdd.getContent());
         } else {
-            System.out.println("File does not exist in that commit.");
+            repo.out().println("File does not exist in that commit.");
         }
     }
 
@@ -178,18 +443,19 @@ public class Tree implements Serializable {
      * @param fileName name of the file
      * */
     public void checkoutCommit(String id, String fileName) {
-        if (commitExists(id).equals("")) {
-            System.out.println("No commit with that id exists.");
+        String fullId = commitExists(id);
+        if (fullId.equals("")) {
+            repo.out().println("No commit with that id exists.");
             return;
         }
-        Commit com = (Commit) Main.readFile(".commits", id);
-        HashMap<String, String> comBlobs = com.getBlobs();
+        Commit com = (Commit) repo.readFile(".commits", fullId);
+        Map<String, String> comBlobs = com.getBlobs();
         if (comBlobs.containsKey(fileName)) {
-            Blob toAdd = (Blob) Main.readFile(".blobs",
+            Blob toAdd = (Blob) repo.readFile(".blobs",
                     comBlobs.get(fileName));
-            Main.writeToCWD("", fileName, toAdd.getContent());
+            repo.writeToCWD("", fileName, toAdd.getContent());
         } else {
-            System.out.println("File does not exist in that commit.");
+            repo.out().println("File does not exist in that commit.");
         }
 
     }
@@ -201,8 +467,7 @@ public class Tree implements Serializable {
      * @return id of the commit if exists, else empty string
      */
     public String commitExists(String id) {
-        Path path = Paths.get(System.getProperty("user.dir"), ".commits");
-        ArrayList files = Main.readFiles(".commits");
+        ArrayList<Object> files = repo.readFiles(".commits");
 
         for (Object file: files) {
             Commit curr = (Commit) file;
@@ -219,43 +484,46 @@ public class Tree implements Serializable {
      * @param branchName name of the branch
      * */
     public void checkoutBranch(String branchName) {
-        if (!branches.containsKey(branchName)) {
-            System.out.println("No such branch exists.");
+        String givenId = Refs.resolve(repo, Refs.head(branchName));
+        if (givenId == null) {
+            repo.out().println("No such branch exists.");
             return;
         }
         if (branchName.equals(currBranch)) {
-            System.out.println("No need to checkout the current branch.");
+            repo.out().println("No need to checkout the current branch.");
             return;
         }
-        Commit givenCommit = (Commit)
-                Main.readFile(".commits", branches.get(branchName));
-        HashMap<String, String> givenBlobs = givenCommit.getBlobs();
+        Commit givenCommit = (Commit) repo.readFile(".commits", givenId);
+        Map<String, String> givenBlobs = givenCommit.getBlobs();
 
-        Main.mainStage().check();
-        HashMap<String, String> untracked = Main.mainStage().getUntracked();
+        repo.stage().check();
+        HashMap<String, String> untracked = repo.stage().getUntracked();
         if (!untracked.isEmpty()) {
-            for (Map.Entry file : untracked.entrySet()) {
-                String f = (String) file.getKey();
+            for (Map.Entry<String, String> file : untracked.entrySet()) {
+                String f = file.getKey();
                 if (givenBlobs.containsKey(f)) {
-                    System.out.println("There is an untracked file in the way;"
+                    repo.out().println("There is an untracked file in the way;"
                             + " delete it, or add and commit it first.");
                     return;
                 }
             }
         }
-        for (Map.Entry key: getCurrBranchCommit().getBlobs().entrySet()) {
-            String k = (String) key.getKey();
-            Main.deleteCWDFile("", k);
+        Map<String, String> sparseBlobs = Sparse.load(repo).filter(givenBlobs);
+        PartialClone.prefetch(repo, sparseBlobs.values());
+        for (String k : getCurrBranchCommit().getBlobs().keySet()) {
+            repo.deleteCWDFile("", k);
         }
 
-        for (String key : givenBlobs.keySet()) {
-            String content = ((Blob) Main.readFile(".blobs",
-                    givenBlobs.get(key))).getContent();
-            Main.writeToCWD("", key, content);
+        for (String key : sparseBlobs.keySet()) {
+            String content = ((Blob) repo.readFile(".blobs",
+                    sparseBlobs.get(key))).getContent();
+            repo.writeToCWD("", key, content);
         }
+        Reflog.append(repo, Reflog.HEAD, getCurrBranchCommit().getId(), givenId,
+                "checkout: moving from " + currBranch + " to " + branchName);
         currBranch = branchName;
-        Main.mainStage().setCurrentBlobs(givenCommit);
-        Main.mainStage().clear();
+        repo.stage().setCurrentBlobs(givenCommit);
+        repo.stage().clear();
     }
 
     /** Creates a new branch with name branchName.
@@ -263,10 +531,13 @@ public class Tree implements Serializable {
      * @param branchName name of the branch
      */
     public void branch(String branchName) {
-        if (!branches.containsKey(branchName)) {
-            branches.put(branchName, branches.get(currBranch));
+        if (!Refs.exists(repo, Refs.head(branchName))) {
+            String id = Refs.resolve(repo, Refs.head(currBranch));
+            Refs.update(repo, Refs.head(branchName), id);
+            Reflog.append(repo, Refs.head(branchName), null, id,
+                    "branch: Created from " + currBranch);
         } else {
-            System.out.println("A branch with that name already exists.");
+            repo.out().println("A branch with that name already exists.");
         }
     }
 
@@ -275,12 +546,13 @@ public class Tree implements Serializable {
      * @param branchName name of the branch
      */
     public void rmBranch(String branchName) {
-        if (!branches.containsKey(branchName)) {
-            System.out.println("A branch with that name does not exist.");
+        if (!Refs.exists(repo, Refs.head(branchName))) {
+            repo.out().println("A branch with that name does not exist.");
         } else if (currBranch.equals(branchName)) {
-            System.out.println("Cannot remove the current branch.");
+            repo.out().println("Cannot remove the current branch.");
         } else {
-            branches.remove(branchName);
+            Refs.delete(repo, Refs.head(branchName));
+            Reflog.delete(repo, Refs.head(branchName));
         }
     }
 
@@ -290,27 +562,120 @@ public class Tree implements Serializable {
      * @param commit string representing the commit
      * */
     public void reset(String commit) {
-        if (commitExists(commit).equals("")) {
-            System.out.println("No commit with that id exists.");
+        String id = commitExists(commit);
+        if (id.equals("")) {
+            repo.out().println("No commit with that id exists.");
             return;
         }
-        Commit com = (Commit) Main.readFile(".commits", commit);
-        HashMap<String, String> comBlobs = com.getBlobs();
+        checkoutAll(id, "reset: moving to " + commit);
+    }
+
+    /** Checks out all files tracked by the commit with id id, removing
+     * tracked files it does not have, and moves the current branch to it.
+     * @param id id of the commit
+     * @param message description of the move for the reflog
+     * @return false if an untracked file was in the way
+     */
+    private boolean checkoutAll(String id, String message) {
+        Commit com = (Commit) repo.readFile(".commits", id);
+        Map<String, String> comBlobs = com.getBlobs();
         HashMap<String, String> currUntracked =
-                Main.mainStage().getUntracked();
+                repo.stage().getUntracked();
         if (!currUntracked.isEmpty()) {
             for (String file: currUntracked.keySet()) {
                 if (comBlobs.containsKey(file)) {
-                    System.out.println("There is an untracked file in the "
+                    repo.out().println("There is an untracked file in the "
                             + "way; delete it, or add and commit it first.");
-                    return;
+                    return false;
                 }
             }
         }
-        for (String fileName: comBlobs.keySet()) {
-            String[] args = ("checkout " + commit + " -- " + fileName)
-                    .split(" ");
-            Main.runCommands(args);
+        Map<String, String> sparseBlobs = Sparse.load(repo).filter(comBlobs);
+        PartialClone.prefetch(repo, sparseBlobs.values());
+        for (String fileName: getCurrBranchCommit().getBlobs().keySet()) {
+            if (!comBlobs.containsKey(fileName)) {
+                repo.deleteCWDFile("", fileName);
+            }
+        }
+        for (Map.Entry<String, String> e : sparseBlobs.entrySet()) {
+            Blob b = (Blob) repo.readFile(".blobs", e.getValue());
+            repo.writeToCWD("", e.getKey(), b.getContent());
+        }
+        moveBranch(currBranch, id, message);
+        repo.stage().setCurrentBlobs(com);
+        return true;
+    }
+
+    /** Prints the number of commits and blobs reachable from the head of
+     * the branch named branchName.
+     * @param branchName name of the branch
+     */
+    public void countObjects(String branchName) {
+        String id = Refs.resolve(repo, Refs.head(branchName));
+        if (id == null) {
+            repo.out().println("A branch with that name does not exist.");
+            return;
+        }
+        long[] counts = BitmapIndex.count(repo, id);
+        repo.out().println(counts[0] + " commits, " + counts[1] + " blobs");
+    }
+
+    /** Points the branch named branchName at commit id, recording the move
+     * in the reflog of the branch and, if it is the current branch, of HEAD.
+     * @param branchName name of the branch
+     * @param id id of the commit
+     * @param message description of the move
+     */
+    private void moveBranch(String branchName, String id, String message) {
+        String ref = Refs.head(branchName);
+        String oldId = Refs.resolve(repo, ref);
+        Refs.update(repo, ref, id);
+        Reflog.append(repo, ref, oldId, id, message);
+        if (branchName.equals(currBranch)) {
+            Reflog.append(repo, Reflog.HEAD, oldId, id, message);
+        }
+    }
+
+    /** Returns the commit id that rev names. rev is either an abbreviated
+     * or full commit id, or REF@{N}, the commit REF pointed to N moves ago,
+     * where REF is a branch, HEAD, or empty for the current branch.
+     * @param rev the revision
+     * @return the commit id, rev itself if it is not of the form REF@{N},
+     * or null if the reflog of REF has fewer than N + 1 entries or N is
+     * too large to be an index
+     */
+    public String resolveRevision(String rev) {
+        Matcher m = REFLOG_REV.matcher(rev);
+        if (!m.matches()) {
+            return rev;
+        }
+        String name = m.group(1);
+        String ref;
+        if (name.equals(Reflog.HEAD)) {
+            ref = Reflog.HEAD;
+        } else if (name.equals("")) {
+            ref = Refs.head(currBranch);
+        } else {
+            ref = Refs.head(name);
+        }
+        try {
+            return Reflog.nth(repo, ref, Integer.parseInt(m.group(2)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Prints the reflog of the branch named branchName, or of HEAD.
+     *
+     * @param branchName name of the branch, or HEAD
+     */
+    public void reflog(String branchName) {
+        if (branchName.equals(Reflog.HEAD)) {
+            Reflog.print(repo, Reflog.HEAD, Reflog.HEAD);
+        } else if (!Refs.exists(repo, Refs.head(branchName))) {
+            repo.out().println("A branch with that name does not exist.");
+        } else {
+            Reflog.print(repo, Refs.head(branchName), branchName);
         }
     }
 
@@ -320,186 +685,296 @@ public class Tree implements Serializable {
      * @param mainStage the mainStage
      */
     public void merge(String branchName, Stage mainStage) {
+        merge(branchName, mainStage, false);
+    }
+
+    /** Helper method for implementing the merge command, merging files
+     * from branch branchName into the current branch, or, if dryRun,
+     * printing what the merge would do without doing it. The merge is
+     * computed in memory by MergeEngine and written to the working
+     * directory and stage only once it is known to be possible.
+     * @param branchName name of the branch
+     * @param mainStage the mainStage
+     * @param dryRun whether to only print what the merge would do
+     */
+    public void merge(String branchName, Stage mainStage, boolean dryRun) {
         if (!mainStage.getStagedAdded().isEmpty()
                 || !mainStage.getStagedRemoved().isEmpty()) {
-            System.out.println("You have uncommitted changes.");
+            repo.out().println("You have uncommitted changes.");
             return;
         }
-        if (!branches.containsKey(branchName)) {
-            System.out.println("A branch with that name does not exist.");
+        String givenId = Refs.resolve(repo, Refs.head(branchName));
+        if (givenId == null) {
+            repo.out().println("A branch with that name does not exist.");
             return;
         }
         if (branchName.equals(currBranch)) {
-            System.out.println("Cannot merge a branch with itself.");
+            repo.out().println("Cannot merge a branch with itself.");
             return;
         }
-        Commit com = (Commit) Main.readFile(".commits",
-                branches.get(branchName));
-        Commit splitPoint = getSplitPoint(branchName, com);
+        Commit com = (Commit) repo.readFile(".commits", givenId);
+        Commit splitPoint = getSplitPoint(branchName, com, dryRun);
         if (splitPoint == null) {
             return;
         }
+        MergeEngine.Result result = MergeEngine.merge(repo,
+                getCurrBranchCommit(), com, splitPoint);
+        if (untrackedInTheWay(result)) {
+            return;
+        }
+        if (dryRun) {
+            printMerge(branchName, result);
+        } else {
+            String mess = "Merged " + branchName + " into " + currBranch + ".";
+            applyMerge(result, com.getId(), mess, "commit (merge): " + mess);
+        }
+    }
 
-        HashMap<String, String> comBlobs = com.getBlobs();
-        HashMap<String, String> splitPointBlobs = splitPoint.getBlobs();
-        HashMap<String, String> currBlobs = getCurrBranchCommit().getBlobs();
-        HashMap<String, String> removedBlobs = new HashMap<String, String>();
-        HashMap<String, String> addBlobs = new HashMap<String, String>();
-        HashMap<String, String> conflictFiles = new HashMap<String, String>();
-
-        Main.writeFile("", ".temp_stage", Main.mainStage());
-        Main.mainStage().check();
-        updateCWDStage(comBlobs, splitPointBlobs, currBlobs, removedBlobs,
-                addBlobs, conflictFiles, com);
-
-        HashMap<String, String> untrack = Main.mainStage().getUntracked();
-        if (!untrack.isEmpty()) {
-            for (String file : untrack.keySet()) {
-                if (addBlobs.containsKey(file)
-                        || removedBlobs.keySet().contains(file)) {
-                    System.out.println("There is an untracked file in the way;"
-                            + " delete it, or add and commit it first.");
-                    Main.setStage((Stage) Main.readFile("",
-                            ".temp_stage"));
-                    Main.deleteFile(sysDir, ".temp_stage");
-                    return;
-                }
+    /** Returns whether a file that result would write is untracked in the
+     * working directory, printing a message if so.
+     * @param result the merge
+     * @return true if an untracked file is in the way
+     */
+    private boolean untrackedInTheWay(MergeEngine.Result result) {
+        Map<String, String> currBlobs = result.getOurs().getBlobs();
+        ArrayList<String> written = new ArrayList<>(result.changed().keySet());
+        written.addAll(result.conflicts().keySet());
+        for (String file : written) {
+            if (!currBlobs.containsKey(file)
+                    && Utils.join(repo.root(), file).isFile()) {
+                repo.out().println("There is an untracked file in the way;"
+                        + " delete it, or add and commit it first.");
+                return true;
             }
         }
-        for (Object key: currBlobs.keySet()) {
-            String k = (String) key;
-            if (splitPointBlobs.containsKey(k) && !comBlobs.containsKey(key)) {
-                if (currBlobs.get(k).equals(splitPointBlobs.get(k))) {
-                    Main.deleteCWDFile("", k);
-                }
+        return false;
+    }
+
+    /** Writes result to the working directory, and commits it with the
+     * given second parent and message if it has no conflicts. Otherwise
+     * stages the files that merged cleanly.
+     * @param result the merge
+     * @param parent2 id of the second parent of the commit, or ""
+     * @param message message of the commit
+     * @param reflogMessage description of the commit for the reflog
+     */
+    private void applyMerge(MergeEngine.Result result, String parent2,
+                            String message, String reflogMessage) {
+        for (Blob b : result.newBlobs()) {
+            repo.writeFile(".blobs", b.getHashValue(), b);
+        }
+        Sparse sparse = Sparse.load(repo);
+        for (Map.Entry<String, String> e : result.changed().entrySet()) {
+            if (result.isClean() && !sparse.includes(e.getKey())) {
+                continue;
             }
+            Blob b = (Blob) repo.readFile(".blobs", e.getValue());
+            repo.writeToCWD("", e.getKey(), b.getContent());
+        }
+        for (String file : result.removed().keySet()) {
+            repo.deleteCWDFile("", file);
+        }
+        for (Map.Entry<String, String> e : result.conflicts().entrySet()) {
+            repo.writeToCWD("", e.getKey(), e.getValue());
+        }
+        HashMap<String, String> added = new HashMap<>(result.changed());
+        HashMap<String, String> removed = new HashMap<>(result.removed());
+        if (result.isClean()) {
+            addCommit(parent2, message, added, removed, reflogMessage);
+        } else {
+            repo.stage().postMerge(added, removed,
+                    new HashMap<>(result.conflicts()));
+            repo.out().println("Encountered a merge conflict.");
         }
-        Main.mainStage().postMerge(addBlobs, removedBlobs, conflictFiles);
-        mergeLatter(conflictFiles, addBlobs, removedBlobs, branchName, com);
     }
 
-    /** Helper method to help with merge's length.
-     *
-     * @param conflictFiles conflict files
-     * @param addBlobs blobs to add
-     * @param removedBlobs blobs to remove
-     * @param branchName branch name
-     * @param com commit
-     */
-    public void mergeLatter(HashMap<String, String> conflictFiles,
-                            HashMap<String, String> addBlobs,
-                            HashMap<String, String> removedBlobs,
-                            String branchName, Commit com) {
-        if (conflictFiles.isEmpty()) {
-            String mess = "Merged " + branchName + " into " + currBranch + ".";
-            addCommit(com.getId(), mess, addBlobs, removedBlobs);
-        } else {
-            ArrayList<String> cwd = Main.listDirFiles("");
-            for (String f: cwd) {
-                if (conflictFiles.containsKey(f)) {
-                    Main.writeToCWD("", f, (String) (conflictFiles.get(f)));
-                }
-            }
-            System.out.println("Encountered a merge conflict.");
-        }
-    }
-
-    /**Updates the current working directory and stage, updating the HashMaps
-     * given for use in the merge function.
-     * @param comBlobs blobs of the given commit
-     * @param splitPointBlobs blobs of the split point commit
-     * @param currBlobs blobs of the current commit
-     * @param removedBlobs blobs that will be removed
-     * @param addBlobs blobs that will be added
-     * @param conflictFiles blobs that are in conflict
-     * @param com the commit
-     */
-    private void updateCWDStage(HashMap<String, String> comBlobs,
-                                HashMap<String, String> splitPointBlobs,
-                                HashMap<String, String> currBlobs,
-                                HashMap<String, String> removedBlobs,
-                                HashMap<String, String> addBlobs,
-                                HashMap<String, String> conflictFiles,
-                                Commit com) {
-        for (Object c: currBlobs.keySet()) {
-            String k = (String) c;
-            if (!comBlobs.containsKey(k) && !splitPointBlobs.containsKey(k)) {
-                addBlobs.put(k, currBlobs.get(k));
-            }
-            if (!comBlobs.containsKey(k) && splitPointBlobs.containsKey(k)) {
-                if (currBlobs.get(k).equals(splitPointBlobs.get(k))) {
-                    removedBlobs.put(k, comBlobs.get(k));
-                }
-            }
-            if (!comBlobs.containsKey(k) && currBlobs.containsKey(k)
-                    && splitPointBlobs.containsKey(k)) {
-                if (!splitPointBlobs.get(k).equals(currBlobs.get(k))) {
-                    writeConflictFile(currBlobs, comBlobs, conflictFiles, k);
-                }
+    /** Helper method for the cherry-pick command, applying the changes
+     * the commit with id id made to its parent on top of the current
+     * branch as a new commit with its message.
+     * @param id id of the commit
+     * @param mainStage the mainStage
+     */
+    public void cherryPick(String id, Stage mainStage) {
+        if (!mainStage.getStagedAdded().isEmpty()
+                || !mainStage.getStagedRemoved().isEmpty()) {
+            repo.out().println("You have uncommitted changes.");
+            return;
+        }
+        Commit com = (Commit) repo.readFile(".commits", id);
+        if (com.getParent().equals("")) {
+            repo.out().println("Cannot cherry-pick the initial commit.");
+            return;
+        }
+        Commit parent = (Commit) repo.readFile(".commits", com.getParent());
+        MergeEngine.Result result = MergeEngine.merge(repo,
+                getCurrBranchCommit(), com, parent);
+        if (result.changed().isEmpty() && result.removed().isEmpty()
+                && result.conflicts().isEmpty()) {
+            repo.out().println("No changes added to the commit.");
+            return;
+        }
+        if (untrackedInTheWay(result)) {
+            return;
+        }
+        applyMerge(result, "", com.getMessage(),
+                "cherry-pick: " + com.getMessage());
+    }
+
+    /** Helper method for the rebase command, replaying the commits of the
+     * current branch since its split point with branch branchName on top
+     * of that branch's head, and moving the current branch to the last of
+     * them. Each commit is replayed by merging it into the previous
+     * replayed commit against its own parent, entirely in memory; the
+     * commits are written and the working directory updated only once all
+     * of them have replayed without conflicts. Commits whose changes are
+     * already in the branch are dropped.
+     * @param branchName name of the branch
+     * @param mainStage the mainStage
+     */
+    public void rebase(String branchName, Stage mainStage) {
+        if (!mainStage.getStagedAdded().isEmpty()
+                || !mainStage.getStagedRemoved().isEmpty()) {
+            repo.out().println("You have uncommitted changes.");
+            return;
+        }
+        String ontoId = Refs.resolve(repo, Refs.head(branchName));
+        if (ontoId == null) {
+            repo.out().println("A branch with that name does not exist.");
+            return;
+        }
+        if (branchName.equals(currBranch)) {
+            repo.out().println("Cannot rebase a branch onto itself.");
+            return;
+        }
+        Commit head = getCurrBranchCommit();
+        if (BitmapIndex.isAncestor(repo, ontoId, head.getId())) {
+            repo.out().println("Current branch is up to date.");
+            return;
+        }
+        if (BitmapIndex.isAncestor(repo, head.getId(), ontoId)) {
+            if (checkoutAll(ontoId, "rebase: fast-forward to " + branchName)) {
+                repo.out().println("Current branch fast-forwarded.");
             }
+            return;
         }
-        for (String k: comBlobs.keySet()) {
-            if (currBlobs.containsKey(k) && splitPointBlobs.containsKey(k)) {
-                if (splitPointBlobs.get(k).equals(currBlobs.get(k))) {
-                    addBlobs.put(k, comBlobs.get(k));
-                } else if (!splitPointBlobs.get(k).equals(currBlobs.get(k))) {
-                    addBlobs.put(k, splitPointBlobs.get(k));
-                }
+        Commit onto = (Commit) repo.readFile(".commits", ontoId);
+        Commit base = MergeEngine.base(repo, head, onto);
+        ArrayList<Commit> todo = new ArrayList<>();
+        for (Commit c = head; !c.getId().equals(base.getId())
+                && !c.getParent().equals("");
+                c = (Commit) repo.readFile(".commits", c.getParent())) {
+            todo.add(c);
+        }
+        Collections.reverse(todo);
+
+        Commit tip = onto;
+        Commit parent = base;
+        ArrayList<Commit> replayed = new ArrayList<>();
+        ArrayList<Blob> newBlobs = new ArrayList<>();
+        for (Commit c : todo) {
+            MergeEngine.Result r = MergeEngine.merge(repo, tip, c, parent);
+            parent = c;
+            if (!r.isClean()) {
+                repo.out().println("Could not replay " + c.getId()
+                        + " (" + c.getMessage() + "): merge conflict in "
+                        + String.join(", ", r.conflicts().keySet()) + ".");
+                repo.out().println("Nothing was changed.");
+                return;
             }
-            if (!currBlobs.containsKey(k) && !splitPointBlobs.containsKey(k)) {
-                checkoutCommit(com.getId(), k);
-                addBlobs.put(k, comBlobs.get(k));
+            if (r.changed().isEmpty() && r.removed().isEmpty()) {
+                continue;
             }
-            if (splitPointBlobs.containsKey(k) && currBlobs.containsKey(k)) {
-                if (!currBlobs.get(k).equals(comBlobs.get(k))
-                        && !comBlobs.get(k).equals(splitPointBlobs.get(k))
-                        && !currBlobs.get(k).equals(splitPointBlobs.get(k))) {
-                    writeConflictFile(currBlobs, comBlobs, conflictFiles, k);
-                }
+            newBlobs.addAll(r.newBlobs());
+            tip = new Commit(tip, "", c.getMessage(),
+                    new HashMap<>(r.changed()), new HashMap<>(r.removed()),
+                    new Date());
+            replayed.add(tip);
+        }
+
+        Map<String, String> headBlobs = head.getBlobs();
+        for (String file : tip.getBlobs().keySet()) {
+            if (!headBlobs.containsKey(file)
+                    && Utils.join(repo.root(), file).isFile()) {
+                repo.out().println("There is an untracked file in the way;"
+                        + " delete it, or add and commit it first.");
+                return;
             }
-            if (currBlobs.containsKey(k) && !splitPointBlobs.containsKey(k)) {
-                if (!comBlobs.get(k).equals(currBlobs.get(k))) {
-                    writeConflictFile(currBlobs, comBlobs, conflictFiles, k);
-                }
+        }
+        for (Blob b : newBlobs) {
+            repo.writeFile(".blobs", b.getHashValue(), b);
+        }
+        for (Commit c : replayed) {
+            repo.writeFile(".commits", c.getId(), c);
+            CommitMeta.write(repo, c);
+        }
+        if (MessageIndex.exists(repo)) {
+            MessageIndex.addAll(repo, replayed);
+        }
+        writeChanges(headBlobs, tip.getBlobs());
+        moveBranch(currBranch, tip.getId(), "rebase: onto " + branchName);
+        mainStage.setCurrentBlobs(tip);
+        mainStage.clear();
+        repo.out().println("Replayed " + replayed.size() + " of "
+                + todo.size() + " commits onto " + branchName + ".");
+    }
+
+    /** Updates the working directory from the files of one commit, from,
+     * to those of another, to, writing only the files that differ.
+     * @param from the files of the commit the directory holds
+     * @param to the files of the commit to check out
+     */
+    private void writeChanges(Map<String, String> from,
+                              Map<String, String> to) {
+        for (String file : from.keySet()) {
+            if (!to.containsKey(file)) {
+                repo.deleteCWDFile("", file);
             }
-            if (!currBlobs.containsKey(k) && comBlobs.containsKey(k)
-                    && splitPointBlobs.containsKey(k)) {
-                if (!comBlobs.get(k).equals(splitPointBlobs.get(k))) {
-                    writeConflictFile(currBlobs, comBlobs, conflictFiles, k);
-                }
+        }
+        Sparse sparse = Sparse.load(repo);
+        for (Map.Entry<String, String> e : to.entrySet()) {
+            if (!e.getValue().equals(from.get(e.getKey()))
+                    && sparse.includes(e.getKey())) {
+                Blob b = (Blob) repo.readFile(".blobs", e.getValue());
+                repo.writeToCWD("", e.getKey(), b.getContent());
             }
         }
     }
 
-    /** Creates the conflict file with file k in currBlobs and comBlobs,
-     * for use in the merge function.
-     * @param currBlobs the current commit's blobs
-     * @param comBlobs blobs of the given commit
-     * @param conflictFiles blobs that are in conflict
-     * @param k the file name
+    /** Prints what merging branch branchName into the current branch
+     * would do: each file it would add (A), modify (M) or remove (D), and
+     * each that would conflict (C), with the old name of a file followed
+     * across a rename.
+     * @param branchName name of the branch
+     * @param result the merge
      */
-    public void writeConflictFile(HashMap<String, String> currBlobs,
-                                  HashMap<String, String> comBlobs,
-                                  HashMap<String, String> conflictFiles,
-                                  String k) {
-        String message = "<<<<<<< HEAD" + "\n";
-        if (!currBlobs.containsKey(k)) {
-            message += "";
-        } else {
-            Blob curr = (Blob) Main.readFile(".blobs",
-                    (String) currBlobs.get(k));
-            message += curr.getContent();
+    private void printMerge(String branchName, MergeEngine.Result result) {
+        Map<String, String> currBlobs = result.getOurs().getBlobs();
+        TreeMap<String, String> lines = new TreeMap<>();
+        for (String file : result.changed().keySet()) {
+            lines.put(file, currBlobs.containsKey(file) ? "M " : "A ");
+        }
+        for (String file : result.removed().keySet()) {
+            lines.put(file, "D ");
+        }
+        for (String file : result.conflicts().keySet()) {
+            lines.put(file, "C ");
+        }
+        for (Renames.Rename r : result.renames()) {
+            lines.put(r.getTo(), lines.getOrDefault(r.getTo(), "M ")
+                    + r.getFrom() + " -> ");
+        }
+        repo.out().println("=== Merge " + branchName + " into " + currBranch
+                + " ===");
+        repo.out().println("Split point: " + result.getBase().getId());
+        for (Map.Entry<String, String> e : lines.entrySet()) {
+            repo.out().println(e.getValue() + e.getKey());
         }
-        message += "=======" + "\n";
-        if (!comBlobs.containsKey(k)) {
-            message += "";
+        repo.out().println();
+        if (result.isClean()) {
+            repo.out().println("Merge would succeed.");
         } else {
-            Blob given = (Blob) Main.readFile(".blobs",
-                    (String) comBlobs.get(k));
-            message += given.getContent();
+            repo.out().println("Merge would encounter a merge conflict.");
         }
-        message += ">>>>>>>\n";
-        conflictFiles.put(k, message);
     }
 
     /** Gets the split point for branch branchName and the current branch,
@@ -509,31 +984,88 @@ public class Tree implements Serializable {
      * @return the split point commit
      */
     public Commit getSplitPoint(String branchName, Commit comm) {
-        Commit splitPoint = getCurrBranchCommit().findSplit(comm);
-        if (splitPoint.equals(comm)) {
-            System.out.println("Given branch is an ancestor of the current "
+        return getSplitPoint(branchName, comm, false);
+    }
+
+    /** Gets the split point for branch branchName and the current branch,
+     * taking into account special cases; if dryRun, a fast-forward is
+     * reported but not done.
+     * @param  branchName name of the branch
+     * @param comm the commit
+     * @param dryRun whether to leave a fast-forward undone
+     * @return the split point commit
+     */
+    public Commit getSplitPoint(String branchName, Commit comm,
+                                boolean dryRun) {
+        Events.MergeBase event = new Events.MergeBase();
+        event.begin();
+        Commit curr = getCurrBranchCommit();
+        Commit ret = findSplitPoint(branchName, curr, comm, dryRun);
+        if (event.shouldCommit()) {
+            event.ours = curr.getId();
+            event.theirs = comm.getId();
+            event.base = ret == null ? "" : ret.getId();
+            event.commit();
+        }
+        return ret;
+    }
+
+    /** Returns the split point for branch branchName, whose head is comm,
+     * and the current branch, whose head is curr, or null after handling
+     * the cases where one is an ancestor of the other.
+     * @param  branchName name of the branch
+     * @param curr the head of the current branch
+     * @param comm the commit
+     * @param dryRun whether to report a fast-forward rather than do it
+     * @return the split point commit, or null
+     */
+    private Commit findSplitPoint(String branchName, Commit curr,
+                                  Commit comm, boolean dryRun) {
+        if (BitmapIndex.isAncestor(repo, comm.getId(), curr.getId())) {
+            repo.out().println("Given branch is an ancestor of the current "
                     + "branch.");
             return null;
         }
-        if (splitPoint.equals(getCurrBranchCommit())) {
-            currBranch = branchName;
-            System.out.println("Current branch fast-forwarded.");
+        if (BitmapIndex.isAncestor(repo, curr.getId(), comm.getId())) {
+            if (dryRun) {
+                repo.out().println("Current branch would be "
+                        + "fast-forwarded.");
+            } else if (checkoutAll(comm.getId(),
+                    "merge " + branchName + ": Fast-forward")) {
+                repo.stage().clear();
+                repo.out().println("Current branch fast-forwarded.");
+            }
             return null;
         }
-        if (splitPoint == null) {
-            Commit initialCom = getCurrBranchCommit();
-            while (initialCom.getParent() != null) {
-                initialCom = (Commit) Main.readFile(".commits",
-                        initialCom.getParent());
+        return MergeEngine.base(repo, curr, comm);
+    }
+
+    /** Pattern of a revision naming a reflog entry, REF@{N}. */
+    private static final Pattern REFLOG_REV =
+            Pattern.compile("(.*)@\\{(\\d+)\\}");
+
+    /** Makes repo the repository of a tree read from its tree.bin, moving
+     * the branches of a tree.bin written before refs were stored on their
+     * own into loose refs.
+     * @param repo the repository
+     */
+    void setRepository(Repository repo) {
+        this.repo = repo;
+        if (branches != null) {
+            for (Map.Entry<String, String> b : branches.entrySet()) {
+                if (!Refs.exists(repo, Refs.head(b.getKey()))) {
+                    Refs.update(repo, Refs.head(b.getKey()), b.getValue());
+                }
             }
-            splitPoint = initialCom;
+            branches = null;
         }
-        return splitPoint;
     }
 
-    /** HashMap representing the branches of the tree,
-     * mapping branch names to its contents. */
+    /** Branches of a tree written before refs moved out of tree.bin; only
+     * read for migration and always null afterwards. */
     private HashMap<String, String> branches;
     /** String representing the current branch of the tree. */
     private String currBranch;
+    /** The repository this tree belongs to. */
+    private transient Repository repo;
 }
@@ -12,7 +12,11 @@ public class UnitTest {
     /** Run the JUnit tests in the loa package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(UnitTest.class));
+        System.exit(textui.runClasses(UnitTest.class,
+                BloomFilterTest.class, PersistentMapTest.class,
+                RepositoryTest.class, ServerTest.class,
+                MergeEngineTest.class, RenamesTest.class,
+                RemoteTest.class));
     }
 
     /** A dummy test to avoid complaint. */
@@ -32,13 +32,18 @@ class Utils {
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
+        long start = Stats.start();
+        long bytes = 0;
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-1");
             for (Object val : vals) {
                 if (val instanceof byte[]) {
                     md.update((byte[]) val);
+                    bytes += ((byte[]) val).length;
                 } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+                    byte[] b = ((String) val).getBytes(StandardCharsets.UTF_8);
+                    md.update(b);
+                    bytes += b.length;
                 } else {
                     throw new IllegalArgumentException("improper type to sha1");
                 }
@@ -47,6 +52,7 @@ class Utils {
             for (byte b : md.digest()) {
                 result.format("%02x", b);
             }
+            Stats.record(Stats.Phase.HASH, bytes, start);
             return result.toString();
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
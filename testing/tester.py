@@ -1,11 +1,17 @@
-import sys, re
+import sys, re, json, time
 from subprocess import \
-     check_output, PIPE, STDOUT, DEVNULL, CalledProcessError, TimeoutExpired
+     check_output, Popen, PIPE, STDOUT, DEVNULL, CalledProcessError, \
+     TimeoutExpired
 from os.path import abspath, basename, dirname, exists, join, splitext
 from getopt import getopt, GetoptError
 from os import chdir, environ, getcwd, mkdir, remove, access, W_OK
 from shutil import copyfile, rmtree
 from math import log
+from threading import Timer
+try:
+    from os import wait4, waitstatus_to_exitcode
+except ImportError:
+    wait4 = None
 
 SHORT_USAGE = """\
 Usage: python3 tester.py OPTIONS TEST.in ...
@@ -22,6 +28,19 @@ Usage: python3 tester.py OPTIONS TEST.in ...
        --tolerance=N  Set the maximum allowed edit distance between program
                       output and expected output to N (default 3).
        --verbose      Print extra information about execution.
+       --perf         Record the wall time and peak memory of every gitlet
+                      command and compare them against a baseline.
+       --baseline=FILE
+                      Baseline for --perf (default perf/baseline.json).
+       --update-baseline
+                      With --perf, write the measurements to the baseline
+                      instead of comparing.
+       --repeat=N     With --perf, run each test N times and keep the
+                      best measurement of each command (default 1).
+       --time-tolerance=F, --rss-tolerance=F
+                      With --perf, the fraction by which a command may
+                      exceed its baseline time (default 0.5) or peak
+                      memory (default 0.2) before it is a regression.
 """
 
 USAGE = SHORT_USAGE + """\
@@ -74,6 +93,12 @@ The instructions each have one of the following forms:
           Defines the variable VAR to have the literal value VALUE.  VALUE is
           taken to be a raw Python string (as in r"VALUE").  Substitutions are
           first applied to VALUE.
+   G OPTIONS
+          Generate a repository in the current directory by running
+          gitlet.RepoGenerator with OPTIONS (see RepoGenerator.java).
+   F N NAME F
+          Copy the contents of src/F into N files named NAME with {} replaced
+          by 1, 2, ..., N.
 
 For each TEST.in, reports at most one error.  Without the --show option,
 simply indicates tests passed and failed.  If N is postive, also prints details
@@ -81,12 +106,25 @@ of the first N failing tests. With --show=all, shows details of all failing
 tests.  With --keep, keeps the directories created for the tests (with names
 TEST.dir).
 
+With --perf, also measures the wall time and peak resident set size of each
+gitlet command (and G instruction) and compares them with the baseline file,
+a JSON object mapping "TEST: COMMAND" to {"time": SECONDS, "rss": KB}.  A
+command slower than its baseline time by more than the time tolerance plus
+PERF_SLACK seconds, or whose peak memory exceeds its baseline's by more than
+the memory tolerance, is a regression, and the tester then fails.  Commands
+missing from the baseline are reported but not judged.
+
 When finished, reports number of tests passed and failed, and the number of
 faulty TEST.in files."""
 
 GITLET_COMMAND = "java -ea gitlet.Main"
+GENERATOR_COMMAND = "java gitlet.RepoGenerator ."
 TIMEOUT = 10
 
+# Seconds by which a command may always exceed its baseline time, so that
+# very short commands are not failed for scheduling noise.
+PERF_SLACK = 0.15
+
 def Usage():
     print(SHORT_USAGE, file=sys.stderr)
     sys.exit(1)
@@ -144,12 +182,14 @@ def doCopy(dest, src, dir):
     except OSError:
         raise ValueError("file {} could not be copied to {}".format(src, dest))
 
-def doExecute(cmnd, dir, timeout):
+def doExecute(cmnd, dir, timeout, prog=None):
     here = getcwd()
     out = ""
     try:
         chdir(dir)
-        full_cmnd = "{} {}".format(GITLET_COMMAND, cmnd)
+        full_cmnd = "{} {}".format(prog or GITLET_COMMAND, cmnd)
+        if perf:
+            return doMeasuredExecute(full_cmnd, timeout)
         out = check_output(full_cmnd, shell=True, universal_newlines=True,
                            stdin=DEVNULL, stderr=STDOUT, timeout=timeout)
         return "OK", out
@@ -161,6 +201,92 @@ def doExecute(cmnd, dir, timeout):
     finally:
         chdir(here)
 
+def doMeasuredExecute(full_cmnd, timeout):
+    """Run FULL_CMND like doExecute, setting last_measure to its wall time in
+    seconds and its peak resident set size in kilobytes (None where the
+    platform cannot report it)."""
+    global last_measure
+    start = time.perf_counter()
+    proc = Popen(full_cmnd, shell=True, universal_newlines=True,
+                 stdin=DEVNULL, stdout=PIPE, stderr=STDOUT)
+    rss = None
+    if wait4 is None:
+        try:
+            out, _ = proc.communicate(timeout=timeout)
+        except TimeoutExpired:
+            proc.kill()
+            proc.communicate()
+            return "timeout", None
+    else:
+        # Reap the process ourselves: Popen.wait would discard its usage.
+        timer = Timer(timeout, proc.kill)
+        timer.start()
+        out = proc.stdout.read()
+        proc.stdout.close()
+        _, status, usage = wait4(proc.pid, 0)
+        timed_out = not timer.is_alive()
+        timer.cancel()
+        proc.returncode = waitstatus_to_exitcode(status)
+        if timed_out:
+            return "timeout", None
+        rss = usage.ru_maxrss
+        if sys.platform == "darwin":
+            rss //= 1024
+    last_measure = (time.perf_counter() - start, rss)
+    if proc.returncode:
+        return ("java gitlet.Main exited with code {}"
+                .format(proc.returncode), out)
+    return "OK", out
+
+def recordMeasure(test, cmnd, setup=False):
+    """Record last_measure as the measurement of command CMND of TEST,
+    keeping the best of repeated runs.  SETUP marks commands that prepare
+    a test, which are reported but never judged."""
+    key = "{}: {}".format(test, cmnd)
+    counts[key] = counts.get(key, 0) + 1
+    if counts[key] > 1:
+        key = "{} #{}".format(key, counts[key])
+    wall, rss = last_measure
+    if key in measures:
+        old_wall, old_rss = measures[key]["time"], measures[key]["rss"]
+        wall = min(wall, old_wall)
+        rss = rss if old_rss is None else old_rss if rss is None \
+              else min(rss, old_rss)
+    measures[key] = {"time": round(wall, 3), "rss": rss}
+    if setup:
+        measures[key]["setup"] = True
+
+def comparePerf(baseline):
+    """Print the measurements against BASELINE and return the number of
+    regressions."""
+    regressions = 0
+    width = max(map(len, measures), default=0)
+    print()
+    print("{:{}}  {:>8} {:>8} {:>10} {:>10}".format(
+        "command", width, "time", "base", "rss(KB)", "base"))
+    for key, m in measures.items():
+        base = baseline.get(key)
+        status = ""
+        if base is None:
+            status = "new"
+        elif m.get("setup"):
+            status = "setup"
+        else:
+            if m["time"] > base["time"] * (1 + time_tolerance) + PERF_SLACK:
+                status = "SLOWER"
+            if m["rss"] is not None and base.get("rss") is not None \
+               and m["rss"] > base["rss"] * (1 + rss_tolerance):
+                status = (status + " " if status else "") + "BIGGER"
+            if status:
+                regressions += 1
+        print("{:{}}  {:8.3f} {:>8} {:>10} {:>10}  {}".format(
+            key, width, m["time"],
+            "-" if base is None else "{:.3f}".format(base["time"]),
+            "-" if m["rss"] is None else m["rss"],
+            "-" if base is None or base.get("rss") is None else base["rss"],
+            status).rstrip())
+    return regressions
+
 def canonicalize(s):
     if s is None:
         return None
@@ -237,6 +363,7 @@ def line_reader(f, prefix):
 def doTest(test):
     last_groups = []
     base = splitext(basename(test))[0]
+    counts.clear()
     print("{}:".format(base), end=" ")
     cdir = tmpdir = createTempDir(base)
     if verbose:
@@ -314,6 +441,8 @@ def doTest(test):
                         break
                     expected.append(do_substs(L))
                 msg, out = doExecute(cmnd, cdir, timeout)
+                if perf and msg == "OK":
+                    recordMeasure(base, cmnd)
                 if verbose:
                     if out:
                         print(re.sub(r'(?m)^', '- ', chop_nl(out)))
@@ -344,6 +473,19 @@ def doTest(test):
                     return False
             elif Match(r'(?s)D\s*([a-zA-Z_][a-zA-Z_0-9]*)\s*"(.*)"\s*$', line):
                 defns[Group(1)] = Group(2)
+            elif Match(r'G\s*(.*)', line):
+                options = Group(1).strip()
+                msg, out = doExecute(options, cdir, timeout,
+                                     GENERATOR_COMMAND)
+                if perf and msg == "OK":
+                    recordMeasure(base, "generate {}".format(options), True)
+                if msg != "OK":
+                    print("ERROR (generator: {})".format(msg))
+                    reportDetails(test, included_files, line_num)
+                    return False
+            elif Match(r'F\s*(\d+)\s+(\S+)\s+(\S+)', line):
+                for k in range(1, int(Group(1)) + 1):
+                    doCopy(Group(2).replace("{}", str(k)), Group(3), cdir)
             else:
                 raise ValueError("bad test line at {}".format(line_num))
     finally:
@@ -357,12 +499,22 @@ if __name__ == "__main__":
     verbose = False
     src_dir = 'src'
     output_tolerance = 3
+    perf = False
+    baseline_file = join('perf', 'baseline.json')
+    update_baseline = False
+    repeat = 1
+    time_tolerance = 0.5
+    rss_tolerance = 0.2
+    last_measure = None
+    measures = {}
+    counts = {}
 
     try:
         opts, files = \
             getopt(sys.argv[1:], '',
                    ['show=', 'keep', 'progdir=', 'verbose', 'src=',
-                    'tolerance='])
+                    'tolerance=', 'perf', 'baseline=', 'update-baseline',
+                    'repeat=', 'time-tolerance=', 'rss-tolerance='])
         for opt, val in opts:
             if opt == '--show':
                 val = val.lower()
@@ -382,6 +534,18 @@ if __name__ == "__main__":
                 verbose = True
             elif opt == "--tolerance":
                 output_tolerance = int(val)
+            elif opt == "--perf":
+                perf = True
+            elif opt == "--baseline":
+                baseline_file = val
+            elif opt == "--update-baseline":
+                update_baseline = True
+            elif opt == "--repeat":
+                repeat = int(val)
+            elif opt == "--time-tolerance":
+                time_tolerance = float(val)
+            elif opt == "--rss-tolerance":
+                rss_tolerance = float(val)
         if prog_dir is None:
             prog_dir = abspath(getcwd())
             k = 10
@@ -405,7 +569,10 @@ if __name__ == "__main__":
     else:
         environ['CLASSPATH'] = "{}:{}".format(prog_dir, environ['CLASSPATH'])
         GITLET_COMMAND = 'exec ' + GITLET_COMMAND
+        GENERATOR_COMMAND = 'exec ' + GENERATOR_COMMAND
 
+    if perf:
+        files = [test for test in files for _ in range(repeat)]
     num_tests = len(files)
     errs = 0
     fails = 0
@@ -422,10 +589,30 @@ if __name__ == "__main__":
             print("FAILED ({})".format(excp.args[0]))
             fails += 1
                   
+    regressions = 0
+    if perf and update_baseline:
+        with open(baseline_file, "w") as out:
+            json.dump(measures, out, indent=2, sort_keys=True)
+            out.write("\n")
+        print()
+        print("Wrote {} measurements to {}.".format(len(measures),
+                                                   baseline_file))
+    elif perf:
+        baseline = {}
+        if exists(baseline_file):
+            with open(baseline_file) as inp:
+                baseline = json.load(inp)
+        else:
+            print("No baseline {}.".format(baseline_file))
+        regressions = comparePerf(baseline)
+
     print()
     print("Ran {} tests. ".format(num_tests), end="")
-    if errs == fails == 0:
+    if errs == fails == regressions == 0:
         print("All passed.")
     else:
-        print("{} passed.".format(num_tests - errs - fails))
+        print("{} passed.".format(num_tests - errs - fails), end="")
+        if regressions:
+            print(" {} performance regressions.".format(regressions), end="")
+        print()
         sys.exit(1)